@@ -0,0 +1,269 @@
+// Approximate reports that would otherwise need COUNT(DISTINCT ...) or a sort over the
+// whole CheckIn and Payment history:
+//  - unique visitors (membershipIDs) per location, from a HyperLogLog per day and location
+//  - payment amount percentiles per payment type, from a t-digest per day and type
+//
+// The sketches live in DailySketch (see tables.sql), one small row per day and location or
+// type. refresh() folds in the check-ins and payments added since the last refresh, going by
+// id like ChangeFeed, so it only reads new rows. A report for any date range then merges one
+// row per day instead of reading the raw rows. Deleted rows and later edits to a row that
+// was already folded in are not reflected.
+//
+// A lower id can commit after a higher one, so ids the watermark skips are saved in
+// SketchGap and looked up again by every refresh until their row shows up (and is folded
+// in) or GAP_SECONDS pass.
+//
+//   java -cp bin:mysql-connector-j.jar Analytics [from yyyy-mm-dd] [to yyyy-mm-dd]
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class Analytics {
+
+    public static final String VISITORS = "visitors";
+    public static final String AMOUNTS = "amounts";
+    public static final String ALL = "All";
+
+    private static final int BATCH_SIZE = 10000;
+    private static final int MAX_GAPS = 1000; // per batch, a bigger jump is a bulk rollback
+    private static final int GAP_SECONDS = 600;
+
+    // The table a kind of sketch is built from. The key comes first, then the day, the
+    // dimension and the value folded in.
+    private record Source(String kind, String table, String keyColumn, String columns) {
+
+        String newRowsSql() {
+            return "SELECT " + columns + " FROM " + table + " WHERE " + keyColumn + " > ? ORDER BY " + keyColumn + " LIMIT ?;";
+        }
+
+        String rowsSql(int ids) {
+            return "SELECT " + columns + " FROM " + table + " WHERE " + keyColumn + " IN (" +
+                   String.join(", ", Collections.nCopies(ids, "?")) + ");";
+        }
+    }
+
+    private static final Source CHECK_INS = new Source(VISITORS, "CheckIn", "checkInID",
+            "checkInID, DATE(ts), COALESCE(location, ''), membershipID");
+
+    private static final Source PAYMENTS = new Source(AMOUNTS, "Payment", "paymentID",
+            "paymentID, dateOfPayment, paymentType, amount");
+
+    private record Key(LocalDate day, String dimension) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalDate to = args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.now();
+        LocalDate from = args.length > 0 ? LocalDate.parse(args[0]) : to.withDayOfMonth(1);
+
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (Connection conn = Database.connect(props)) {
+            System.out.println("Folded in " + refresh(conn) + " new check-ins and payments");
+            DatabaseViews.showAnalytics(from, to, visitors(conn, from, to), amounts(conn, from, to));
+        }
+    }
+
+    // Adds everything new since the last refresh to the daily sketches. Each batch is one
+    // transaction with the watermark locked, so two refreshes at once can't count a row twice.
+    // Returns the number of rows folded in.
+    public static int refresh(Connection conn) throws SQLException {
+        int rows = 0;
+        int batch;
+        do {
+            batch = refreshBatch(conn, CHECK_INS, HyperLogLog::new,
+                    (hll, rs) -> hll.add(rs.getInt(4)), HyperLogLog::fromBytes, HyperLogLog::merge, HyperLogLog::toBytes);
+            rows += batch;
+        } while (batch == BATCH_SIZE);
+        do {
+            batch = refreshBatch(conn, PAYMENTS, TDigest::new,
+                    (digest, rs) -> digest.add(rs.getBigDecimal(4).doubleValue()), TDigest::fromBytes, TDigest::merge, TDigest::toBytes);
+            rows += batch;
+        } while (batch == BATCH_SIZE);
+        return rows;
+    }
+
+    // Unique visitors per location over the range, plus ALL for every location together
+    public static Map<String, HyperLogLog> visitors(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        return load(conn, VISITORS, from, to, HyperLogLog::new, HyperLogLog::fromBytes, HyperLogLog::merge);
+    }
+
+    // Payment amounts per payment type over the range, plus ALL for every type together
+    public static Map<String, TDigest> amounts(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        return load(conn, AMOUNTS, from, to, TDigest::new, TDigest::fromBytes, TDigest::merge);
+    }
+
+    @FunctionalInterface
+    private interface RowFolder<S> {
+        void fold(S sketch, ResultSet rs) throws SQLException;
+    }
+
+    // Returns the number of rows folded in, new ones and ones found in gaps
+    private static <S> int refreshBatch(Connection conn, Source source, Supplier<S> empty,
+                                        RowFolder<S> folder, Function<byte[], S> decode, BiConsumer<S, S> merge,
+                                        Function<S, byte[]> encode) throws SQLException {
+        String kind = source.kind();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            int lastID = lockWatermark(conn, kind);
+            Map<Key, S> sketches = new LinkedHashMap<>();
+
+            List<Integer> filled = new ArrayList<>();
+            List<Integer> gaps = gaps(conn, kind);
+            if (!gaps.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(source.rowsSql(gaps.size()))) {
+                    for (int i = 0; i < gaps.size(); i++) {
+                        ps.setInt(i + 1, gaps.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            filled.add(rs.getInt(1));
+                            Key key = new Key(rs.getObject(2, LocalDate.class), rs.getString(3));
+                            folder.fold(sketches.computeIfAbsent(key, k -> empty.get()), rs);
+                        }
+                    }
+                }
+            }
+
+            List<Integer> skipped = new ArrayList<>();
+            int rows = 0;
+            try (PreparedStatement ps = conn.prepareStatement(source.newRowsSql())) {
+                ps.setInt(1, lastID);
+                ps.setInt(2, BATCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        for (int missing = Math.max(lastID + 1, id - MAX_GAPS); missing < id && skipped.size() < MAX_GAPS; missing++) {
+                            skipped.add(missing);
+                        }
+                        lastID = id;
+                        Key key = new Key(rs.getObject(2, LocalDate.class), rs.getString(3));
+                        folder.fold(sketches.computeIfAbsent(key, k -> empty.get()), rs);
+                        rows++;
+                    }
+                }
+            }
+            saveGaps(conn, kind, filled, skipped);
+
+            try (PreparedStatement read = conn.prepareStatement(
+                         "SELECT sketch FROM DailySketch WHERE kind = ? AND dimension = ? AND day = ?;");
+                 PreparedStatement write = conn.prepareStatement(
+                         "INSERT INTO DailySketch (kind, dimension, day, sketch) VALUES (?, ?, ?, ?) " +
+                         "ON DUPLICATE KEY UPDATE sketch = VALUES(sketch);")) {
+                for (Map.Entry<Key, S> entry : sketches.entrySet()) {
+                    S sketch = entry.getValue();
+                    read.setString(1, kind);
+                    read.setString(2, entry.getKey().dimension());
+                    read.setObject(3, entry.getKey().day());
+                    try (ResultSet rs = read.executeQuery()) {
+                        if (rs.next()) {
+                            merge.accept(sketch, decode.apply(rs.getBytes(1)));
+                        }
+                    }
+                    write.setString(1, kind);
+                    write.setString(2, entry.getKey().dimension());
+                    write.setObject(3, entry.getKey().day());
+                    write.setBytes(4, encode.apply(sketch));
+                    write.addBatch();
+                }
+                write.executeBatch();
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE SketchWatermark SET lastID = ? WHERE kind = ?;")) {
+                ps.setInt(1, lastID);
+                ps.setString(2, kind);
+                ps.executeUpdate();
+            }
+            conn.commit();
+            return rows + filled.size();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Ids still missing below the watermark, after dropping the ones older than GAP_SECONDS
+    private static List<Integer> gaps(Connection conn, String kind) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM SketchGap WHERE kind = ? AND seenAt < NOW() - INTERVAL ? SECOND;")) {
+            ps.setString(1, kind);
+            ps.setInt(2, GAP_SECONDS);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM SketchGap WHERE kind = ? ORDER BY id LIMIT ?;")) {
+            ps.setString(1, kind);
+            ps.setInt(2, BATCH_SIZE);
+            return RowMappers.mapAll(ps, rs -> rs.getInt(1));
+        }
+    }
+
+    private static void saveGaps(Connection conn, String kind, List<Integer> filled, List<Integer> skipped) throws SQLException {
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM SketchGap WHERE kind = ? AND id = ?;");
+             PreparedStatement insert = conn.prepareStatement("INSERT IGNORE INTO SketchGap (kind, id, seenAt) VALUES (?, ?, NOW());")) {
+            for (int id : filled) {
+                delete.setString(1, kind);
+                delete.setInt(2, id);
+                delete.addBatch();
+            }
+            for (int id : skipped) {
+                insert.setString(1, kind);
+                insert.setInt(2, id);
+                insert.addBatch();
+            }
+            if (!filled.isEmpty()) {
+                delete.executeBatch();
+            }
+            if (!skipped.isEmpty()) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    // The id folded in last, creating the watermark row the first time
+    private static int lockWatermark(Connection conn, String kind) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT IGNORE INTO SketchWatermark (kind, lastID) VALUES (?, 0);")) {
+            ps.setString(1, kind);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT lastID FROM SketchWatermark WHERE kind = ? FOR UPDATE;")) {
+            ps.setString(1, kind);
+            List<Integer> ids = RowMappers.mapAll(ps, rs -> rs.getInt(1));
+            return ids.get(0);
+        }
+    }
+
+    // Merges the daily sketches in the range by dimension, sorted by name, with ALL last
+    private static <S> Map<String, S> load(Connection conn, String kind, LocalDate from, LocalDate to,
+                                           Supplier<S> empty, Function<byte[], S> decode,
+                                           BiConsumer<S, S> merge) throws SQLException {
+        Map<String, S> byDimension = new TreeMap<>();
+        S all = empty.get();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT dimension, sketch FROM DailySketch WHERE kind = ? AND day BETWEEN ? AND ?;")) {
+            ps.setString(1, kind);
+            ps.setObject(2, from);
+            ps.setObject(3, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    S day = decode.apply(rs.getBytes(2));
+                    merge.accept(byDimension.computeIfAbsent(rs.getString(1), k -> empty.get()), day);
+                    merge.accept(all, day);
+                }
+            }
+        }
+        Map<String, S> result = new LinkedHashMap<>(byDimension);
+        result.put(ALL, all);
+        return result;
+    }
+}
@@ -1,43 +1,67 @@
 import java.sql.*;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class App {
 
+    // What still works without the database: the views (from the local copy), recording
+    // check-ins, the audit history and exiting
+    private static final Set<Integer> OFFLINE_CHOICES = Set.of(0, 1, 2, 3, 4, 5, 6, 7, 20, 22);
+    private static final int SEGMENT_ROWS = 500; // members listed for a segment, all of them are counted
+
     private static Connection conn;
+    private static ConnectionRouter router; // read-only views go through this
     private static Scanner scanner = new Scanner(System.in);
+    private static ViewPrefetcher prefetcher; // null when prefetching is off
+    private static ChangeFeed feed; // null when feed.enabled is false
+    private static QueryCache cache; // null when cache.enabled is false
+    private static BranchShards branches; // null when app.properties lists no branches
+    private static PaymentPipeline payments; // null when its connections couldn't be opened
+    private static ConnectionPool editPool; // connections for MemberService
+    private static MemberService members; // null when its connections couldn't be opened
+    private static MemberSegments segments; // loaded the first time option 14 is used, rebuilt every segments.rebuildMinutes
+    private static GuestVisits guests; // shares editPool, null when that couldn't be opened
+    private static ViewProfiler profiler; // timing, allocation and GC per view, for the diagnostics screen
+    private static LocalReplica replica; // null when replica.enabled is false
+    private static AuditJournal audit; // null when audit.enabled is false
+    private static boolean offline; // the database couldn't be reached, views come from replica
+    private static LocalDateTime offlineSince; // when the last attempt to reach it failed
+    private static boolean localViews; // replica.serveViews, views come from replica online too
+    private static CompletableFuture<Void> startup; // done once everything above is set up
+    private static Properties props;
 
     public static void main(String[] args) {
         // Load database connection properties
-        Properties props = new Properties();
         try {
-            props.load(new FileInputStream("app.properties"));
+            props = Database.loadProperties();
         } catch (IOException e) {
             System.out.println("Error loading app.properties file: " + e.getMessage());
             System.out.println("Make sure app.properties exists in the project root directory.");
             return;
         }
 
-        String url = props.getProperty("db.url");
-        String username = props.getProperty("db.username");
-        String password = props.getProperty("db.password");
+        startReplica();
+        startAudit();
 
-        // Test database connection
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            conn = DriverManager.getConnection(url, username, password);
+        // Connect in the background so the menu is on screen right away, the first choice
+        // waits for it. With startup.fastStart=false the app connects first like it used to.
+        startup = CompletableFuture.runAsync(() -> startServices(props));
+        if (!Database.booleanProperty(props, "startup.fastStart", true)) {
+            if (!awaitStartup()) {
+                return;
+            }
             System.out.println("Database connection successful!");
             System.out.println();
-        } 
-        catch (ClassNotFoundException e) {
-            System.out.println("Error: MySQL JDBC Driver not found.");
-            return;
-        } 
-        catch (SQLException e) {
-            System.out.println("Error connecting to database: " + e.getMessage());
-            return;
         }
 
         // Main menu loop
@@ -48,30 +72,88 @@ public class App {
             printMainMenu();
 
             int choice = getIntInput("Enter your choice: ");
-            
+            if (!awaitStartup()) {
+                return;
+            }
             
             try {
+                if (offline && !OFFLINE_CHOICES.contains(choice)) {
+                    throw new SQLException("not available while working offline");
+                }
                 switch (choice) {
                     case 1:
-                        DatabaseViews.viewGymMembers(conn);
+                        showView(View.GYM_MEMBERS);
                         break;
                     case 2:
-                        DatabaseViews.viewAllMemberships(conn);
+                        showView(View.ALL_MEMBERSHIPS);
                         break;
                     case 3:
                         viewStaffMembers();
                         break;
                     case 4:
-                        DatabaseViews.viewPlans(conn);
+                        showView(View.PLANS);
                         break;
                     case 5:
-                        DatabaseViews.viewPayments(conn);
+                        showView(View.PAYMENTS);
                         break;
                     case 6:
-                        DatabaseViews.viewCheckIns(conn);
+                        showView(View.CHECK_INS);
                         break;
                     case 7:
-                        DatabaseViews.viewActiveMembers(conn);
+                        showView(View.ACTIVE_MEMBERS);
+                        break;
+                    case 8:
+                        if (branches == null) {
+                            System.out.println("Invalid input.");
+                        } else {
+                            viewAllBranches();
+                        }
+                        break;
+                    case 9:
+                        if (router.hasReplicas()) {
+                            DatabaseViews.showRouteStats(router.stats());
+                        } else {
+                            System.out.println("Invalid input.");
+                        }
+                        break;
+                    case 10:
+                        searchView(ViewQuery.PAYMENTS);
+                        break;
+                    case 11:
+                        searchView(ViewQuery.CHECK_INS);
+                        break;
+                    case 12:
+                        viewAnalytics();
+                        break;
+                    case 13:
+                        staffCosts();
+                        break;
+                    case 14:
+                        memberSegment();
+                        break;
+                    case 15:
+                        staffSchedules();
+                        break;
+                    case 16:
+                        updatePaymentStatus();
+                        break;
+                    case 17:
+                        updateMemberContact();
+                        break;
+                    case 18:
+                        updateMembershipStatus();
+                        break;
+                    case 19:
+                        guestVisits();
+                        break;
+                    case 20:
+                        recordCheckIn();
+                        break;
+                    case 21:
+                        DatabaseViews.showDiagnostics(profiler, cache);
+                        break;
+                    case 22:
+                        auditHistory();
                         break;
                     case 0:
                         running = false;
@@ -82,6 +164,9 @@ public class App {
                 }
             } catch (SQLException e) {
                 System.out.println("Database error: " + e.getMessage());
+                if (replica != null && !offline && Database.connectionLost(e)) {
+                    goOffline();
+                }
             }
             
             if (running) {
@@ -91,14 +176,59 @@ public class App {
         }
 
         // Close connection
+        stopServices();
+        profiler.close();
+        if (replica != null) {
+            replica.close();
+        }
+        if (audit != null) {
+            try {
+                audit.close();
+            } catch (IOException e) {
+                System.out.println("Error closing the audit trail: " + e.getMessage());
+            }
+        }
+        scanner.close();
+    }
+
+    // Closes everything startServices opened, at exit and before connecting again after the
+    // database was lost
+    private static void stopServices() {
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+        if (feed != null) {
+            feed.close();
+            feed = null;
+        }
+        if (branches != null) {
+            branches.close();
+            branches = null;
+        }
+        if (payments != null) {
+            payments.close();
+            payments = null;
+        }
+        guests = null;
+        members = null;
+        if (editPool != null) {
+            editPool.close();
+            editPool = null;
+        }
+        if (router != null) {
+            router.close();
+            router = null;
+        }
         try {
             if (conn != null && !conn.isClosed()) {
                 conn.close();
             }
-            scanner.close();
         } catch (SQLException e) {
             System.out.println("Error closing connection: " + e.getMessage());
         }
+        conn = null;
+        cache = null;
     }
 
     private static void printMainMenu() {
@@ -116,6 +246,36 @@ public class App {
         System.out.println("5. View Payments");
         System.out.println("6. View Check-Ins");
         System.out.println("7. View Active Members");
+        if (offline) {
+            System.out.println("(offline: views are this terminal's copy, only 1-7, 20 and 22 work)");
+        }
+        // Options that depend on the connections only show up once those are open
+        boolean connected = startup.isDone() && !startup.isCompletedExceptionally();
+        if (connected && branches != null) {
+            System.out.println("8. View All Branches (HQ)");
+        }
+        if (connected && router.hasReplicas()) {
+            System.out.println("9. View Read Routing Stats");
+        }
+        System.out.println("-------------------------------------");
+        System.out.println("Search Options:");
+        System.out.println("10. Search Payments");
+        System.out.println("11. Search Check-Ins");
+        System.out.println("12. Visit and Payment Analytics");
+        System.out.println("13. Staff Costs");
+        System.out.println("14. Member Segments");
+        System.out.println("15. Staff Schedules");
+        System.out.println("-------------------------------------");
+        System.out.println("Update Options:");
+        System.out.println("16. Update Payment Status");
+        System.out.println("17. Update Member Contact Info");
+        System.out.println("18. Update Membership Status");
+        System.out.println("19. Guest Visits");
+        System.out.println("20. Record Check-In");
+        System.out.println("-------------------------------------");
+        System.out.println("Diagnostics:");
+        System.out.println("21. View Diagnostics");
+        System.out.println("22. Member Audit History");
         System.out.println("-------------------------------------");
         System.out.println("\n0. Exit");
         System.out.println("=====================================");
@@ -133,7 +293,421 @@ public class App {
         return value;
     }
 
+    // Everything that needs the database, run once at startup (in the background in fast
+    // start mode). Touching View.ALL at the end loads the view and printing classes while
+    // the user is still reading the menu.
+    private static void startServices(Properties props) {
+        if (profiler == null) {
+            profiler = ViewProfiler.open(props);
+        }
+        try {
+            Database.loadDriver(props);
+            conn = Database.connect(props);
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new CompletionException(e);
+        }
+        router = ConnectionRouter.open(props, conn);
+        if (Database.booleanProperty(props, "cache.enabled", true)) {
+            cache = QueryCache.open(props);
+        }
+        startPrefetcher(props);
+        startChangeFeed(props);
+        openBranches(props);
+        startPaymentPipeline(props);
+        startMemberService(props);
+        startGuestVisits(props);
+        View.ALL.size();
+    }
+
+    // Waits for startServices, printing why it failed if it did. With a local replica the
+    // app carries on offline instead, and connects again once the replica has synced with
+    // the database since the link was lost.
+    private static boolean awaitStartup() {
+        if (offline && replica.isOnline() && replica.syncedAt() != null && replica.syncedAt().isAfter(offlineSince)) {
+            stopServices();
+            startup = CompletableFuture.runAsync(() -> startServices(props));
+        }
+        if (!startup.isDone()) {
+            System.out.println("Connecting to the database...");
+        }
+        try {
+            startup.join();
+            if (offline) {
+                System.out.println("Connected to the database again.");
+                offline = false;
+            }
+            return true;
+        } catch (CompletionException e) {
+            if (replica != null && !(e.getCause() instanceof ClassNotFoundException)) {
+                if (!offline) {
+                    System.out.println("Error connecting to database: " + e.getCause().getMessage());
+                    goOffline();
+                }
+                offlineSince = LocalDateTime.now();
+                return true;
+            }
+            if (e.getCause() instanceof ClassNotFoundException) {
+                System.out.println("Error: MySQL JDBC Driver not found.");
+            } else {
+                System.out.println("Error connecting to database: " + e.getCause().getMessage());
+            }
+            return false;
+        }
+    }
+
+    // Switches the views and check-ins to the terminal's copy, when connecting failed or the
+    // link dropped in the middle of the session
+    private static void goOffline() {
+        replica.awaitLoaded();
+        System.out.println("Working offline from this terminal's copy"
+                + (replica.syncedAt() == null ? "" : ", last synced " + replica.syncedAt().withNano(0)) + ".");
+        offline = true;
+        offlineSince = LocalDateTime.now();
+    }
+
+    // The local copy needs no connection, so it opens before the app connects and is there
+    // to fall back on if connecting fails. Its snapshot is read in the background.
+    private static void startReplica() {
+        if (!Database.booleanProperty(props, "replica.enabled", false)) {
+            return;
+        }
+        try {
+            replica = LocalReplica.open(props);
+            localViews = Database.booleanProperty(props, "replica.serveViews", true);
+        } catch (IOException e) {
+            System.out.println("Local copy disabled: " + e.getMessage());
+        }
+    }
+
+    // Also local files only, so changes made offline are audited too
+    private static void startAudit() {
+        if (!Database.booleanProperty(props, "audit.enabled", true)) {
+            return;
+        }
+        try {
+            audit = AuditJournal.open(props);
+        } catch (IOException e) {
+            System.out.println("Audit trail disabled: " + e.getMessage());
+        }
+    }
+
+    // Adds a change the app just made to the audit trail and waits until it is on disk
+    private static void audit(AuditJournal.Table table, ChangeFeed.Operation operation, int key, int memberID, int staffID,
+                              String oldValue, String newValue) {
+        if (audit == null) {
+            return;
+        }
+        try {
+            audit.awaitDurable(audit.append(table, operation, key, memberID, staffID, oldValue, newValue));
+        } catch (IOException e) {
+            System.out.println("Couldn't add this change to the audit trail: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Called after every write made from this app: reads stay on the primary for a moment
+    // and rows prefetched before the write are thrown away
+    private static void wrote() {
+        if (router != null) {
+            router.markWrite();
+        }
+        if (prefetcher != null) {
+            prefetcher.clear();
+        }
+    }
+
+    // Prefetching uses its own connection, if that fails the app just runs without it
+    private static void startPrefetcher(Properties props) {
+        if (!Database.booleanProperty(props, "prefetch.enabled", true)) {
+            return;
+        }
+        try {
+            prefetcher = new ViewPrefetcher(Database.connect(props), Database.intProperty(props, "prefetch.ttlMillis", 15000));
+        } catch (SQLException e) {
+            System.out.println("Prefetching disabled: " + e.getMessage());
+        }
+    }
+
+    // Rows other desks add mark the cached views that read their table out of date right
+    // away, instead of when a cache probe notices. Uses its own connection like prefetching.
+    private static void startChangeFeed(Properties props) {
+        if (!Database.booleanProperty(props, "feed.enabled", true)) {
+            return;
+        }
+        try {
+            feed = new ChangeFeed(Database.connect(props), Database.intProperty(props, "feed.pollMillis", 2000));
+            for (ChangeFeed.Table<?> table : ChangeFeed.Table.ALL) {
+                feed.subscribe(table, event -> QueryCache.changed(event.table().tableName));
+            }
+            feed.start();
+        } catch (SQLException e) {
+            System.out.println("Change feed disabled: " + e.getMessage());
+            if (feed != null) {
+                feed.close();
+                feed = null;
+            }
+        }
+    }
+
+    // Branch connections for the HQ menu, a branch that can't be reached turns the menu off
+    private static void openBranches(Properties props) {
+        try {
+            branches = BranchShards.open(props);
+        } catch (SQLException e) {
+            System.out.println("Branch views disabled: " + e.getMessage());
+        }
+    }
+
+    // Payment status changes are applied by background threads on their own connections
+    private static void startPaymentPipeline(Properties props) {
+        try {
+            payments = new PaymentPipeline(props, Database.intProperty(props, "payments.appliers", 2),
+                    Database.intProperty(props, "payments.queueCapacity", 10000), feed);
+        } catch (SQLException e) {
+            System.out.println("Payment updates disabled: " + e.getMessage());
+        }
+    }
+
+    private static void startMemberService(Properties props) {
+        try {
+            editPool = ConnectionPool.open(props, Database.intProperty(props, "members.connections", 2));
+            members = new MemberService(editPool, Database.intProperty(props, "members.lockWaitMillis", 2000), feed);
+        } catch (SQLException e) {
+            System.out.println("Member updates disabled: " + e.getMessage());
+        }
+    }
+
+    private static void startGuestVisits(Properties props) {
+        if (editPool == null) {
+            return;
+        }
+        try {
+            guests = GuestVisits.open(editPool, Database.intProperty(props, "guests.monthlyQuota", 4));
+        } catch (SQLException e) {
+            System.out.println("Guest visits disabled: " + e.getMessage());
+        }
+    }
+
+    // Prints a view from the terminal's copy (with replica.serveViews, or offline), rows the
+    // prefetcher already loaded or the cache still has when it can. The copy says when it may
+    // be missing an edit made here, then the database is asked. If the link drops on the way
+    // the app goes offline and shows the copy.
+    private static <T> void showView(View<T> view) throws SQLException {
+        List<T> rows = profiler.measure(view.name() + " load", () -> {
+            if (offline) {
+                return offlineRows(view);
+            }
+            List<T> local = localViews ? replica.rows(view) : null;
+            if (local != null) {
+                return local;
+            }
+            try {
+                List<T> prefetched = prefetcher == null ? null : prefetcher.take(view);
+                if (prefetched != null) {
+                    return prefetched;
+                }
+                return router.read(c -> cache == null ? view.load(c) : cache.load(c, view));
+            } catch (SQLException e) {
+                if (replica == null || !Database.connectionLost(e)) {
+                    throw e;
+                }
+                System.out.println("Lost the connection to the database: " + e.getMessage());
+                goOffline();
+                return offlineRows(view);
+            }
+        });
+        profiler.measure(view.name() + " print", () -> {
+            view.print(rows);
+            return null;
+        });
+        if (prefetcher != null) {
+            prefetcher.viewed(view);
+        }
+    }
+
+    private static <T> List<T> offlineRows(View<T> view) throws SQLException {
+        List<T> local = replica.rows(view);
+        if (local == null) {
+            throw new SQLException(view.name() + " isn't on this terminal yet");
+        }
+        return local;
+    }
+
+    // Asks for the filters a view supports, Enter skips one
+    private static <T> void searchView(ViewQuery<T> query) throws SQLException {
+        System.out.println("\n=== Search " + query.view().name() + " ===");
+        System.out.println("Press Enter to skip a filter.");
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = dateInput("From date (YYYY-MM-DD)");
+            to = dateInput("To date (YYYY-MM-DD)");
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date.");
+            return;
+        }
+        String status = query.hasStatus() ? getTextInput("Status", null) : null;
+        String location = query.hasLocation() ? getTextInput("Location", null) : null;
+        String staff = getTextInput("Staff ID", null);
+        String limit = getTextInput("Max rows", String.valueOf(ViewQuery.DEFAULT_LIMIT));
+        String order = getTextInput("Newest first? (y/n)", "y");
+
+        ViewQuery.Filter filter;
+        try {
+            filter = new ViewQuery.Filter(from, to, status, location,
+                    staff == null ? null : Integer.valueOf(staff),
+                    !order.equalsIgnoreCase("n"), Integer.parseInt(limit));
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            return;
+        }
+        List<T> rows = profiler.measure(query.view().name() + " search load",
+                () -> router.read(c -> cache == null ? query.load(c, filter) : query.load(c, filter, cache)));
+        profiler.measure(query.view().name() + " search print", () -> {
+            DatabaseViews.showSearchResults(query.view(), rows, filter.rowLimit());
+            return null;
+        });
+    }
+
+    // Brings the sketches up to date, then reports on a date range (this month by default)
+    private static void viewAnalytics() throws SQLException {
+        LocalDate from;
+        LocalDate to;
+        try {
+            LocalDate today = LocalDate.now();
+            from = LocalDate.parse(getTextInput("From date (YYYY-MM-DD)", today.withDayOfMonth(1).toString()));
+            to = LocalDate.parse(getTextInput("To date (YYYY-MM-DD)", today.toString()));
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date.");
+            return;
+        }
+        router.write(Analytics::refresh);
+        Map<String, HyperLogLog> visitors = router.read(c -> Analytics.visitors(c, from, to));
+        Map<String, TDigest> amounts = router.read(c -> Analytics.amounts(c, from, to));
+        DatabaseViews.showAnalytics(from, to, visitors, amounts);
+    }
+
+    // Payroll against desk activity for a date range (this month by default)
+    private static void staffCosts() throws SQLException {
+        LocalDate from;
+        LocalDate to;
+        try {
+            LocalDate today = LocalDate.now();
+            from = LocalDate.parse(getTextInput("From date (YYYY-MM-DD)", today.withDayOfMonth(1).toString()));
+            to = LocalDate.parse(getTextInput("To date (YYYY-MM-DD)", today.toString()));
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date.");
+            return;
+        }
+        if (to.isBefore(from)) {
+            System.out.println("The end date is before the start date.");
+            return;
+        }
+        DatabaseViews.showStaffCosts(router.read(c -> StaffCosts.report(c, from, to)));
+    }
+
+    // Combines member attributes into a segment, see MemberSegments for the syntax
+    private static void memberSegment() throws SQLException {
+        System.out.println("\n=== Member Segments ===");
+        System.out.println("Combine status:Active, plan:\"Monthly Premium\", trainer:<staff ID>, visited:last7,");
+        System.out.println("visited:<date>..<date> and all with AND, OR, NOT and parentheses.");
+        System.out.println("Enter rebuild to reload the bitmaps from scratch.");
+        System.out.print("Segment: ");
+        String segment = scanner.nextLine().trim();
+        if (segments == null) {
+            segments = new MemberSegments();
+        }
+        // Rebuilding also picks up membership edits made outside the app
+        boolean rebuild = segment.equalsIgnoreCase("rebuild");
+        long rebuildMillis = Database.intProperty(props, "segments.rebuildMinutes", 30) * 60_000L;
+        if (rebuild || segments.millisSinceRebuild() > rebuildMillis) {
+            int rows = router.read(segments::rebuild);
+            if (rebuild) {
+                System.out.println("Rebuilt the segment bitmaps from " + rows + " rows.");
+                return;
+            }
+        } else {
+            router.read(segments::refresh);
+        }
+
+        MemberBitmap result;
+        long start = System.nanoTime();
+        try {
+            result = segments.evaluate(segment);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.out.println("Invalid segment: " + e.getMessage());
+            return;
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+        List<GymMember> shown = router.read(c -> MemberSegments.members(c, result, SEGMENT_ROWS));
+        DatabaseViews.showSegment(segment, result.cardinality(), shown);
+        System.out.println("Evaluated in " + micros + " microseconds over " + segments.sizeInBytes() / 1024 + " KB of bitmaps.");
+    }
+
+    // Schedules are read fresh each time, the Desk and Trainer tables are small
+    private static void staffSchedules() throws SQLException {
+        StaffSchedules schedules = router.read(StaffSchedules::load);
+
+        System.out.println("\n=== Staff Schedules Menu ===");
+        System.out.println("1. Who Is On Shift");
+        System.out.println("2. Desk Conflicts");
+        System.out.println("3. Check-Ins Recorded Off Duty");
+        System.out.println("4. Unreadable Schedules");
+        System.out.println("0. Back to Main Menu");
+
+        int choice = getIntInput("Enter your choice: ");
+
+        switch (choice) {
+            case 1:
+                LocalDateTime at;
+                try {
+                    LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0);
+                    at = LocalDateTime.of(LocalDate.parse(getTextInput("Date (YYYY-MM-DD)", now.toLocalDate().toString())),
+                            LocalTime.parse(getTextInput("Time (HH:MM)", now.toLocalTime().toString())));
+                } catch (DateTimeParseException e) {
+                    System.out.println("Invalid date or time.");
+                    return;
+                }
+                DatabaseViews.showShifts("On Shift " + at.getDayOfWeek() + " " + at.toLocalTime(), schedules.onShift(at));
+                break;
+            case 2:
+                DatabaseViews.showDeskConflicts(schedules.deskConflicts());
+                break;
+            case 3:
+                LocalDate from;
+                LocalDate to;
+                try {
+                    LocalDate today = LocalDate.now();
+                    from = LocalDate.parse(getTextInput("From date (YYYY-MM-DD)", today.minusDays(6).toString()));
+                    to = LocalDate.parse(getTextInput("To date (YYYY-MM-DD)", today.toString()));
+                } catch (DateTimeParseException e) {
+                    System.out.println("Invalid date.");
+                    return;
+                }
+                DatabaseViews.showOffDutyCheckIns(router.read(c -> schedules.offDutyCheckIns(c, from, to)));
+                break;
+            case 4:
+                DatabaseViews.showUnreadableSchedules(schedules.unreadable());
+                break;
+            case 0:
+                return;
+            default:
+                System.out.println("Invalid input.");
+        }
+    }
+
+    private static LocalDate dateInput(String prompt) {
+        String value = getTextInput(prompt, null);
+        return value == null ? null : LocalDate.parse(value);
+    }
+
     private static void viewStaffMembers() throws SQLException {
+        if (prefetcher != null) {
+            // The staff tables are small, load all of them while the submenu is up
+            prefetcher.prefetch(List.of(View.ALL_STAFF_MEMBERS, View.DESK_STAFF, View.TRAINERS, View.MANAGERS));
+        }
+
         System.out.println("\n=== Staff Members Menu ===");
         System.out.println("1. View All Staff Members");
         System.out.println("2. View Desk Staff Only");
@@ -145,16 +719,16 @@ public class App {
         
         switch (choice) {
             case 1:
-                DatabaseViews.viewAllStaffMembers(conn);
+                showView(View.ALL_STAFF_MEMBERS);
                 break;
             case 2:
-                DatabaseViews.viewDeskStaff(conn);
+                showView(View.DESK_STAFF);
                 break;
             case 3:
-                DatabaseViews.viewTrainers(conn);
+                showView(View.TRAINERS);
                 break;
             case 4:
-                DatabaseViews.viewManagers(conn);
+                showView(View.MANAGERS);
                 break;
             case 0:
                 return;
@@ -163,4 +737,288 @@ public class App {
         }
     }
 
+    private static void viewAllBranches() throws SQLException {
+        System.out.println("\n=== All Branches Menu ===");
+        System.out.println("Branches: " + String.join(", ", branches.branchNames()));
+        System.out.println("1. View Gym Members");
+        System.out.println("2. View Payments");
+        System.out.println("3. View Check-Ins");
+        System.out.println("4. View Branch Totals");
+        System.out.println("0. Back to Main Menu");
+
+        int choice = getIntInput("Enter your choice: ");
+
+        switch (choice) {
+            case 1:
+                DatabaseViews.showConsolidated(View.GYM_MEMBERS, branches.gather(View.GYM_MEMBERS));
+                break;
+            case 2:
+                DatabaseViews.showConsolidated(View.PAYMENTS, branches.gather(View.PAYMENTS));
+                break;
+            case 3:
+                DatabaseViews.showConsolidated(View.CHECK_INS, branches.gather(View.CHECK_INS));
+                break;
+            case 4:
+                DatabaseViews.showBranchTotals(branches.partials(Queries::branchTotals));
+                break;
+            case 0:
+                return;
+            default:
+                System.out.println("Invalid input.");
+        }
+    }
+
+    private static void updatePaymentStatus() throws SQLException {
+        if (payments == null) {
+            System.out.println("Payment updates are not available.");
+            return;
+        }
+        System.out.println("\n=== Update Payment Status ===");
+        int paymentID = getIntInput("Payment ID: ");
+        System.out.print("New status (Success, Failed, Refunded): ");
+        String status = scanner.nextLine().trim();
+        int staffID = getIntInput("Your staff ID: ");
+
+        // The same update entered twice gets the same key, so it is only applied once
+        String key = paymentID + "/" + status + "/" + staffID;
+        PaymentPipeline.PaymentEvent event = new PaymentPipeline.PaymentEvent(key, paymentID, status, staffID);
+        try {
+            PaymentPipeline.Result result = payments.submit(event).join();
+            switch (result) {
+                case APPLIED:
+                    wrote();
+                    System.out.println("Payment " + paymentID + " is now " + status + ".");
+                    Payment payment = router.read(c -> Queries.payment(c, paymentID));
+                    audit(AuditJournal.Table.PAYMENT, ChangeFeed.Operation.UPDATE, paymentID,
+                            payment == null ? 0 : payment.memberID(), staffID, PaymentPipeline.previousStatus(status), status);
+                    break;
+                case CONFLICT:
+                    System.out.println("Payment " + paymentID + " was not changed, it doesn't exist or is not in a status that can become " + status + ".");
+                    break;
+                case DUPLICATE:
+                    System.out.println("This update was already submitted.");
+                    break;
+                case REJECTED:
+                    System.out.println("Invalid status, or too many updates are waiting. Please try again.");
+                    break;
+            }
+        } catch (CompletionException e) {
+            System.out.println("Database error: " + e.getCause().getMessage());
+        }
+        System.out.println("Updates waiting: " + payments.backlog() + ", apply latency: " + payments.applyLatency());
+    }
+
+    // Goes through the terminal's journal when there is one, so it works offline too
+    private static void recordCheckIn() throws SQLException {
+        System.out.println("\n=== Record Check-In ===");
+        int membershipID = getIntInput("Membership ID: ");
+        int staffID = getIntInput("Desk staff ID: ");
+        if (membershipID <= 0 || staffID <= 0) {
+            System.out.println("Invalid input.");
+            return;
+        }
+        String location = getTextInput("Location", "Front Desk");
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        if (replica == null) {
+            router.write(c -> {
+                CheckInJournal.insert(c, membershipID, staffID, now, location);
+                return null;
+            });
+            wrote();
+            System.out.println("Check-in recorded.");
+        } else {
+            try {
+                replica.recordCheckIn(membershipID, staffID, now, location);
+            } catch (IOException e) {
+                throw new SQLException("Couldn't save the check-in on this terminal: " + e.getMessage(), e);
+            }
+            wrote();
+            if (offline) {
+                System.out.println("Check-in saved on this terminal, it will be sent when the database is back.");
+            } else {
+                System.out.println("Check-in recorded.");
+            }
+        }
+        // The member is looked up when the database can be reached, offline it stays unknown
+        Membership membership = null;
+        if (!offline) {
+            try {
+                membership = router.read(c -> Queries.membership(c, membershipID));
+            } catch (SQLException e) {
+                if (replica == null || !Database.connectionLost(e)) {
+                    throw e;
+                }
+                // The check-in is already in the journal, it goes out when the link is back
+                System.out.println("Lost the connection to the database: " + e.getMessage());
+                goOffline();
+            }
+        }
+        // Keyed by the membership, the check-in's own id isn't known until the journal sends it
+        audit(AuditJournal.Table.CHECK_IN, ChangeFeed.Operation.INSERT, membershipID, membership == null ? 0 : membership.memberID(),
+                staffID, null, "membership " + membershipID + " at " + location + ", " + now.toString().replace('T', ' '));
+    }
+
+    private static void auditHistory() throws SQLException {
+        if (audit == null) {
+            System.out.println("The audit trail is not enabled.");
+            return;
+        }
+        int memberID = getIntInput("Member ID: ");
+        try {
+            DatabaseViews.showAuditHistory(memberID, audit.history(memberID));
+        } catch (IOException e) {
+            throw new SQLException("Couldn't read the audit trail: " + e.getMessage(), e);
+        }
+    }
+
+    // Reads input, keeping the current value when the user just presses Enter
+    private static String getTextInput(String prompt, String current) {
+        System.out.print(prompt + " [" + (current == null ? "" : current) + "]: ");
+        String value = scanner.nextLine().trim();
+        return value.isEmpty() ? current : value;
+    }
+
+    private static void updateMemberContact() throws SQLException {
+        if (members == null) {
+            System.out.println("Member updates are not available.");
+            return;
+        }
+        System.out.println("\n=== Update Member Contact Info ===");
+        int memberID = getIntInput("Member ID: ");
+        int staffID = getIntInput("Your staff ID: ");
+        if (staffID <= 0) {
+            System.out.println("Invalid input.");
+            return;
+        }
+        GymMember member = Queries.member(conn, memberID);
+        if (member == null) {
+            System.out.println("No member with ID " + memberID);
+            return;
+        }
+        System.out.println("Editing " + member.firstName() + " " + member.lastName() + ", press Enter to keep a value.");
+        String phoneNumber = getTextInput("Phone number", member.phoneNumber());
+        String email = getTextInput("Email", member.email());
+
+        members.updateContact(member, phoneNumber, email);
+        wrote();
+        audit(AuditJournal.Table.GYM_MEMBER, ChangeFeed.Operation.UPDATE, memberID, memberID, staffID,
+                member.phoneNumber() + ", " + member.email(), phoneNumber + ", " + email);
+        System.out.println("Member " + memberID + " updated.");
+    }
+
+    private static void updateMembershipStatus() throws SQLException {
+        if (members == null) {
+            System.out.println("Member updates are not available.");
+            return;
+        }
+        System.out.println("\n=== Update Membership Status ===");
+        int membershipID = getIntInput("Membership ID: ");
+        int staffID = getIntInput("Your staff ID: ");
+        if (staffID <= 0) {
+            System.out.println("Invalid input.");
+            return;
+        }
+        Membership membership = Queries.membership(conn, membershipID);
+        if (membership == null) {
+            System.out.println("No membership with ID " + membershipID);
+            return;
+        }
+        String status = getTextInput("Status (Active, Paused, Cancelled)", membership.status());
+        if (!status.equals("Active") && !status.equals("Paused") && !status.equals("Cancelled")) {
+            System.out.println("Invalid input.");
+            return;
+        }
+
+        members.updateMembershipStatus(membership, status);
+        wrote();
+        audit(AuditJournal.Table.MEMBERSHIP, ChangeFeed.Operation.UPDATE, membershipID, membership.memberID(), staffID,
+                membership.status(), status);
+        System.out.println("Membership " + membershipID + " is now " + status + ".");
+        if (segments != null) {
+            segments.membershipChanged(conn, membership.memberID());
+        }
+    }
+
+    private static void guestVisits() throws SQLException {
+        if (guests == null) {
+            System.out.println("Guest visits are not available.");
+            return;
+        }
+        System.out.println("\n=== Guest Visits ===");
+        int memberID = getIntInput("Member ID: ");
+        int staffID = getIntInput("Your staff ID: ");
+        if (staffID <= 0) {
+            System.out.println("Invalid input.");
+            return;
+        }
+        GymMember member = Queries.member(conn, memberID);
+        if (member == null) {
+            System.out.println("No member with ID " + memberID);
+            return;
+        }
+        List<Guest> memberGuests = guests.guests(memberID);
+        System.out.println(member.firstName() + " " + member.lastName() + " has " + guests.remaining(memberID)
+                + " of " + guests.monthlyQuota() + " guest visits left this month.");
+        DatabaseViews.showGuests(memberGuests);
+
+        System.out.println("1. Record Guest Visit");
+        System.out.println("2. Add New Guest");
+        System.out.println("0. Back to Main Menu");
+        int choice = getIntInput("Enter your choice: ");
+
+        int guestID;
+        switch (choice) {
+            case 1:
+                int chosen = getIntInput("Guest ID: ");
+                if (memberGuests.stream().noneMatch(g -> g.guestID() == chosen)) {
+                    System.out.println("Guest " + chosen + " is not one of this member's guests.");
+                    return;
+                }
+                guestID = chosen;
+                break;
+            case 2:
+                System.out.print("First name: ");
+                String firstName = scanner.nextLine().trim();
+                System.out.print("Last name: ");
+                String lastName = scanner.nextLine().trim();
+                System.out.print("Relationship to member: ");
+                String relationship = scanner.nextLine().trim();
+                LocalDate birthday;
+                try {
+                    birthday = dateInput("Birthday (YYYY-MM-DD)");
+                } catch (DateTimeParseException e) {
+                    System.out.println("Invalid date.");
+                    return;
+                }
+                if (firstName.isEmpty() || lastName.isEmpty() || relationship.isEmpty() || birthday == null) {
+                    System.out.println("All guest details are required.");
+                    return;
+                }
+                guestID = guests.addGuest(memberID, firstName, lastName, relationship, birthday);
+                System.out.println("Added guest " + guestID + ".");
+                if (!getTextInput("Record a visit for them now? (y/n)", "y").equalsIgnoreCase("y")) {
+                    return;
+                }
+                break;
+            case 0:
+                return;
+            default:
+                System.out.println("Invalid input.");
+                return;
+        }
+
+        switch (guests.recordVisit(guestID)) {
+            case RECORDED:
+                System.out.println("Visit recorded, " + guests.remaining(memberID) + " guest visits left this month.");
+                audit(AuditJournal.Table.GUEST_VISIT, ChangeFeed.Operation.INSERT, guestID, memberID, staffID, null,
+                        "guest " + guestID + ", " + LocalDate.now());
+                break;
+            case QUOTA_REACHED:
+                System.out.println("This member has used all " + guests.monthlyQuota() + " guest visits for this month.");
+                break;
+            case UNKNOWN_GUEST:
+                System.out.println("No guest with ID " + guestID);
+                break;
+        }
+    }
 }
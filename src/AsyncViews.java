@@ -0,0 +1,302 @@
+// Non-blocking access to the views for callers that can't park a thread on each query,
+// such as a web front end serving many desks. Every call returns immediately:
+//  - load(view) gives a CompletableFuture with all the rows
+//  - stream(view) gives a Flow.Publisher that reads rows from the database only as fast
+//    as the subscriber asks for them, so a big table never has to fit in memory
+//
+// JDBC itself blocks, so the queries run on small worker pools with one thread per
+// pooled connection. Thousands of requests can be waiting at once, they just queue up
+// without holding a thread until a connection is free: loads as tasks on the workers,
+// streams in a queue of their own that is handed connections as they come back. (Java 17
+// has no virtual threads, and they would not help much here since the connection count
+// is the limit.)
+//
+// The pool has to be this class's own. Waiting streams are only handed connections that
+// come back through AsyncViews, one released by anything else would sit idle. close()
+// closes the pool too.
+//
+//   java -cp bin:mysql-connector-j.jar AsyncViews <view number>   streams a view to stdout, tab separated
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AsyncViews implements AutoCloseable {
+
+    private static final int EXPORT_BATCH = 500; // rows the export asks for at a time
+
+    private final ConnectionPool pool;
+    private final ExecutorService workers;
+    // Streams read on their own threads: an open stream holds a connection while it waits
+    // for demand, and a load() waiting for that connection must not be able to block the
+    // thread the stream needs to finish. A stream only keeps a thread while it has both a
+    // connection and demand, so one per connection is enough.
+    private final ExecutorService streamers;
+    // Streams waiting for a connection, first come first served
+    private final Queue<RowSubscription<?>> waiting = new ArrayDeque<>();
+
+    public AsyncViews(ConnectionPool pool) {
+        this.pool = pool;
+        this.workers = Executors.newFixedThreadPool(pool.size(), r -> {
+            Thread t = new Thread(r, "async-view");
+            t.setDaemon(true);
+            return t;
+        });
+        this.streamers = Executors.newFixedThreadPool(pool.size(), r -> {
+            Thread t = new Thread(r, "async-view-stream");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        int number = args.length == 1 && args[0].matches("\\d+") ? Integer.parseInt(args[0]) : 0;
+        if (number < 1 || number > View.ALL.size()) {
+            System.out.println("Usage: AsyncViews <view number>");
+            for (int i = 0; i < View.ALL.size(); i++) {
+                System.out.println("  " + (i + 1) + ". " + View.ALL.get(i).name());
+            }
+            return;
+        }
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (AsyncViews views = new AsyncViews(ConnectionPool.open(props, 1))) {
+            export(views, View.ALL.get(number - 1));
+        }
+    }
+
+    // Prints the rows as they arrive, asking for the next batch once the last one is out
+    private static <T> void export(AsyncViews views, View<T> view) {
+        System.out.println(String.join("\t", view.headers()));
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        views.stream(view).subscribe(new Flow.Subscriber<T>() {
+            private Flow.Subscription subscription;
+            private long rows;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(EXPORT_BATCH);
+            }
+
+            @Override
+            public void onNext(T row) {
+                System.out.println(String.join("\t", view.render(row)));
+                if (++rows % EXPORT_BATCH == 0) {
+                    subscription.request(EXPORT_BATCH);
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                done.completeExceptionally(e);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(rows);
+            }
+        });
+        System.out.println(done.join() + " rows");
+    }
+
+    public <T> CompletableFuture<List<T>> load(View<T> view) {
+        return run(view::load);
+    }
+
+    // Any other database work on the same workers and connections
+    public <T> CompletableFuture<T> run(SqlWork<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        workers.execute(() -> {
+            try {
+                result.complete(pool.run(work));
+            } catch (SQLException | RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                handOff();
+            }
+        });
+        return result;
+    }
+
+    // Each subscriber gets its own query, which starts on the first request(n)
+    public <T> Flow.Publisher<T> stream(View<T> view) {
+        return subscriber -> subscriber.onSubscribe(new RowSubscription<>(view, subscriber));
+    }
+
+    // Gives free connections to the streams that have waited longest
+    private void handOff() {
+        synchronized (waiting) {
+            while (!waiting.isEmpty()) {
+                Connection conn = pool.tryBorrow();
+                if (conn == null) {
+                    return;
+                }
+                RowSubscription<?> next = waiting.remove();
+                next.queued = false;
+                next.handed = conn;
+                next.schedule();
+            }
+        }
+    }
+
+    // Reads rows on a stream thread while there is demand, and gives the thread back
+    // whenever the subscriber has all it asked for or no connection is free yet. The
+    // connection stays borrowed until the rows run out or the subscriber cancels.
+    //
+    // Every signal to the subscriber comes from drain(), which never runs twice at once,
+    // so they are serial as Flow requires even when request() and cancel() come in from
+    // other threads.
+    private final class RowSubscription<T> implements Flow.Subscription {
+        private final View<T> view;
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException badRequest;
+        private boolean finished; // only touched by the draining thread
+
+        // Guarded by waiting: whether this stream is queued, and the connection handOff
+        // gave it until drain picks it up
+        private boolean queued;
+        private volatile Connection handed;
+
+        private Connection conn;
+        private PreparedStatement ps;
+        private ResultSet rs;
+
+        RowSubscription(View<T> view, Flow.Subscriber<? super T> subscriber) {
+            this.view = view;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request must be positive, got " + n);
+                schedule();
+                return;
+            }
+            demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                streamers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    if (finished) {
+                        return;
+                    }
+                    if (badRequest != null) {
+                        finish();
+                        subscriber.onError(badRequest);
+                        return;
+                    }
+                    if (cancelled) {
+                        finish();
+                        return;
+                    }
+                    boolean reading = rs != null || open();
+                    if (reading) {
+                        while (demand.get() > 0 && !cancelled && badRequest == null) {
+                            if (!rs.next()) {
+                                finish();
+                                subscriber.onComplete();
+                                return;
+                            }
+                            T row = view.mapper().map(rs);
+                            demand.decrementAndGet();
+                            subscriber.onNext(row);
+                        }
+                    }
+                    scheduled.set(false);
+                    // More demand, a cancel or a connection may have come in after the checks above
+                    boolean more = cancelled || badRequest != null || (reading ? demand.get() > 0 : handed != null);
+                    if (!more || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                finish();
+                subscriber.onError(e);
+            }
+        }
+
+        // Starts the query, or returns false after queueing for a connection
+        private boolean open() throws SQLException {
+            if (conn == null) {
+                synchronized (waiting) {
+                    conn = handed;
+                    handed = null;
+                    if (conn == null && waiting.isEmpty()) {
+                        conn = pool.tryBorrow();
+                    }
+                    if (conn == null) {
+                        if (!queued) {
+                            queued = true;
+                            waiting.add(this);
+                        }
+                        return false;
+                    }
+                }
+            }
+            ps = conn.prepareStatement(view.sql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Tells MySQL Connector/J to stream rows instead of reading the whole result
+            ps.setFetchSize(Integer.MIN_VALUE);
+            rs = ps.executeQuery();
+            return true;
+        }
+
+        private void finish() {
+            finished = true;
+            try {
+                if (ps != null) {
+                    ps.close(); // also closes rs
+                }
+            } catch (SQLException e) {
+                // The rows are done either way
+            }
+            synchronized (waiting) {
+                if (queued) {
+                    waiting.remove(this);
+                    queued = false;
+                }
+                if (handed != null) {
+                    pool.release(handed);
+                    handed = null;
+                }
+            }
+            if (conn != null) {
+                pool.release(conn);
+                conn = null;
+            }
+            handOff();
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        streamers.shutdownNow();
+        pool.close();
+    }
+}
@@ -0,0 +1,717 @@
+// The audit trail of every change the app makes (check-ins, payment status, member and
+// membership edits, guest visits), kept in local files instead of MySQL so auditing doesn't
+// double the writes on the check-in path.
+//
+// Events are appended to memory-mapped segment files in audit.dir (audit-000001.seg, ...)
+// of audit.segmentMegabytes each. Every record has the same layout:
+//   int    length of the whole record
+//   long   sequence number, counting from 1 across all segments
+//   long   time, epoch milliseconds
+//   byte   table, byte operation
+//   int    key of the changed row (the membershipID for a check-in, whose own id comes later)
+//   int    memberID it belongs to (0 when not known), int staffID who made it (0 when not known)
+//   short  old value length, short new value length, then both values as UTF-8
+//   32     HMAC-SHA256 of the previous record's hash followed by everything above
+// so changing, removing or reordering any record breaks every hash after it (verify()).
+// The HMAC key is in audit.keyFile, which has to be outside audit.dir. A new journal gets a
+// new random key, readable only by the account the app runs as where the file system
+// allows it, so rewriting records and their hashes takes the key as well as the files.
+// A zero length marks the end of the written part of a segment.
+//
+// append() only copies into the mapped file; a background thread forces the file to disk
+// every audit.syncMillis, and awaitDurable() waits for the force that covers a record, so
+// many appends share one fsync. When a segment is full the next one is started and the
+// full one gets an index file (audit-000001.idx) of (memberID, offset) pairs sorted by
+// memberID, which is how history() finds one member's events without reading everything.
+// The index ends with the segment's last sequence number and hash, where the next segment's
+// chain carries on.
+//
+// After every force the forced sequence number and its hash are also written to
+// audit.durable, outside the segments. On opening, a record that doesn't match its hash at
+// or before that sequence, or a journal that ends before it, means the files were altered
+// and the journal refuses to open. Only records after it can be a write cut short by a
+// crash; those are moved to a .tail file next to the segment, never just wiped. The app
+// holds a lock on audit.durable while it has the journal open. history and verify below
+// only read, so they work while the app is running.
+//
+//   java -cp bin:mysql-connector-j.jar AuditJournal history <memberID>
+//   java -cp bin:mysql-connector-j.jar AuditJournal verify
+//   java -cp bin:mysql-connector-j.jar AuditJournal bench [events]   (in a temporary directory)
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+public class AuditJournal implements AutoCloseable {
+
+    // Stored by code, so new tables go at the end
+    public enum Table { GYM_MEMBER, MEMBERSHIP, PAYMENT, CHECK_IN, GUEST_VISIT }
+
+    public record Event(long sequence, LocalDateTime at, Table table, ChangeFeed.Operation operation, int key,
+                        int memberID, int staffID, String oldValue, String newValue) {
+    }
+
+    private static final int HEADER = 38;
+    private static final int HASH = 32;
+    private static final int MAX_VALUE = 4000; // bytes, longer values are cut off
+    private static final int CHAIN_END = 8 + HASH; // at the end of an index file
+    private static final int KEY = 32; // bytes
+
+    // audit.durable: two slots of (long sequence, hash, long CRC32 of both) written in turn, so
+    // a write torn by a crash still leaves the other slot
+    private static final class DurableMark {
+        static final int SLOT = 8 + HASH + 8;
+
+        final FileChannel channel; // null when only read
+        final FileLock lock;
+        long sequence;
+        byte[] hash = new byte[HASH];
+        private int nextSlot;
+
+        DurableMark(Path file, boolean write) throws IOException {
+            if (!write) {
+                channel = null;
+                lock = null;
+                if (Files.exists(file)) {
+                    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                        load(in);
+                    }
+                }
+                return;
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            lock = tryLock(channel);
+            if (lock == null) {
+                channel.close();
+                throw new IOException("The audit journal in " + file.getParent() + " is open in another app");
+            }
+            load(channel);
+        }
+
+        private static FileLock tryLock(FileChannel channel) throws IOException {
+            try {
+                return channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                return null;
+            }
+        }
+
+        private void load(FileChannel in) throws IOException {
+            for (int slot = 0; slot < 2; slot++) {
+                ByteBuffer data = ByteBuffer.allocate(SLOT);
+                if (in.read(data, slot * SLOT) < SLOT) {
+                    continue;
+                }
+                long slotSequence = data.getLong(0);
+                CRC32 crc = new CRC32();
+                crc.update(data.array(), 0, 8 + HASH);
+                if (crc.getValue() == data.getLong(8 + HASH) && slotSequence >= sequence) {
+                    sequence = slotSequence;
+                    hash = Arrays.copyOfRange(data.array(), 8, 8 + HASH);
+                    nextSlot = 1 - slot;
+                }
+            }
+        }
+
+        // Called after the records up to sequence were forced. Older marks are skipped, the
+        // syncer and a rotation can get here in either order.
+        synchronized void save(long forced, byte[] forcedHash) throws IOException {
+            if (forced <= sequence) {
+                return;
+            }
+            ByteBuffer data = ByteBuffer.allocate(SLOT);
+            data.putLong(forced).put(forcedHash);
+            CRC32 crc = new CRC32();
+            crc.update(data.array(), 0, 8 + HASH);
+            data.putLong(crc.getValue()).flip();
+            while (data.hasRemaining()) {
+                channel.write(data, nextSlot * SLOT + data.position());
+            }
+            channel.force(false);
+            sequence = forced;
+            hash = forcedHash;
+            nextSlot = 1 - nextSlot;
+        }
+
+        void close() throws IOException {
+            if (channel != null) {
+                lock.release();
+                channel.close();
+            }
+        }
+    }
+
+    private final Path dir;
+    private final boolean readOnly;
+    private final DurableMark mark;
+    private final int segmentBytes;
+    private final Mac hmac;
+    private final ByteBuffer record = ByteBuffer.allocate(HEADER + 2 * MAX_VALUE + HASH);
+    private byte[] lastHash = new byte[HASH];
+    private long lastSequence;
+
+    // The segment being written and its unsorted (memberID, offset) pairs
+    private int segment;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int[] indexMembers = new int[1024];
+    private int[] indexOffsets = new int[1024];
+    private int indexSize;
+
+    private long durableSequence; // everything up to here has been forced to disk
+    private final Thread syncer; // null when read-only
+    private volatile boolean running = true;
+
+    public AuditJournal(Path dir, byte[] key, int segmentBytes, long syncMillis) throws IOException {
+        this(dir, key, segmentBytes, syncMillis, false);
+    }
+
+    // Read-only it doesn't lock, write or repair anything and has no segment of its own, so
+    // it can read the journal while the app is appending to it
+    private AuditJournal(Path dir, byte[] key, int segmentBytes, long syncMillis, boolean readOnly) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.readOnly = readOnly;
+        try {
+            this.hmac = Mac.getInstance("HmacSHA256");
+            hmac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e); // every JVM has HmacSHA256
+        }
+        if (readOnly) {
+            if (!Files.isDirectory(dir)) {
+                throw new IOException("No audit journal in " + dir);
+            }
+            mark = new DurableMark(dir.resolve("audit.durable"), false);
+            syncer = null;
+            return;
+        }
+        Files.createDirectories(dir);
+        mark = new DurableMark(dir.resolve("audit.durable"), true);
+        try {
+            List<Integer> segments = segments();
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (Files.exists(indexFile(segments.get(i)))) {
+                    readChainEnd(segments.get(i));
+                } else {
+                    // A crash between filling a segment and writing its index
+                    openSegment(segments.get(i));
+                    seal();
+                }
+            }
+            openSegment(segments.isEmpty() ? 1 : segments.get(segments.size() - 1));
+            if (lastSequence < mark.sequence) {
+                throw new IOException("Audit journal in " + dir + " ends at record " + lastSequence + " but "
+                        + mark.sequence + " were on disk");
+            }
+        } catch (IOException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            mark.close();
+            throw e;
+        }
+        durableSequence = lastSequence;
+
+        syncer = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(syncMillis);
+                    sync();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "audit-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    public static AuditJournal open(Properties props) throws IOException {
+        Path dir = Paths.get(props.getProperty("audit.dir", "audit"));
+        return new AuditJournal(dir, key(props, dir, true),
+                Database.intProperty(props, "audit.segmentMegabytes", 64) << 20,
+                Database.intProperty(props, "audit.syncMillis", 20));
+    }
+
+    // For reading the journal, also while the app has it open
+    public static AuditJournal openReadOnly(Properties props) throws IOException {
+        Path dir = Paths.get(props.getProperty("audit.dir", "audit"));
+        return new AuditJournal(dir, key(props, dir, false), 0, 0, true);
+    }
+
+    // The journal's HMAC key from audit.keyFile, made when the journal is new
+    private static byte[] key(Properties props, Path dir, boolean create) throws IOException {
+        Path file = Paths.get(props.getProperty("audit.keyFile", "audit.key"));
+        if (file.toAbsolutePath().normalize().startsWith(dir.toAbsolutePath().normalize())) {
+            throw new IOException("audit.keyFile (" + file + ") must be outside audit.dir (" + dir + ")");
+        }
+        if (Files.exists(file)) {
+            byte[] key = Files.readAllBytes(file);
+            if (key.length < KEY) {
+                throw new IOException("The audit key in " + file + " is too short");
+            }
+            return key;
+        }
+        if (!create) {
+            throw new IOException("No audit key in " + file);
+        }
+        if (Files.isDirectory(dir) && !segments(dir).isEmpty()) {
+            // Made without a key, or the key was lost: either way the records can't be checked
+            throw new IOException("The audit journal in " + dir + " has records but its key " + file
+                    + " is missing, move the journal aside to start a new one");
+        }
+        byte[] key = new byte[KEY];
+        new SecureRandom().nextBytes(key);
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "audit-key", ".tmp");
+        try {
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system, the directory's permissions apply
+        }
+        Files.write(temp, key);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        return key;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !List.of("history", "verify", "bench").contains(args[0])) {
+            System.out.println("Usage: AuditJournal history <memberID> | verify | bench [events]");
+            return;
+        }
+        if (args[0].equals("bench")) {
+            bench(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+            return;
+        }
+        Properties props = Database.loadProperties();
+        try (AuditJournal audit = openReadOnly(props)) {
+            if (args[0].equals("history")) {
+                int memberID = Integer.parseInt(args[1]);
+                DatabaseViews.showAuditHistory(memberID, audit.history(memberID));
+            } else {
+                long broken = audit.verify();
+                System.out.println(broken < 0 ? "All " + audit.lastSequence + " records verified"
+                        : "Hash chain broken at record " + broken);
+            }
+        }
+    }
+
+    // Appends events to a throwaway journal, the real one must only hold real changes
+    private static void bench(int events) throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("audit-bench");
+        byte[] key = new byte[KEY];
+        new SecureRandom().nextBytes(key);
+        try (AuditJournal audit = new AuditJournal(dir, key, 64 << 20, 20)) {
+            long start = System.nanoTime();
+            long last = 0;
+            for (int i = 0; i < events; i++) {
+                last = audit.append(Table.CHECK_IN, ChangeFeed.Operation.INSERT, 0, 1 + i % 50_000, 7,
+                        null, "membership " + (i % 60_000) + " at Front Desk");
+            }
+            audit.awaitDurable(last);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d events in %.2f s, %.0f events/s (durable)%n", events, seconds, events / seconds);
+
+            start = System.nanoTime();
+            int found = audit.history(42).size();
+            System.out.printf("history of member 42: %d events in %.1f ms%n", found, (System.nanoTime() - start) / 1e6);
+            start = System.nanoTime();
+            long broken = audit.verify();
+            System.out.printf("verify: %s in %.1f ms%n", broken < 0 ? "ok" : "broken at " + broken, (System.nanoTime() - start) / 1e6);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    // Adds one event and returns its sequence number. It is on disk once awaitDurable
+    // returns for that number.
+    public synchronized long append(Table table, ChangeFeed.Operation operation, int key, int memberID, int staffID,
+                                    String oldValue, String newValue) throws IOException {
+        if (readOnly) {
+            throw new IOException("The audit journal was opened read-only");
+        }
+        byte[] oldBytes = bytes(oldValue);
+        byte[] newBytes = bytes(newValue);
+        int length = HEADER + oldBytes.length + newBytes.length + HASH;
+        if (mapped.remaining() < length + 4) { // leave room for the zero end marker
+            rotate();
+        }
+        long sequence = lastSequence + 1;
+        record.clear();
+        record.putInt(length)
+              .putLong(sequence)
+              .putLong(System.currentTimeMillis())
+              .put((byte) table.ordinal())
+              .put((byte) operation.ordinal())
+              .putInt(key)
+              .putInt(memberID)
+              .putInt(staffID)
+              .putShort((short) oldBytes.length)
+              .putShort((short) newBytes.length)
+              .put(oldBytes)
+              .put(newBytes);
+        hmac.update(lastHash);
+        hmac.update(record.array(), 0, record.position());
+        lastHash = hmac.doFinal();
+        record.put(lastHash);
+
+        int offset = mapped.position();
+        mapped.put(record.array(), 0, length);
+        lastSequence = sequence;
+        addToIndex(memberID, offset);
+        return sequence;
+    }
+
+    // Waits until the event with this sequence number has been forced to disk
+    public synchronized void awaitDurable(long sequence) throws InterruptedException {
+        while (durableSequence < sequence) {
+            wait();
+        }
+    }
+
+    // Every event for a member, oldest first
+    public synchronized List<Event> history(int memberID) throws IOException {
+        List<Event> events = new ArrayList<>();
+        for (int s : segments()) {
+            if (s == segment) {
+                break;
+            }
+            if (!Files.exists(indexFile(s))) {
+                // Not sealed yet, only when read-only
+                scan(map(s, FileChannel.MapMode.READ_ONLY), memberID, events);
+                continue;
+            }
+            try (FileChannel in = FileChannel.open(segmentFile(s), StandardOpenOption.READ);
+                 FileChannel index = FileChannel.open(indexFile(s), StandardOpenOption.READ)) {
+                ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                IntBuffer pairs = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size() - CHAIN_END).asIntBuffer();
+                // Lower bound of memberID among the sorted pairs
+                int lo = 0;
+                int hi = pairs.limit() / 2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (pairs.get(2 * mid) < memberID) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                for (int i = lo; i < pairs.limit() / 2 && pairs.get(2 * i) == memberID; i++) {
+                    events.add(read(data, pairs.get(2 * i + 1)));
+                }
+            }
+        }
+        if (mapped == null) {
+            return events;
+        }
+        ByteBuffer data = mapped.duplicate();
+        for (int i = 0; i < indexSize; i++) {
+            if (indexMembers[i] == memberID) {
+                events.add(read(data, indexOffsets[i]));
+            }
+        }
+        return events;
+    }
+
+    // Recomputes the hash chain over every segment. Returns the sequence number of the first
+    // record that doesn't match, or -1 if they all do. Read-only, records past the last
+    // forced one may still be being written by the app, so a bad one there ends the check.
+    public synchronized long verify() throws IOException {
+        byte[] previous = new byte[HASH];
+        long expected = 1;
+        List<Integer> segments = segments();
+        check:
+        for (int s : segments) {
+            ByteBuffer data = s == segment ? mapped.duplicate() : map(s, FileChannel.MapMode.READ_ONLY);
+            int end = s == segment ? mapped.position() : data.limit();
+            int offset = 0;
+            while (offset + 4 <= end && data.getInt(offset) != 0) {
+                byte[] hash = chainedHash(data, offset, previous);
+                if (hash == null || data.getLong(offset + 4) != expected) {
+                    if (readOnly && expected > mark.sequence && s == segments.get(segments.size() - 1)) {
+                        break check;
+                    }
+                    return expected;
+                }
+                previous = hash;
+                expected++;
+                offset += data.getInt(offset);
+            }
+        }
+        if (readOnly) {
+            lastSequence = expected - 1; // what was checked, for the summary
+            return lastSequence >= mark.sequence ? -1 : expected;
+        }
+        return expected - 1 == lastSequence ? -1 : expected;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (readOnly) {
+            return;
+        }
+        running = false;
+        syncer.interrupt();
+        synchronized (this) {
+            mapped.force();
+            mark.save(lastSequence, lastHash);
+            durableSequence = lastSequence;
+            notifyAll();
+            channel.close();
+            mark.close();
+        }
+    }
+
+    private void sync() {
+        long sequence;
+        byte[] hash;
+        MappedByteBuffer toForce;
+        synchronized (this) {
+            if (durableSequence == lastSequence) {
+                return;
+            }
+            sequence = lastSequence;
+            hash = lastHash;
+            toForce = mapped;
+        }
+        // Outside the lock so appends carry on during the fsync. A rotation in the meantime
+        // has already forced the old segment.
+        toForce.force();
+        try {
+            mark.save(sequence, hash);
+        } catch (IOException e) {
+            // The records are on disk, only the check at the next opening is weaker
+            System.out.println("Couldn't update " + dir.resolve("audit.durable") + ": " + e.getMessage());
+        }
+        synchronized (this) {
+            durableSequence = Math.max(durableSequence, sequence);
+            notifyAll();
+        }
+    }
+
+    // Maps a segment for writing and finds where its records end by following the hash
+    // chain. A bad record at or before the last forced sequence (audit.durable) means the
+    // file was edited and the journal refuses to open. One after it is a write cut off by a
+    // crash, and it and everything after it are moved to a .tail file.
+    private void openSegment(int number) throws IOException {
+        segment = number;
+        channel = FileChannel.open(segmentFile(number), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, channel.size()));
+        indexSize = 0;
+        int offset = 0;
+        while (offset + 4 <= mapped.limit() && mapped.getInt(offset) != 0) {
+            byte[] hash = chainedHash(mapped, offset, lastHash);
+            if (hash == null || mapped.getLong(offset + 4) != lastSequence + 1) {
+                if (lastSequence < mark.sequence) {
+                    throw new IOException("Audit journal " + segmentFile(number) + " was altered after record "
+                            + lastSequence);
+                }
+                break;
+            }
+            lastHash = hash;
+            lastSequence = mapped.getLong(offset + 4);
+            if (lastSequence == mark.sequence && !Arrays.equals(lastHash, mark.hash)) {
+                throw new IOException("Audit journal " + segmentFile(number) + " was altered up to record "
+                        + lastSequence);
+            }
+            addToIndex(mapped.getInt(offset + 26), offset);
+            offset += mapped.getInt(offset);
+        }
+        moveTail(number, offset);
+        mapped.position(offset);
+    }
+
+    // Copies whatever follows the last good record to audit-000001.tail-<sequence> and clears
+    // it in the segment
+    private void moveTail(int number, int offset) throws IOException {
+        int end = mapped.limit();
+        while (end - 8 >= offset && mapped.getLong(end - 8) == 0) {
+            end -= 8;
+        }
+        while (end > offset && mapped.get(end - 1) == 0) {
+            end--;
+        }
+        if (end == offset) {
+            return;
+        }
+        byte[] tail = new byte[end - offset];
+        mapped.get(offset, tail);
+        Path file = dir.resolve(String.format("audit-%06d.tail-%d", number, lastSequence + 1));
+        Files.write(file, tail);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            out.force(true);
+        }
+        for (int i = offset; i < end; i++) {
+            mapped.put(i, (byte) 0);
+        }
+        mapped.force();
+    }
+
+    private void rotate() throws IOException {
+        mapped.force();
+        mark.save(lastSequence, lastHash);
+        durableSequence = lastSequence;
+        notifyAll();
+        seal();
+        openSegment(segment + 1);
+    }
+
+    // Writes the full segment's index and closes it
+    private void seal() throws IOException {
+        long[] pairs = new long[indexSize];
+        for (int i = 0; i < indexSize; i++) {
+            pairs[i] = ((long) indexMembers[i] << 32) | (indexOffsets[i] & 0xffffffffL);
+        }
+        Arrays.sort(pairs); // by memberID, then offset
+        ByteBuffer index = ByteBuffer.allocate(indexSize * 8 + CHAIN_END);
+        for (long pair : pairs) {
+            index.putInt((int) (pair >> 32)).putInt((int) pair);
+        }
+        index.putLong(lastSequence).put(lastHash);
+        Path temp = indexFile(segment).resolveSibling(indexFile(segment).getFileName() + ".tmp");
+        Files.write(temp, index.array());
+        Files.move(temp, indexFile(segment), StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+    }
+
+    // Where a sealed segment's chain ended, from the end of its index
+    private void readChainEnd(int number) throws IOException {
+        byte[] index = Files.readAllBytes(indexFile(number));
+        ByteBuffer end = ByteBuffer.wrap(index, index.length - CHAIN_END, CHAIN_END);
+        lastSequence = end.getLong();
+        lastHash = new byte[HASH];
+        end.get(lastHash);
+    }
+
+    private void addToIndex(int memberID, int offset) {
+        if (memberID == 0) {
+            return;
+        }
+        if (indexSize == indexMembers.length) {
+            indexMembers = Arrays.copyOf(indexMembers, indexSize * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        }
+        indexMembers[indexSize] = memberID;
+        indexOffsets[indexSize] = offset;
+        indexSize++;
+    }
+
+    // The record's hash if it is whole and follows previous, otherwise null
+    private byte[] chainedHash(ByteBuffer data, int offset, byte[] previous) {
+        int length = data.getInt(offset);
+        if (length < HEADER + HASH || offset + length > data.limit()) {
+            return null;
+        }
+        byte[] body = new byte[length - HASH];
+        data.get(offset, body);
+        hmac.update(previous);
+        byte[] hash = hmac.doFinal(body);
+        byte[] stored = new byte[HASH];
+        data.get(offset + length - HASH, stored);
+        return Arrays.equals(hash, stored) ? hash : null;
+    }
+
+    // A member's events in a segment without an index, by reading every record
+    private static void scan(ByteBuffer data, int memberID, List<Event> events) {
+        int offset = 0;
+        while (offset + 4 <= data.limit() && data.getInt(offset) != 0) {
+            int length = data.getInt(offset);
+            if (length < HEADER + HASH || offset + length > data.limit()) {
+                return;
+            }
+            if (data.getInt(offset + 26) == memberID) {
+                events.add(read(data, offset));
+            }
+            offset += length;
+        }
+    }
+
+    private static Event read(ByteBuffer data, int offset) {
+        int oldLength = data.getShort(offset + 34);
+        int newLength = data.getShort(offset + 36);
+        byte[] oldBytes = new byte[oldLength];
+        byte[] newBytes = new byte[newLength];
+        data.get(offset + HEADER, oldBytes);
+        data.get(offset + HEADER + oldLength, newBytes);
+        return new Event(
+                data.getLong(offset + 4),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(data.getLong(offset + 12)), ZoneId.systemDefault()),
+                Table.values()[data.get(offset + 20)],
+                ChangeFeed.Operation.values()[data.get(offset + 21)],
+                data.getInt(offset + 22),
+                data.getInt(offset + 26),
+                data.getInt(offset + 30),
+                oldLength == 0 ? null : new String(oldBytes, StandardCharsets.UTF_8),
+                newLength == 0 ? null : new String(newBytes, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_VALUE ? bytes : Arrays.copyOf(bytes, MAX_VALUE);
+    }
+
+    private ByteBuffer map(int number, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel in = FileChannel.open(segmentFile(number), StandardOpenOption.READ)) {
+            return in.map(mode, 0, in.size());
+        }
+    }
+
+    private List<Integer> segments() throws IOException {
+        return segments(dir);
+    }
+
+    private static List<Integer> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.matches("audit-\\d{6}\\.seg"))
+                    .map(name -> Integer.valueOf(name.substring(6, 12)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentFile(int number) {
+        return dir.resolve(String.format("audit-%06d.seg", number));
+    }
+
+    private Path indexFile(int number) {
+        return dir.resolve(String.format("audit-%06d.idx", number));
+    }
+}
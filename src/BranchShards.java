@@ -0,0 +1,150 @@
+// One connection per gym branch, for the HQ views that show every branch at once.
+// A view is run on all branches in parallel and the already sorted results are merged
+// by the view's key, so the consolidated view takes as long as the slowest branch.
+//
+// Branches are listed in app.properties:
+//   branches=downtown,uptown
+//   branch.downtown.url=jdbc:mysql://10.0.0.5:3306/gym
+//   branch.downtown.username=...   (optional, defaults to db.username / db.password)
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BranchShards implements AutoCloseable {
+
+    // A row tagged with the branch it came from, ids are only unique within a branch
+    public record BranchRow<T>(String branch, T row) {
+    }
+
+    private final Map<String, Connection> branches;
+    private final ExecutorService pool;
+
+    private BranchShards(Map<String, Connection> branches) {
+        this.branches = branches;
+        this.pool = Executors.newFixedThreadPool(branches.size(), r -> {
+            Thread t = new Thread(r, "branch-query");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Connects to every branch in the branches property, or returns null when it isn't set
+    public static BranchShards open(Properties props) throws SQLException {
+        String list = props.getProperty("branches");
+        if (list == null || list.isBlank()) {
+            return null;
+        }
+        Map<String, Connection> branches = new LinkedHashMap<>();
+        try {
+            for (String name : list.split(",")) {
+                name = name.trim();
+                String prefix = "branch." + name + ".";
+                String url = props.getProperty(prefix + "url");
+                if (url == null) {
+                    throw new SQLException("No " + prefix + "url in app.properties");
+                }
+                branches.put(name, DriverManager.getConnection(url,
+                        props.getProperty(prefix + "username", props.getProperty("db.username")),
+                        props.getProperty(prefix + "password", props.getProperty("db.password"))));
+            }
+        } catch (SQLException e) {
+            for (Connection conn : branches.values()) {
+                conn.close();
+            }
+            throw e;
+        }
+        return new BranchShards(branches);
+    }
+
+    public List<String> branchNames() {
+        return new ArrayList<>(branches.keySet());
+    }
+
+    // Runs the same query on every branch at once and returns each branch's result
+    public <A> Map<String, A> partials(SqlWork<A> query) throws SQLException {
+        Map<String, Future<A>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Connection> branch : branches.entrySet()) {
+            Connection conn = branch.getValue();
+            futures.put(branch.getKey(), pool.submit(() -> query.run(conn)));
+        }
+
+        Map<String, A> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<A>> future : futures.entrySet()) {
+            try {
+                results.put(future.getKey(), future.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while querying branch " + future.getKey(), e);
+            } catch (ExecutionException e) {
+                throw new SQLException("Branch " + future.getKey() + ": " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return results;
+    }
+
+    // Runs a view on every branch and merges the rows in the view's sort order
+    public <T> List<BranchRow<T>> gather(View<T> view) throws SQLException {
+        Map<String, List<T>> perBranch = partials(view::load);
+        return merge(perBranch, view.order());
+    }
+
+    // k-way merge of lists that are each already sorted
+    static <T> List<BranchRow<T>> merge(Map<String, List<T>> perBranch, Comparator<T> order) {
+        final class Cursor {
+            final String branch;
+            final List<T> rows;
+            int next;
+
+            Cursor(String branch, List<T> rows) {
+                this.branch = branch;
+                this.rows = rows;
+            }
+
+            T current() {
+                return rows.get(next);
+            }
+        }
+
+        int total = 0;
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, perBranch.size()),
+                (a, b) -> order.compare(a.current(), b.current()));
+        for (Map.Entry<String, List<T>> branch : perBranch.entrySet()) {
+            total += branch.getValue().size();
+            if (!branch.getValue().isEmpty()) {
+                heap.add(new Cursor(branch.getKey(), branch.getValue()));
+            }
+        }
+
+        List<BranchRow<T>> merged = new ArrayList<>(total);
+        while (!heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            merged.add(new BranchRow<>(cursor.branch, cursor.current()));
+            cursor.next++;
+            if (cursor.next < cursor.rows.size()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        for (Connection conn : branches.values()) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // Nothing useful to do while shutting down
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+import java.math.BigDecimal;
+
+// Per-branch counts for the HQ summary. Each branch computes its own partial totals and
+// HQ adds them up with plus(), so no branch has to ship its rows.
+public record BranchTotals(
+        long members,
+        long activeMemberships,
+        BigDecimal successfulPayments,
+        long checkIns) {
+
+    public static final BranchTotals ZERO = new BranchTotals(0, 0, BigDecimal.ZERO, 0);
+
+    public BranchTotals plus(BranchTotals other) {
+        return new BranchTotals(
+                members + other.members,
+                activeMemberships + other.activeMemberships,
+                successfulPayments.add(other.successfulPayments),
+                checkIns + other.checkIns);
+    }
+}
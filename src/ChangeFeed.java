@@ -0,0 +1,284 @@
+// Watches GymMember, Membership, Payment and CheckIn for new rows and passes them on to
+// anything in the app that keeps those tables in memory, so caches can be updated
+// row by row instead of re-running the full SELECT ... ORDER BY queries.
+//
+// Reading the MySQL binlog needs a replication client library we don't ship, so this
+// polls each table with an AUTO_INCREMENT watermark ("give me rows with id > last seen").
+// A watermark only ever sees inserts. The version columns count edits per row rather than
+// across the table, so they can't be polled the same way either. Updates are published by
+// the code that makes them instead, right after the commit: MemberService for members and
+// memberships, PaymentPipeline for payment statuses. Edits made at other desks don't come
+// through here, the cache's version probe picks those up.
+//
+// AUTO_INCREMENT ids are handed out when a row is inserted, not when it commits, so a
+// lower id can show up after a higher one. Ids skipped over by the watermark are kept as
+// gaps and looked up again on every poll until their row appears or gapMillis passes (a
+// rolled back insert leaves a gap that never fills).
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ChangeFeed implements AutoCloseable {
+
+    // Tables the feed knows how to follow, with their AUTO_INCREMENT key column and the
+    // mapper for their rows. The key is the first column of each mapper's column list.
+    public static final class Table<T> {
+        public static final Table<GymMember> GYM_MEMBER =
+                new Table<>("GymMember", "gm", "memberID", RowMappers.GYM_MEMBER_COLUMNS, RowMappers.GYM_MEMBER);
+        public static final Table<Membership> MEMBERSHIP =
+                new Table<>("Membership", "ms", "membershipID", RowMappers.MEMBERSHIP_COLUMNS, RowMappers.MEMBERSHIP);
+        public static final Table<Payment> PAYMENT =
+                new Table<>("Payment", "p", "paymentID", RowMappers.PAYMENT_COLUMNS, RowMappers.PAYMENT);
+        public static final Table<CheckIn> CHECK_IN =
+                new Table<>("CheckIn", "c", "checkInID", RowMappers.CHECK_IN_COLUMNS, RowMappers.CHECK_IN);
+
+        public static final List<Table<?>> ALL = List.of(GYM_MEMBER, MEMBERSHIP, PAYMENT, CHECK_IN);
+
+        public final String tableName;
+        public final String alias;
+        public final String keyColumn;
+        final String columns;
+        final RowMappers.RowMapper<T> mapper;
+
+        private Table(String tableName, String alias, String keyColumn, String columns, RowMappers.RowMapper<T> mapper) {
+            this.tableName = tableName;
+            this.alias = alias;
+            this.keyColumn = keyColumn;
+            this.columns = columns;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public String toString() {
+            return tableName;
+        }
+    }
+
+    public enum Operation { INSERT, UPDATE, DELETE }
+
+    // row is null for deletes
+    public record ChangeEvent<T>(Table<T> table, Operation operation, int key, T row) {
+        @Override
+        public String toString() {
+            return operation + " " + table.tableName + "#" + key;
+        }
+    }
+
+    public interface Listener<T> {
+        void onChange(ChangeEvent<T> event);
+    }
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_GAPS = 10_000; // per table, a bigger jump is a bulk rollback rather than rows in flight
+    private static final long DEFAULT_GAP_MILLIS = 60_000;
+
+    // The feed gets its own connection because JDBC connections are not safe to share
+    // with the menu thread
+    private final Connection conn;
+    private final long pollMillis;
+    private final long gapMillis;
+    private final Map<Table<?>, Integer> watermarks = new LinkedHashMap<>();
+    // Ids below the watermark not seen yet, with when they were first skipped
+    private final Map<Table<?>, TreeMap<Integer, Long>> gaps = new LinkedHashMap<>();
+    private final Map<Table<?>, List<Listener<?>>> listeners = new LinkedHashMap<>();
+    private ScheduledExecutorService poller;
+
+    public ChangeFeed(Connection conn, long pollMillis) {
+        this(conn, pollMillis, DEFAULT_GAP_MILLIS);
+    }
+
+    public ChangeFeed(Connection conn, long pollMillis, long gapMillis) {
+        this.conn = conn;
+        this.pollMillis = pollMillis;
+        this.gapMillis = gapMillis;
+        for (Table<?> table : Table.ALL) {
+            listeners.put(table, new CopyOnWriteArrayList<>());
+            gaps.put(table, new TreeMap<>());
+        }
+    }
+
+    public <T> void subscribe(Table<T> table, Listener<T> listener) {
+        listeners.get(table).add(listener);
+    }
+
+    public <T> void unsubscribe(Table<T> table, Listener<T> listener) {
+        listeners.get(table).remove(listener);
+    }
+
+    // Starts from the current max id of every table, so only rows added after this call
+    // are published. Subscribers are expected to do their own initial load.
+    public synchronized void start() throws SQLException {
+        if (poller != null) {
+            return;
+        }
+        startWatermarks();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Lets the app's own write paths report updates and deletes the watermark can't see.
+    // Listeners run on the caller's thread, so call it after the change has committed.
+    public <T> void publish(ChangeEvent<T> event) {
+        for (Listener<?> listener : listeners.get(event.table())) {
+            @SuppressWarnings("unchecked") // subscribe() only files a Listener<T> under a Table<T>
+            Listener<T> typed = (Listener<T>) listener;
+            typed.onChange(event);
+        }
+    }
+
+    // Runs one polling round on the caller's thread and returns how many events went out.
+    // Before start() the first call only sets the watermarks, like start() does.
+    public synchronized int pollNow() throws SQLException {
+        if (watermarks.isEmpty()) {
+            startWatermarks();
+            return 0;
+        }
+        int published = 0;
+        for (Table<?> table : Table.ALL) {
+            published += pollTable(table);
+        }
+        return published;
+    }
+
+    private void startWatermarks() throws SQLException {
+        if (!watermarks.isEmpty()) {
+            return;
+        }
+        // All or nothing, so a failed query can't leave some tables without a watermark
+        Map<Table<?>, Integer> start = new LinkedHashMap<>();
+        for (Table<?> table : Table.ALL) {
+            start.put(table, currentMaxKey(table));
+        }
+        watermarks.putAll(start);
+    }
+
+    private void pollQuietly() {
+        try {
+            pollNow();
+        } catch (SQLException e) {
+            // Keep polling, a dropped connection should not kill the feed thread
+            System.out.println("Change feed error: " + e.getMessage());
+        }
+    }
+
+    private <T> int pollTable(Table<T> table) throws SQLException {
+        TreeMap<Integer, Long> tableGaps = gaps.get(table);
+        if (listeners.get(table).isEmpty()) {
+            // Nobody is listening, but keep the watermark moving so a late subscriber
+            // doesn't get flooded with old rows
+            watermarks.put(table, currentMaxKey(table));
+            tableGaps.clear();
+            return 0;
+        }
+
+        int published = pollGaps(table, tableGaps);
+
+        String key = table.alias + "." + table.keyColumn;
+        String sql = "SELECT " + table.columns + " " +
+                     "FROM " + table.tableName + " " + table.alias + " " +
+                     "WHERE " + key + " > ? " +
+                     "ORDER BY " + key + " " +
+                     "LIMIT " + BATCH_SIZE + ";";
+
+        int watermark = watermarks.get(table);
+        boolean more = true;
+        while (more) {
+            List<ChangeEvent<T>> batch = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, watermark);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        for (int missing = Math.max(watermark + 1, id - MAX_GAPS); missing < id; missing++) {
+                            tableGaps.put(missing, now);
+                        }
+                        watermark = id;
+                        batch.add(new ChangeEvent<>(table, Operation.INSERT, id, table.mapper.map(rs)));
+                    }
+                }
+            }
+            while (tableGaps.size() > MAX_GAPS) {
+                tableGaps.pollFirstEntry();
+            }
+            for (ChangeEvent<T> event : batch) {
+                publish(event);
+            }
+            published += batch.size();
+            more = batch.size() == BATCH_SIZE;
+        }
+        watermarks.put(table, watermark);
+        return published;
+    }
+
+    // Publishes the rows that have turned up in the table's gaps and forgets gaps older
+    // than gapMillis
+    private <T> int pollGaps(Table<T> table, TreeMap<Integer, Long> tableGaps) throws SQLException {
+        long oldest = System.currentTimeMillis() - gapMillis;
+        tableGaps.values().removeIf(seen -> seen < oldest);
+        int published = 0;
+        Iterator<Integer> ids = new ArrayList<>(tableGaps.keySet()).iterator();
+        while (ids.hasNext()) {
+            List<Integer> chunk = new ArrayList<>();
+            while (ids.hasNext() && chunk.size() < BATCH_SIZE) {
+                chunk.add(ids.next());
+            }
+            String sql = "SELECT " + table.columns + " " +
+                         "FROM " + table.tableName + " " + table.alias + " " +
+                         "WHERE " + table.alias + "." + table.keyColumn + " IN (" +
+                         String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") " +
+                         "ORDER BY " + table.alias + "." + table.keyColumn + ";";
+            List<ChangeEvent<T>> found = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setInt(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found.add(new ChangeEvent<>(table, Operation.INSERT, rs.getInt(1), table.mapper.map(rs)));
+                    }
+                }
+            }
+            for (ChangeEvent<T> event : found) {
+                tableGaps.remove(event.key());
+                publish(event);
+            }
+            published += found.size();
+        }
+        return published;
+    }
+
+    private int currentMaxKey(Table<?> table) throws SQLException {
+        String sql = "SELECT COALESCE(MAX(" + table.keyColumn + "), 0) FROM " + table.tableName + ";";
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // Nothing useful to do while shutting down
+        }
+    }
+}
@@ -0,0 +1,10 @@
+import java.time.LocalDateTime;
+
+// One row of CheckIn
+public record CheckIn(
+        int checkInID,
+        int membershipID,
+        int staffID,
+        LocalDateTime ts,
+        String location) {
+}
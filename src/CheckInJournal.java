@@ -0,0 +1,331 @@
+// Check-ins recorded at this terminal, written to a local append-only file before anything
+// else so a member can be checked in while the central database can't be reached. Each
+// line is one check-in and is forced to disk before record() returns. The first line holds
+// a random id for the journal, and the file is locked while the app has it open.
+//
+// replay() sends the lines that haven't been sent yet to the CheckIn table in batches. How
+// far this terminal got, and in which journal, is kept in the central CheckInJournal table
+// and is updated in the same transaction as the batch, so a crash or a dropped link in the
+// middle never inserts a check-in twice or loses one. An offset saved for another journal
+// id, or past the end of the file (the file was deleted or restored from an old copy),
+// means the whole file is sent. A line the database refuses (a membership or desk staff
+// member that doesn't exist) is moved to the .rejected file next to the journal instead of
+// holding up the ones after it. Once every line is in the database the file starts over
+// with a new id, so it only ever holds what is still unsent.
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class CheckInJournal implements AutoCloseable {
+
+    private static final int BATCH = 500;
+
+    private static final String HEADER = "journal\t";
+
+    private static final String OFFSET_SQL =
+            "SELECT journalID, replayedBytes FROM CheckInJournal WHERE terminal = ? FOR UPDATE;";
+
+    private static final String SAVE_OFFSET_SQL =
+            "INSERT INTO CheckInJournal (terminal, journalID, replayedBytes) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE journalID = VALUES(journalID), replayedBytes = VALUES(replayedBytes);";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO CheckIn (membershipID, staffID, ts, location) VALUES (?, ?, ?, ?);";
+
+    // One line of the journal and the byte offset just after it
+    private record Line(int membershipID, int staffID, LocalDateTime ts, String location, long end) {
+    }
+
+    private final Path file;
+    private final Path rejected;
+    private final String terminal;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private String journalID;
+    private long start; // where the check-ins begin, just after the id line
+    private long replayed; // what this terminal last heard from the database, start until then
+
+    public CheckInJournal(Path file, String terminal) throws IOException {
+        this.file = file;
+        this.rejected = file.resolveSibling(file.getFileName() + ".rejected");
+        this.terminal = terminal;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.lock = tryLock(channel);
+        if (lock == null) {
+            channel.close();
+            throw new IOException(file + " is in use by another app on this terminal");
+        }
+        String header = header();
+        if (header == null) {
+            if (lastLineEnd() > 0) {
+                channel.close();
+                throw new IOException(file + " is not a check-in journal");
+            }
+            // A new file, or a crash while starting it over, which only happens once every
+            // line in it was sent
+            startOver();
+        } else {
+            journalID = header.substring(HEADER.length());
+            start = header.length() + 1;
+            // A line cut short by a crash was never acknowledged, drop it
+            long end = Math.max(start, lastLineEnd());
+            channel.truncate(end);
+            channel.position(end);
+        }
+        replayed = start;
+    }
+
+    // For a terminal without a journal, straight into the database
+    public static void insert(Connection conn, int membershipID, int staffID, LocalDateTime ts, String location) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setInt(1, membershipID);
+            ps.setInt(2, staffID);
+            ps.setObject(3, ts);
+            ps.setString(4, location);
+            ps.executeUpdate();
+        }
+        QueryCache.changed("CheckIn");
+    }
+
+    public synchronized void record(int membershipID, int staffID, LocalDateTime ts, String location) throws IOException {
+        String clean = location == null ? "" : location.replaceAll("[\\t\\r\\n]", " ");
+        byte[] line = (membershipID + "\t" + staffID + "\t" + ts + "\t" + clean + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    // Check-ins written here that the database hasn't confirmed yet, as far as this terminal
+    // knows (all of them until the first replay)
+    public synchronized int pending() throws IOException {
+        return read(replayed).size();
+    }
+
+    // Sends everything not yet in the database and starts the file over once all of it is
+    // there. Returns how many check-ins were inserted.
+    public synchronized int replay(Connection conn) throws SQLException, IOException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        int inserted = 0;
+        try {
+            replayed = offset(conn);
+            List<Line> lines = read(replayed);
+            conn.commit();
+            for (int from = 0; from < lines.size(); from += BATCH) {
+                List<Line> batch = lines.subList(from, Math.min(lines.size(), from + BATCH));
+                try {
+                    inserted += insert(conn, batch);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    if (!refused(e)) {
+                        throw e;
+                    }
+                    // Find the bad lines one at a time
+                    for (Line line : batch) {
+                        try {
+                            inserted += insert(conn, List.of(line));
+                        } catch (SQLException lineError) {
+                            conn.rollback();
+                            if (!refused(lineError)) {
+                                throw lineError;
+                            }
+                            skip(conn, line);
+                            reject(line, lineError.getMessage());
+                        }
+                    }
+                }
+                replayed = batch.get(batch.size() - 1).end();
+            }
+            if (replayed > start && replayed == channel.size()) {
+                startOver();
+                replayed = start;
+            }
+            return inserted;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Inserts the lines and moves the offset past them, in one transaction
+    private int insert(Connection conn, List<Line> lines) throws SQLException {
+        long at = offset(conn);
+        // Another replay of the same journal (another app using the same terminal name) got here first
+        List<Line> todo = new ArrayList<>();
+        for (Line line : lines) {
+            if (line.end() > at) {
+                todo.add(line);
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (Line line : todo) {
+                ps.setInt(1, line.membershipID());
+                ps.setInt(2, line.staffID());
+                ps.setObject(3, line.ts());
+                ps.setString(4, line.location().isEmpty() ? null : line.location());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        saveOffset(conn, Math.max(at, lines.get(lines.size() - 1).end()));
+        conn.commit();
+        if (!todo.isEmpty()) {
+            QueryCache.changed("CheckIn");
+        }
+        return todo.size();
+    }
+
+    // Moves the offset past a line the database refused
+    private void skip(Connection conn, Line line) throws SQLException {
+        saveOffset(conn, Math.max(offset(conn), line.end()));
+        conn.commit();
+    }
+
+    // SQLSTATE class 23 is a constraint violation, the batch exception carries the
+    // statement's state or has it as its cause
+    private static boolean refused(SQLException e) {
+        return (e.getSQLState() != null && e.getSQLState().startsWith("23"))
+                || e.getCause() instanceof SQLIntegrityConstraintViolationException;
+    }
+
+    // Locks this terminal's row until the transaction ends. An offset saved for a different
+    // journal, or past the end of this one, means none of this file has been sent.
+    private long offset(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(OFFSET_SQL)) {
+            ps.setString(1, terminal);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || !journalID.equals(rs.getString(1))) {
+                    return start;
+                }
+                long offset = rs.getLong(2);
+                return offset < start || offset > channel.size() ? start : offset;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Couldn't read the size of " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void saveOffset(Connection conn, long offset) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SAVE_OFFSET_SQL)) {
+            ps.setString(1, terminal);
+            ps.setString(2, journalID);
+            ps.setLong(3, offset);
+            ps.executeUpdate();
+        }
+    }
+
+    // The lines from the offset on, read straight from the channel so the file can be any size
+    private List<Line> read(long from) throws IOException {
+        List<Line> lines = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long position = Math.max(from, start);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String[] fields = line.toString(StandardCharsets.UTF_8).split("\t", -1);
+                lines.add(new Line(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        LocalDateTime.parse(fields[2]), fields[3], position + i + 1));
+                line.reset();
+            }
+            position += read;
+        }
+        return lines;
+    }
+
+    // null when another app, or another journal in this one, holds the file
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    // The id line, or null if the file doesn't start with a whole one
+    private String header() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER.length() + 64);
+        int read = channel.read(buffer, 0);
+        for (int i = 0; i < read; i++) {
+            if (buffer.get(i) == '\n') {
+                String header = new String(buffer.array(), 0, i, StandardCharsets.UTF_8);
+                return header.startsWith(HEADER) ? header : null;
+            }
+        }
+        return null;
+    }
+
+    // The offset just after the last newline, found by reading back from the end
+    private long lastLineEnd() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0) {
+            long from = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - from));
+            int read = channel.read(buffer, from);
+            for (int i = read - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            end = from;
+        }
+        return 0;
+    }
+
+    // Empties the file and gives it a new id. Only called when every line in it is in the
+    // database, so a crash half way leaves nothing unsent.
+    private void startOver() throws IOException {
+        journalID = UUID.randomUUID().toString();
+        byte[] header = (HEADER + journalID + "\n").getBytes(StandardCharsets.UTF_8);
+        channel.truncate(0);
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        channel.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(true);
+        start = header.length;
+        channel.position(start);
+    }
+
+    private void reject(Line line, String reason) throws IOException {
+        String text = line.membershipID() + "\t" + line.staffID() + "\t" + line.ts() + "\t" + line.location()
+                + "\t" + reason + "\n";
+        Files.writeString(rejected, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.release();
+        channel.close();
+    }
+}
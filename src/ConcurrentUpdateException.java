@@ -0,0 +1,13 @@
+import java.sql.SQLException;
+
+// Thrown when an edit can't be saved because someone else changed the same row first
+// (its version moved on), or because another desk is still busy editing that member.
+// The caller should reload the row and try again.
+public class ConcurrentUpdateException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,80 @@
+// A fixed set of connections shared by background work that can run on several threads
+// at once. A caller borrows a connection for one piece of work and hands it back.
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class ConnectionPool implements AutoCloseable {
+
+    private final List<Connection> all;
+    private final BlockingQueue<Connection> idle;
+
+    public ConnectionPool(List<Connection> connections) {
+        this.all = new ArrayList<>(connections);
+        this.idle = new ArrayBlockingQueue<>(connections.size(), false, connections);
+    }
+
+    // Opens size connections to db.url
+    public static ConnectionPool open(Properties props, int size) throws SQLException {
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < size; i++) {
+                connections.add(Database.connect(props));
+            }
+        } catch (SQLException e) {
+            for (Connection conn : connections) {
+                conn.close();
+            }
+            throw e;
+        }
+        return new ConnectionPool(connections);
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    // Runs the work on a pooled connection, waiting for one to be free if needed
+    public <T> T run(SqlWork<T> work) throws SQLException {
+        Connection conn = borrow();
+        try {
+            return work.run(conn);
+        } finally {
+            release(conn);
+        }
+    }
+
+    // For work that keeps a connection across several calls (e.g. a streamed result),
+    // every borrow() must be matched by a release()
+    public Connection borrow() throws SQLException {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    // A free connection, or null right away if they are all borrowed
+    public Connection tryBorrow() {
+        return idle.poll();
+    }
+
+    public void release(Connection conn) {
+        idle.add(conn);
+    }
+
+    @Override
+    public void close() {
+        for (Connection conn : all) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // Nothing useful to do while shutting down
+            }
+        }
+    }
+}
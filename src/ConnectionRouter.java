@@ -0,0 +1,198 @@
+// Sends read-only view queries to read replicas so reporting doesn't compete with the
+// front desk's writes on the primary. Writes always go to the primary, and for a short
+// while after a write reads go there too, so staff see what they just saved.
+// A replica that is too far behind (or not replicating at all) is skipped.
+//
+//   db.replica.urls=jdbc:mysql://10.0.0.6:3306/gym,jdbc:mysql://10.0.0.7:3306/gym
+//   db.replica.maxLagSeconds=5
+//   db.replica.stickyMillis=2000
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class ConnectionRouter implements AutoCloseable {
+
+    private static final long LAG_CHECK_MILLIS = 1000;
+
+    private static final class Replica {
+        final String name;
+        final Connection conn;
+        long lagSeconds = Long.MAX_VALUE;
+        long checkedAt;
+
+        Replica(String name, Connection conn) {
+            this.name = name;
+            this.conn = conn;
+        }
+    }
+
+    // Latency numbers for one route (primary or a replica)
+    public static final class RouteStats {
+        long calls;
+        long totalNanos;
+        long maxNanos;
+
+        synchronized void record(long nanos) {
+            calls++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public synchronized long calls() {
+            return calls;
+        }
+
+        public synchronized double averageMillis() {
+            return calls == 0 ? 0 : totalNanos / 1_000_000.0 / calls;
+        }
+
+        public synchronized double maxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+    }
+
+    private final Connection primary;
+    private final List<Replica> replicas;
+    private final long maxLagSeconds;
+    private final long stickyMillis;
+    private final Map<String, RouteStats> stats = new LinkedHashMap<>();
+    private int nextReplica;
+    private long lastWriteAt;
+
+    public ConnectionRouter(Connection primary, List<Connection> replicaConns, long maxLagSeconds, long stickyMillis) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>();
+        for (int i = 0; i < replicaConns.size(); i++) {
+            replicas.add(new Replica("replica-" + (i + 1), replicaConns.get(i)));
+        }
+        this.maxLagSeconds = maxLagSeconds;
+        this.stickyMillis = stickyMillis;
+        stats.put("primary", new RouteStats());
+        for (Replica replica : replicas) {
+            stats.put(replica.name, new RouteStats());
+        }
+    }
+
+    // Builds a router around the primary connection, connecting to any replicas listed in
+    // app.properties. A replica that can't be reached is left out with a message.
+    public static ConnectionRouter open(Properties props, Connection primary) {
+        List<Connection> replicaConns = new ArrayList<>();
+        String urls = props.getProperty("db.replica.urls", "");
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            try {
+                replicaConns.add(DriverManager.getConnection(url.trim(),
+                        props.getProperty("db.username"), props.getProperty("db.password")));
+            } catch (SQLException e) {
+                System.out.println("Skipping replica " + url.trim() + ": " + e.getMessage());
+            }
+        }
+        return new ConnectionRouter(primary, replicaConns,
+                Database.intProperty(props, "db.replica.maxLagSeconds", 5),
+                Database.intProperty(props, "db.replica.stickyMillis", 2000));
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    // Runs read-only work on a replica when one is fresh enough, otherwise on the primary
+    public synchronized <T> T read(SqlWork<T> work) throws SQLException {
+        Replica replica = pickReplica();
+        if (replica == null) {
+            return timed("primary", primary, work);
+        }
+        return timed(replica.name, replica.conn, work);
+    }
+
+    // Runs work that changes data, always on the primary
+    public synchronized <T> T write(SqlWork<T> work) throws SQLException {
+        try {
+            return timed("primary", primary, work);
+        } finally {
+            markWrite();
+        }
+    }
+
+    // For writes made on other primary connections (e.g. the payment pipeline), so the
+    // next reads still see them
+    public synchronized void markWrite() {
+        lastWriteAt = System.currentTimeMillis();
+    }
+
+    public synchronized Map<String, RouteStats> stats() {
+        return new LinkedHashMap<>(stats);
+    }
+
+    private <T> T timed(String route, Connection conn, SqlWork<T> work) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return work.run(conn);
+        } finally {
+            stats.get(route).record(System.nanoTime() - start);
+        }
+    }
+
+    // Round robin over the replicas that are within the lag limit, or null for the primary
+    private Replica pickReplica() {
+        if (replicas.isEmpty() || System.currentTimeMillis() - lastWriteAt < stickyMillis) {
+            return null;
+        }
+        for (int tried = 0; tried < replicas.size(); tried++) {
+            Replica replica = replicas.get(nextReplica);
+            nextReplica = (nextReplica + 1) % replicas.size();
+            if (currentLag(replica) <= maxLagSeconds) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    // Lag is checked at most once a second per replica
+    private long currentLag(Replica replica) {
+        long now = System.currentTimeMillis();
+        if (now - replica.checkedAt >= LAG_CHECK_MILLIS) {
+            replica.lagSeconds = queryLag(replica.conn);
+            replica.checkedAt = now;
+        }
+        return replica.lagSeconds;
+    }
+
+    // Seconds_Behind_Source from the replica, or MAX_VALUE when replication is stopped
+    // or the server can't be asked. MySQL before 8.0.22 only knows the SLAVE wording.
+    private static long queryLag(Connection conn) {
+        String[][] statements = {
+            {"SHOW REPLICA STATUS", "Seconds_Behind_Source"},
+            {"SHOW SLAVE STATUS", "Seconds_Behind_Master"}
+        };
+        for (String[] statement : statements) {
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(statement[0])) {
+                if (!rs.next()) {
+                    return Long.MAX_VALUE; // not configured as a replica
+                }
+                long lag = rs.getLong(statement[1]);
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            } catch (SQLException e) {
+                // Try the older wording
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            try {
+                replica.conn.close();
+            } catch (SQLException e) {
+                // Nothing useful to do while shutting down
+            }
+        }
+    }
+}
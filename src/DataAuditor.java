@@ -0,0 +1,241 @@
+// Looks for rows that break the gym's rules but get past the constraints in tables.sql:
+//   - memberships still marked Active after their end date
+//   - staff members with no Desk, Trainer or Manager row (role "None" in the staff view)
+//   - check-ins on a day their membership didn't cover
+//   - two memberships of the same member covering the same days
+//
+//   java -cp bin:mysql-connector-j.jar DataAuditor [--threads 4] [--chunk 50000] [--max-load 50] [--samples 10]
+//
+// Each check walks its table by primary key in chunks of --chunk ids, and the chunks of all
+// checks are shared out between --threads connections, so a large table is read by several
+// short indexed range queries at once instead of one long scan. --max-load is the share of
+// its time (in percent) each thread may spend running queries; after a chunk it rests for
+// long enough to stay under it, which keeps the audit from crowding out the desks. To
+// audit a read replica instead, run with -Ddb.url=<replica url>.
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DataAuditor {
+
+    // One rule. sql returns the id and a description of every row breaking it whose key is
+    // in [?, ?) of the table it walks.
+    public record Check(String name, String table, String keyColumn, String sql) {
+    }
+
+    // Checks use the membership's dates rather than its current status: a check-in on a
+    // membership that was cancelled later was fine when it happened. Cancelled memberships
+    // don't count as overlapping, since cancelling early and starting a new plan is normal.
+    public static final List<Check> CHECKS = List.of(
+            new Check("Active membership past its end date", "Membership", "membershipID",
+                    "SELECT ms.membershipID, CONCAT('member ', ms.memberID, ', ended ', ms.endDate) " +
+                    "FROM Membership ms " +
+                    "WHERE ms.membershipID >= ? AND ms.membershipID < ? " +
+                    "AND ms.status = 'Active' AND ms.endDate < CURRENT_DATE;"),
+            new Check("Staff member with no role", "StaffMember", "staffID",
+                    "SELECT sm.staffID, CONCAT(sm.firstName, ' ', sm.lastName) " +
+                    "FROM StaffMember sm " +
+                    "LEFT JOIN Desk d ON sm.staffID = d.staffID " +
+                    "LEFT JOIN Trainer t ON sm.staffID = t.staffID " +
+                    "LEFT JOIN Manager m ON sm.staffID = m.staffID " +
+                    "WHERE sm.staffID >= ? AND sm.staffID < ? " +
+                    "AND d.staffID IS NULL AND t.staffID IS NULL AND m.staffID IS NULL;"),
+            new Check("Check-in outside its membership", "CheckIn", "checkInID",
+                    "SELECT c.checkInID, CONCAT('membership ', ms.membershipID, ' (', ms.startDate, ' to ', ms.endDate, "
+                    + "'), checked in ', c.ts) " +
+                    "FROM CheckIn c " +
+                    "JOIN Membership ms ON c.membershipID = ms.membershipID " +
+                    "WHERE c.checkInID >= ? AND c.checkInID < ? " +
+                    "AND (c.ts < ms.startDate OR c.ts >= ms.endDate + INTERVAL 1 DAY);"),
+            new Check("Overlapping memberships", "Membership", "membershipID",
+                    "SELECT a.membershipID, CONCAT('member ', a.memberID, ', overlaps membership ', b.membershipID) " +
+                    "FROM Membership a " +
+                    "JOIN Membership b ON b.memberID = a.memberID AND b.membershipID > a.membershipID " +
+                    "WHERE a.membershipID >= ? AND a.membershipID < ? " +
+                    "AND a.status <> 'Cancelled' AND b.status <> 'Cancelled' " +
+                    "AND a.startDate <= b.endDate AND b.startDate <= a.endDate;"));
+
+    // What one check found. samples are the lowest ids, as {id, description}.
+    public record Finding(Check check, long violations, long chunks, List<String[]> samples) {
+    }
+
+    // Counts for one check, filled in by every thread
+    private static final class Tally {
+        final AtomicLong violations = new AtomicLong();
+        final AtomicLong chunks = new AtomicLong();
+        final TreeMap<Integer, String> samples = new TreeMap<>();
+    }
+
+    private final ConnectionPool pool;
+    private final int chunkSize;
+    private final int maxLoadPercent;
+    private final int sampleCount;
+    private final AtomicLong chunksDone = new AtomicLong();
+
+    public DataAuditor(ConnectionPool pool, int chunkSize, int maxLoadPercent, int sampleCount) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.maxLoadPercent = Math.max(1, Math.min(100, maxLoadPercent));
+        this.sampleCount = sampleCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 4;
+        int chunk = 50_000;
+        int maxLoad = 50;
+        int samples = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--chunk": chunk = Integer.parseInt(args[i + 1]); break;
+                case "--max-load": maxLoad = Integer.parseInt(args[i + 1]); break;
+                case "--samples": samples = Integer.parseInt(args[i + 1]); break;
+                default:
+                    System.out.println("Usage: DataAuditor [--threads N] [--chunk IDS] [--max-load PERCENT] [--samples N]");
+                    return;
+            }
+        }
+
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (ConnectionPool pool = ConnectionPool.open(props, threads)) {
+            DataAuditor auditor = new DataAuditor(pool, chunk, maxLoad, samples);
+            long start = System.nanoTime();
+            List<Finding> findings = auditor.run(CHECKS, threads);
+            System.out.printf("Checked %d chunks in %.1f s with %d threads%n",
+                    auditor.chunksDone.get(), (System.nanoTime() - start) / 1e9, threads);
+            report(findings);
+        }
+    }
+
+    // Runs the checks on threads threads (at most one per pooled connection)
+    public List<Finding> run(List<Check> checks, int threads) throws SQLException, InterruptedException {
+        List<Tally> tallies = new ArrayList<>();
+        List<Runnable> chunks = new ArrayList<>();
+        for (Check check : checks) {
+            Tally tally = new Tally();
+            tallies.add(tally);
+            long[] range = pool.run(conn -> keyRange(conn, check));
+            for (long from = range[0]; from <= range[1]; from += chunkSize) {
+                long chunkFrom = from;
+                chunks.add(() -> scan(check, tally, chunkFrom, chunkFrom + chunkSize));
+            }
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(threads, pool.size()));
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (Runnable chunk : chunks) {
+                pending.add(workers.submit(chunk));
+            }
+            long lastProgress = System.nanoTime();
+            for (Future<?> future : pending) {
+                future.get();
+                if (System.nanoTime() - lastProgress > 5_000_000_000L) {
+                    System.out.printf("  %d of %d chunks checked%n", chunksDone.get(), chunks.size());
+                    lastProgress = System.nanoTime();
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause().getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause().getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        List<Finding> findings = new ArrayList<>();
+        for (int i = 0; i < checks.size(); i++) {
+            Tally tally = tallies.get(i);
+            List<String[]> samples = new ArrayList<>();
+            synchronized (tally.samples) {
+                for (Map.Entry<Integer, String> sample : tally.samples.entrySet()) {
+                    samples.add(new String[]{String.valueOf(sample.getKey()), sample.getValue()});
+                }
+            }
+            findings.add(new Finding(checks.get(i), tally.violations.get(), tally.chunks.get(), samples));
+        }
+        return findings;
+    }
+
+    private static long[] keyRange(Connection conn, Check check) throws SQLException {
+        String sql = "SELECT COALESCE(MIN(" + check.keyColumn() + "), 0), COALESCE(MAX(" + check.keyColumn() + "), -1) " +
+                     "FROM " + check.table() + ";";
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    // One chunk of one check, then a rest to keep under maxLoadPercent
+    private void scan(Check check, Tally tally, long from, long to) {
+        long start = System.nanoTime();
+        try {
+            pool.run(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(check.sql())) {
+                    ps.setLong(1, from);
+                    ps.setLong(2, to);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            tally.violations.incrementAndGet();
+                            sample(tally, rs.getInt(1), rs.getString(2));
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        tally.chunks.incrementAndGet();
+        chunksDone.incrementAndGet();
+
+        long busyNanos = System.nanoTime() - start;
+        long restMillis = busyNanos * (100 - maxLoadPercent) / maxLoadPercent / 1_000_000;
+        if (restMillis > 0) {
+            try {
+                Thread.sleep(restMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Keeps the sampleCount lowest ids
+    private void sample(Tally tally, int id, String description) {
+        synchronized (tally.samples) {
+            if (tally.samples.size() < sampleCount) {
+                tally.samples.put(id, description);
+            } else if (sampleCount > 0 && id < tally.samples.lastKey()) {
+                tally.samples.pollLastEntry();
+                tally.samples.put(id, description);
+            }
+        }
+    }
+
+    private static void report(List<Finding> findings) {
+        List<String[]> rows = new ArrayList<>();
+        for (Finding finding : findings) {
+            rows.add(new String[]{finding.check().name(), String.valueOf(finding.violations()), String.valueOf(finding.chunks())});
+        }
+        System.out.println();
+        DatabaseViews.printTable(new String[]{"Check", "Violations", "Chunks"}, new int[]{38, 12, 8}, rows);
+        for (Finding finding : findings) {
+            if (finding.samples().isEmpty()) {
+                continue;
+            }
+            System.out.println("\n" + finding.check().name() + " (" + finding.samples().size() + " of " + finding.violations() + "):");
+            DatabaseViews.printTable(new String[]{finding.check().keyColumn(), "Detail"}, new int[]{14, 70}, finding.samples());
+        }
+    }
+}
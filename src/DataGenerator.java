@@ -0,0 +1,416 @@
+// Fills the database from tables.sql with made-up data so views and load tests can be
+// tried at something like production size. Run it from the project root:
+//
+//   java -cp bin:mysql-connector-j.jar DataGenerator <scale> [threads] [--reset]
+//
+// Scale 1 is about 1,000 members, 30 staff, 1,500 memberships, 3,000 payments and
+// 3,000 check-ins, and everything grows linearly up to scale 1000. --reset runs
+// tables.sql first and membership_summary.sql after loading, so the summary triggers
+// don't slow down the bulk insert. The same scale always produces the same rows, with dates relative
+// to the day it runs.
+//
+// Ids are assigned here instead of by AUTO_INCREMENT so the foreign keys can be worked
+// out without reading anything back. They start after the highest id already in each
+// table, so without --reset the rows are added to what is there (reusing its plans), and
+// every CHECK in tables.sql holds: startDate < endDate, amount > 0, payments and
+// check-ins are taken by Desk staff, check-ins only on Active memberships.
+import java.sql.*;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DataGenerator {
+
+    private static final int MEMBERS_PER_SCALE = 1000;
+    private static final int STAFF_PER_SCALE = 30;
+    private static final int PLANS_PER_TYPE = 2;
+    private static final int MEMBERS_PER_CHUNK = 2000;
+    private static final int BATCH_SIZE = 1000;
+    private static final long SEED = 157;
+
+    private static final String[] FIRST_NAMES = {"James", "Maria", "Wei", "Aisha", "Carlos", "Priya", "Liam", "Sofia", "Kenji", "Fatima", "Noah", "Elena", "Omar", "Grace", "Mateo", "Hana"};
+    private static final String[] LAST_NAMES = {"Smith", "Garcia", "Chen", "Khan", "Lopez", "Patel", "Kim", "Nguyen", "Brown", "Silva", "Ali", "Cohen", "Rossi", "Okafor", "Jones", "Tanaka"};
+    private static final String[] PLAN_TYPES = {"Monthly", "Monthly Premium", "Annual"};
+    private static final String[] PLAN_PRICES = {"29.99", "49.99", "299.99"};
+    private static final String[] LOCATIONS = {"Main Entrance", "Side Entrance", "Pool Entrance", "Parking Garage"};
+    private static final String[] PAYMENT_TYPES = {"CASH", "CARD", "ONLINE"};
+    private static final String[] SPECIALTIES = {"Strength", "Cardio", "Yoga", "CrossFit", "Pilates", "Boxing"};
+    private static final String[] DEPARTMENTS = {"Operations", "Sales", "Membership", "Facilities", "Training"};
+
+    // The highest id in each table before this run, new rows are numbered after them
+    record Bases(int member, int staff, int membership, int guest) {
+    }
+
+    // A plan members can be put on, type is an index into PLAN_TYPES and price is what the
+    // database charges for that type
+    record PlanChoice(int planID, int type, BigDecimal price) {
+    }
+
+    // Staff ids are split into three contiguous ranges after the existing staff: desk, then
+    // trainers, then managers
+    static final class StaffLayout {
+        final int base;
+        final int total;
+        final int desk;
+        final int trainers;
+
+        StaffLayout(int scale, int base) {
+            this.base = base;
+            total = STAFF_PER_SCALE * scale;
+            desk = total / 2;
+            trainers = total * 35 / 100;
+        }
+
+        int firstDesk() {
+            return base + 1;
+        }
+
+        int firstTrainer() {
+            return base + desk + 1;
+        }
+
+        int firstManager() {
+            return base + desk + trainers + 1;
+        }
+
+        int last() {
+            return base + total;
+        }
+
+        int randomDesk(Random random) {
+            return firstDesk() + random.nextInt(desk);
+        }
+
+        int randomTrainer(Random random) {
+            return firstTrainer() + random.nextInt(trainers);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: DataGenerator <scale 1-1000> [threads] [--reset]");
+            return;
+        }
+        int scale = Integer.parseInt(args[0]);
+        if (scale < 1 || scale > 1000) {
+            System.out.println("Scale must be between 1 and 1000");
+            return;
+        }
+        int threads = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        boolean reset = List.of(args).contains("--reset");
+
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        long start = System.nanoTime();
+        generate(props, scale, threads, reset);
+        System.out.printf("Generated scale %d in %.1f s%n", scale, (System.nanoTime() - start) / 1e9);
+    }
+
+    public static void generate(Properties props, int scale, int threads, boolean reset) throws Exception {
+        int members = MEMBERS_PER_SCALE * scale;
+        Bases bases;
+        StaffLayout staff;
+        List<PlanChoice> plans;
+
+        try (Connection conn = Database.connect(props)) {
+            if (reset) {
+                Database.runScript(conn, Path.of("src", "tables.sql"));
+            }
+            bases = bases(conn);
+            staff = new StaffLayout(scale, bases.staff());
+            conn.setAutoCommit(false);
+            plans = plans(conn);
+            insertStaff(conn, staff, new Random(SEED));
+            conn.commit();
+        }
+
+        // Members and everything hanging off them are generated in independent chunks
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> chunks = new ArrayList<>();
+            for (int first = 1; first <= members; first += MEMBERS_PER_CHUNK) {
+                int from = first;
+                int to = Math.min(members, first + MEMBERS_PER_CHUNK - 1);
+                chunks.add(pool.submit(() -> {
+                    try (Connection conn = Database.connect(props)) {
+                        conn.setAutoCommit(false);
+                        insertMemberChunk(conn, from, to, bases, staff, plans, new Random(SEED + from));
+                        conn.commit();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> chunk : chunks) {
+                chunk.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (reset) {
+            try (Connection conn = Database.connect(props)) {
+                Database.runScript(conn, MembershipSummaries.SCRIPT);
+                MembershipSummaries.rebuild(conn);
+            }
+        }
+    }
+
+    private static Bases bases(Connection conn) throws SQLException {
+        String sql = "SELECT (SELECT COALESCE(MAX(memberID), 0) FROM GymMember), " +
+                     "       (SELECT COALESCE(MAX(staffID), 0) FROM StaffMember), " +
+                     "       (SELECT COALESCE(MAX(membershipID), 0) FROM Membership), " +
+                     "       (SELECT COALESCE(MAX(guestID), 0) FROM Guest);";
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return new Bases(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4));
+        }
+    }
+
+    // The plans already in the database, or PLANS_PER_TYPE new ones of each type when
+    // there are none. Prices come from PlanType either way, PLAN_PRICES only fills in the
+    // types it doesn't have yet.
+    private static List<PlanChoice> plans(Connection conn) throws SQLException {
+        List<PlanChoice> plans = existingPlans(conn);
+        if (!plans.isEmpty()) {
+            return plans;
+        }
+        try (PreparedStatement type = conn.prepareStatement("INSERT IGNORE INTO PlanType (planType, price) VALUES (?, ?)");
+             PreparedStatement plan = conn.prepareStatement("INSERT INTO Plan (planID, planType) VALUES (?, ?)")) {
+            for (int i = 0; i < PLAN_TYPES.length; i++) {
+                type.setString(1, PLAN_TYPES[i]);
+                type.setBigDecimal(2, new BigDecimal(PLAN_PRICES[i]));
+                type.addBatch();
+            }
+            type.executeBatch();
+            for (int i = 0; i < PLAN_TYPES.length * PLANS_PER_TYPE; i++) {
+                plan.setInt(1, i + 1);
+                plan.setString(2, PLAN_TYPES[i % PLAN_TYPES.length]);
+                plan.addBatch();
+            }
+            plan.executeBatch();
+        }
+        return existingPlans(conn);
+    }
+
+    private static List<PlanChoice> existingPlans(Connection conn) throws SQLException {
+        return RowMappers.query(conn, Queries.PLANS_SQL,
+                rs -> new PlanChoice(rs.getInt(1), Arrays.asList(PLAN_TYPES).indexOf(rs.getString(2)), rs.getBigDecimal(3)));
+    }
+
+    private static void insertStaff(Connection conn, StaffLayout layout, Random random) throws SQLException {
+        try (PreparedStatement staff = conn.prepareStatement(
+                     "INSERT INTO StaffMember (staffID, firstName, lastName, phoneNumber, email, hireDate, salary) VALUES (?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement desk = conn.prepareStatement(
+                     "INSERT INTO Desk (staffID, schedule, deskLocation, responsibility) VALUES (?, ?, ?, ?)");
+             PreparedStatement trainer = conn.prepareStatement(
+                     "INSERT INTO Trainer (staffID, specialty, schedule, certificationLevel, experience) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement manager = conn.prepareStatement(
+                     "INSERT INTO Manager (staffID, department, officeLocation, experience) VALUES (?, ?, ?, ?)")) {
+            for (int id = layout.firstDesk(); id <= layout.last(); id++) {
+                String first = pick(random, FIRST_NAMES);
+                String last = pick(random, LAST_NAMES);
+                staff.setInt(1, id);
+                staff.setString(2, first);
+                staff.setString(3, last);
+                staff.setString(4, String.format("408%07d", id));
+                staff.setString(5, (first + "." + last + ".s" + id + "@gym.example").toLowerCase());
+                staff.setObject(6, LocalDate.of(2010, 1, 1).plusDays(random.nextInt(5000)));
+                staff.setBigDecimal(7, BigDecimal.valueOf(30000 + random.nextInt(70000)));
+                staff.addBatch();
+
+                if (id < layout.firstTrainer()) {
+                    desk.setInt(1, id);
+                    desk.setString(2, randomShift(random));
+                    desk.setString(3, pick(random, LOCATIONS));
+                    desk.setString(4, random.nextBoolean() ? "Check-ins" : "Payments");
+                    desk.addBatch();
+                } else if (id < layout.firstManager()) {
+                    trainer.setInt(1, id);
+                    trainer.setString(2, pick(random, SPECIALTIES));
+                    trainer.setString(3, randomShift(random));
+                    trainer.setString(4, "Level " + (1 + random.nextInt(3)));
+                    trainer.setInt(5, random.nextInt(20));
+                    trainer.addBatch();
+                } else {
+                    manager.setInt(1, id);
+                    manager.setString(2, pick(random, DEPARTMENTS));
+                    manager.setString(3, "Office " + id); // officeLocation is UNIQUE
+                    manager.setInt(4, 1 + random.nextInt(25));
+                    manager.addBatch();
+                }
+            }
+            staff.executeBatch();
+            desk.executeBatch();
+            trainer.executeBatch();
+            manager.executeBatch();
+        }
+    }
+
+    // from and to count the members of this run from 1, ids are offset by the bases
+    private static void insertMemberChunk(Connection conn, int from, int to, Bases bases, StaffLayout staff,
+                                          List<PlanChoice> plans, Random random) throws SQLException {
+        try (Batch members = new Batch(conn,
+                     "INSERT INTO GymMember (memberID, firstName, lastName, birthday, phoneNumber, email, dateJoined) VALUES (?, ?, ?, ?, ?, ?, ?)");
+             Batch memberships = new Batch(conn,
+                     "INSERT INTO Membership (membershipID, memberID, planID, startDate, endDate, status) VALUES (?, ?, ?, ?, ?, ?)");
+             Batch payments = new Batch(conn,
+                     "INSERT INTO Payment (staffID, memberID, amount, paymentType, dateOfPayment, status) VALUES (?, ?, ?, ?, ?, ?)");
+             Batch checkIns = new Batch(conn,
+                     "INSERT INTO CheckIn (membershipID, staffID, ts, location) VALUES (?, ?, ?, ?)");
+             Batch guests = new Batch(conn,
+                     "INSERT INTO Guest (guestID, memberID, firstName, lastName, relationshipToMember, birthday) VALUES (?, ?, ?, ?, ?, ?)");
+             Batch guestVisits = new Batch(conn,
+                     "INSERT INTO GuestVisit (guestID, visitDate) VALUES (?, ?)");
+             Batch training = new Batch(conn,
+                     "INSERT INTO TrainerTrainsMember (trainerID, memberID) VALUES (?, ?)")) {
+
+            LocalDate today = LocalDate.now();
+            for (int n = from; n <= to; n++) {
+                int memberID = bases.member() + n;
+                String first = pick(random, FIRST_NAMES);
+                String last = pick(random, LAST_NAMES);
+                LocalDate joined = today.minusDays(random.nextInt(3 * 365));
+                members.add(memberID, first, last,
+                        LocalDate.of(1960, 1, 1).plusDays(random.nextInt(45 * 365)),
+                        String.format("650%07d", memberID),
+                        (first + "." + last + "." + memberID + "@mail.example").toLowerCase(),
+                        joined);
+
+                // One or two memberships back to back, so they never overlap. Membership ids
+                // are the n * 2 - 1th and n * 2th after the base.
+                int count = random.nextInt(10) < 5 ? 1 : 2;
+                LocalDate start = joined;
+                for (int k = 0; k < count; k++) {
+                    PlanChoice plan = plans.get(random.nextInt(plans.size()));
+                    int months = PLAN_TYPES[plan.type()].equals("Annual") ? 12 : 1 + random.nextInt(6);
+                    LocalDate end = start.plusMonths(months);
+                    String status = end.isBefore(today) ? "Cancelled" : (random.nextInt(10) == 0 ? "Paused" : "Active");
+                    int membershipID = bases.membership() + n * 2 - 1 + k;
+                    memberships.add(membershipID, memberID, plan.planID(), start, end, status);
+
+                    // Two payments per membership, mostly successful
+                    for (int p = 0; p < 2; p++) {
+                        int roll = random.nextInt(100);
+                        String paymentStatus = roll < 85 ? "Success" : roll < 92 ? "Pending" : roll < 97 ? "Failed" : "Refunded";
+                        LocalDate paid = start.plusDays(random.nextInt(28));
+                        payments.add(staff.randomDesk(random), memberID,
+                                plan.price(),
+                                pick(random, PAYMENT_TYPES), paid.isAfter(today) ? today : paid, paymentStatus);
+                    }
+
+                    // Visits spread over the membership, bunched before work and after work.
+                    // Paused and Cancelled memberships don't get any.
+                    int visits = start.isAfter(today) || !status.equals("Active") ? 0 : 4 + random.nextInt(16);
+                    long days = Math.max(1, ChronoUnit.DAYS.between(start, end.isAfter(today) ? today : end));
+                    for (int v = 0; v < visits; v++) {
+                        LocalDateTime ts = start.plusDays(random.nextInt((int) days)).atTime(randomVisitHour(random), random.nextInt(60));
+                        checkIns.add(membershipID, staff.randomDesk(random), ts, pick(random, LOCATIONS));
+                    }
+                    start = end;
+                }
+
+                if (random.nextInt(10) == 0) {
+                    int guestID = bases.guest() + n;
+                    guests.add(guestID, memberID, pick(random, FIRST_NAMES), last,
+                            random.nextBoolean() ? "Friend" : "Family",
+                            LocalDate.of(1970, 1, 1).plusDays(random.nextInt(40 * 365)));
+                    for (int v = random.nextInt(4); v > 0; v--) {
+                        guestVisits.add(guestID, today.minusDays(random.nextInt(90)));
+                    }
+                }
+
+                if (staff.trainers > 0 && random.nextInt(5) == 0) {
+                    training.add(staff.randomTrainer(random), memberID);
+                }
+            }
+        }
+    }
+
+    // Visit hour with peaks at 6-9am and 5-8pm
+    private static int randomVisitHour(Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 35) {
+            return 6 + random.nextInt(3);
+        }
+        if (roll < 80) {
+            return 17 + random.nextInt(3);
+        }
+        return 9 + random.nextInt(8);
+    }
+
+    private static String randomShift(Random random) {
+        String[] days = {"Mon-Fri", "Sat-Sun", "Mon-Wed", "Thu-Sun"};
+        int startHour = 5 + random.nextInt(10);
+        return String.format("%s %02d:00-%02d:00", pick(random, days), startHour, startHour + 8);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // A prepared INSERT that is sent every BATCH_SIZE rows. Before a batch is sent, the
+    // batches opened before it (the parent tables) are sent first so foreign keys resolve.
+    // try-with-resources closes the last opened batch first, and that close sends every
+    // open batch in the order they were opened.
+    private static final class Batch implements AutoCloseable {
+        private static final ThreadLocal<List<Batch>> OPEN = ThreadLocal.withInitial(ArrayList::new);
+
+        private final PreparedStatement ps;
+        private int pending;
+
+        Batch(Connection conn, String sql) throws SQLException {
+            this.ps = conn.prepareStatement(sql);
+            OPEN.get().add(this);
+        }
+
+        void add(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                ps.setObject(i + 1, values[i]);
+            }
+            ps.addBatch();
+            if (++pending >= BATCH_SIZE) {
+                // Flush the parent tables first so this batch's foreign keys exist
+                for (Batch batch : OPEN.get()) {
+                    if (batch == this) {
+                        break;
+                    }
+                    batch.flush();
+                }
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (pending > 0) {
+                ps.executeBatch();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            List<Batch> open = OPEN.get();
+            try {
+                if (!open.isEmpty() && open.get(open.size() - 1) == this) {
+                    for (Batch batch : open) {
+                        batch.flush();
+                    }
+                }
+            } finally {
+                open.remove(this);
+                ps.close();
+            }
+        }
+    }
+}
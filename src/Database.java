@@ -0,0 +1,97 @@
+// Loads app.properties and opens connections, so App and the background helpers
+// (change feed, prefetcher, ...) all connect the same way.
+import java.sql.*;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+public class Database {
+
+    // A setting passed with -Dkey=value on the command line wins over the file, e.g. for
+    // StartupBenchmark to compare startup.fastStart on and off
+    public static Properties loadProperties() throws IOException {
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream("app.properties")) {
+            props.load(in);
+        }
+        for (String key : props.stringPropertyNames()) {
+            String override = System.getProperty(key);
+            if (override != null) {
+                props.setProperty(key, override);
+            }
+        }
+        return props;
+    }
+
+    public static void loadDriver(Properties props) throws ClassNotFoundException {
+        Class.forName(props.getProperty("db.driver", "com.mysql.cj.jdbc.Driver"));
+    }
+
+    // Opens a new connection to the database in db.url
+    public static Connection connect(Properties props) throws SQLException {
+        return DriverManager.getConnection(
+                props.getProperty("db.url"),
+                props.getProperty("db.username"),
+                props.getProperty("db.password"));
+    }
+
+    // Whether the error means the link to the server is gone (SQLSTATE class 08, which is what
+    // the MySQL driver reports for a dropped or refused connection) rather than a bad query
+    public static boolean connectionLost(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLNonTransientConnectionException || t instanceof SQLTransientConnectionException
+                    || t instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (t instanceof SQLException && ((SQLException) t).getSQLState() != null
+                    && ((SQLException) t).getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reads an int setting, falling back to the default when it is missing or not a number
+    public static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean booleanProperty(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    // Runs a SQL script such as tables.sql, one statement at a time. Lines starting with
+    // -- are comments, and statements end with a semicolon.
+    public static void runScript(Connection conn, Path script) throws IOException, SQLException {
+        StringBuilder statement = new StringBuilder();
+        try (Statement st = conn.createStatement()) {
+            for (String line : Files.readAllLines(script)) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("--")) {
+                    continue;
+                }
+                int comment = line.indexOf("--");
+                statement.append(comment >= 0 ? line.substring(0, comment) : line).append('\n');
+                if (trimmed.endsWith(";") || (comment >= 0 && line.substring(0, comment).trim().endsWith(";"))) {
+                    String sql = statement.toString().trim();
+                    st.execute(sql.substring(0, sql.length() - 1));
+                    statement.setLength(0);
+                }
+            }
+            if (!statement.toString().isBlank()) {
+                st.execute(statement.toString());
+            }
+        }
+    }
+}
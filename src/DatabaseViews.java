@@ -1,9 +1,50 @@
-//This java file was made so the App.java does not have 1000+ lines of code. 
+//This java file was made so the App.java does not have 1000+ lines of code.
 import java.sql.*;
+import java.lang.management.MemoryUsage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class DatabaseViews {
 
-    // Used to print the table rows in a organized way 
+    // Headers and starting column widths for each table, widths grow to fit the data
+    static final String[] MEMBER_HEADERS = {"Member ID", "First Name", "Last Name", "Birthday", "Phone Number", "Email", "Date Joined"};
+    static final int[] MEMBER_WIDTHS = {10, 15, 15, 12, 15, 25, 12};
+
+    static final String[] MEMBERSHIP_HEADERS = {"Member ID", "First Name", "Last Name", "Status", "Plan Type", "Price", "Start Date", "End Date"};
+    static final int[] MEMBERSHIP_WIDTHS = {10, 15, 15, 15, 15, 12, 12, 12};
+
+    static final String[] STAFF_HEADERS = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Role"};
+    static final int[] STAFF_WIDTHS = {10, 15, 15, 15, 25, 12, 12, 10};
+
+    static final String[] DESK_HEADERS = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Schedule", "Desk Location", "Responsibility"};
+    static final int[] DESK_WIDTHS = {10, 15, 15, 15, 25, 12, 12, 20, 15, 20};
+
+    static final String[] TRAINER_HEADERS = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Specialty", "Schedule", "Certification Level", "Experience"};
+    static final int[] TRAINER_WIDTHS = {10, 15, 15, 15, 25, 12, 12, 20, 20, 20, 10};
+
+    static final String[] MANAGER_HEADERS = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Department", "Office Location", "Experience"};
+    static final int[] MANAGER_WIDTHS = {10, 15, 15, 15, 25, 12, 12, 20, 20, 10};
+
+    static final String[] PLAN_HEADERS = {"Plan ID", "Plan Type", "Price"};
+    static final int[] PLAN_WIDTHS = {10, 20, 12};
+
+    static final String[] PAYMENT_HEADERS = {"Payment ID", "Staff ID", "Member ID", "Amount", "Payment Type", "Date of Payment", "Status"};
+    static final int[] PAYMENT_WIDTHS = {12, 10, 12, 12, 15, 15, 12};
+
+    static final String[] GUEST_HEADERS = {"Guest ID", "First Name", "Last Name", "Relationship", "Birthday"};
+    static final int[] GUEST_WIDTHS = {10, 15, 15, 15, 12};
+
+    static final String[] CHECK_IN_HEADERS = {"Check-In ID", "Membership ID", "Staff ID", "Timestamp", "Location"};
+    static final int[] CHECK_IN_WIDTHS = {12, 15, 10, 20, 15};
+
+    // Used to print the table rows in a organized way
     private static void printTableRow(String[] values, int[] widths) {
         System.out.print("|");
         for (int i = 0; i < values.length; i++) {
@@ -12,7 +53,7 @@ public class DatabaseViews {
         System.out.println();
     }
 
-    // Used to make the columns in the table much more organized 
+    // Used to make the columns in the table much more organized
     private static void printTableSeparator(int[] widths) {
         System.out.print("+");
         for (int width : widths) {
@@ -24,997 +65,700 @@ public class DatabaseViews {
         System.out.println();
     }
 
+    // Sizes the columns to fit the headers and data, then prints the whole table
+    static void printTable(String[] headers, int[] startWidths, List<String[]> rows) {
+        int[] colWidths = startWidths.clone();
+
+        // Adjust widths based on actual data
+        for (int i = 0; i < headers.length; i++) {
+            colWidths[i] = Math.max(colWidths[i], headers[i].length());
+        }
+        for (String[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                colWidths[i] = Math.max(colWidths[i], row[i].length());
+            }
+        }
+
+        // Print table header
+        printTableRow(headers, colWidths);
+        printTableSeparator(colWidths);
+
+        // Print data rows
+        for (String[] row : rows) {
+            printTableRow(row, colWidths);
+        }
+    }
+
+    // Formatting helpers, the typed rows keep nulls and these decide how they are shown
+    private static String orBlank(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String orNull(String value) {
+        return value == null ? "(null)" : value;
+    }
+
+    private static String date(LocalDate value) {
+        return value == null ? "(null)" : value.toString();
+    }
+
+    // Printed the same way java.sql.Timestamp prints, e.g. 2024-01-05 09:30:00.0
+    private static String timestamp(LocalDateTime value) {
+        return value == null ? "(null)" : Timestamp.valueOf(value).toString();
+    }
+
+    private static String money(BigDecimal value) {
+        return value == null ? "-" : String.format("$%.2f", value);
+    }
+
+    // Row renderers, one per record type, so other outputs can print rows the same way
+    static String[] memberRow(GymMember m) {
+        return new String[]{
+            String.valueOf(m.memberID()),
+            orBlank(m.firstName()),
+            orBlank(m.lastName()),
+            date(m.birthday()),
+            orNull(m.phoneNumber()),
+            orNull(m.email()),
+            date(m.dateJoined())
+        };
+    }
+
+    static String[] membershipRow(MembershipSummary ms) {
+        return new String[]{
+            String.valueOf(ms.memberID()),
+            orNull(ms.firstName()),
+            orNull(ms.lastName()),
+            orNull(ms.status()),
+            ms.planType() == null ? "(none)" : ms.planType(),
+            money(ms.price()),
+            date(ms.startDate()),
+            date(ms.endDate())
+        };
+    }
+
+    static String[] staffRow(StaffMember s) {
+        return new String[]{
+            String.valueOf(s.staffID()),
+            orBlank(s.firstName()),
+            orBlank(s.lastName()),
+            orNull(s.phoneNumber()),
+            orNull(s.email()),
+            date(s.hireDate()),
+            money(s.salary()),
+            s.role() == null ? "None" : s.role()
+        };
+    }
+
+    // The first seven columns shared by the desk, trainer and manager tables, the role
+    // column is implied by the table so it gets overwritten by the subtype columns
+    private static String[] staffColumns(StaffMember s, int width) {
+        return Arrays.copyOf(staffRow(s), width);
+    }
+
+    static String[] deskRow(DeskStaff d) {
+        String[] row = staffColumns(d.staff(), 10);
+        row[7] = orNull(d.schedule());
+        row[8] = orNull(d.deskLocation());
+        row[9] = orNull(d.responsibility());
+        return row;
+    }
+
+    static String[] trainerRow(TrainerStaff t) {
+        String[] row = staffColumns(t.staff(), 11);
+        row[7] = orNull(t.specialty());
+        row[8] = orNull(t.schedule());
+        row[9] = orNull(t.certificationLevel());
+        row[10] = String.valueOf(t.experience() == null ? 0 : t.experience());
+        return row;
+    }
+
+    static String[] managerRow(ManagerStaff m) {
+        String[] row = staffColumns(m.staff(), 10);
+        row[7] = orNull(m.department());
+        row[8] = orNull(m.officeLocation());
+        row[9] = m.experience() == null ? "(null)" : String.valueOf(m.experience());
+        return row;
+    }
+
+    static String[] planRow(Plan p) {
+        return new String[]{
+            String.valueOf(p.planID()),
+            orNull(p.planType()),
+            money(p.price())
+        };
+    }
+
+    static String[] paymentRow(Payment p) {
+        return new String[]{
+            String.valueOf(p.paymentID()),
+            String.valueOf(p.staffID()),
+            String.valueOf(p.memberID()),
+            money(p.amount()),
+            orNull(p.paymentType()),
+            date(p.dateOfPayment()),
+            orNull(p.status())
+        };
+    }
+
+    static String[] checkInRow(CheckIn c) {
+        return new String[]{
+            String.valueOf(c.checkInID()),
+            String.valueOf(c.membershipID()),
+            String.valueOf(c.staffID()),
+            timestamp(c.ts()),
+            orNull(c.location())
+        };
+    }
+
+    static String[] guestRow(Guest g) {
+        return new String[]{
+            String.valueOf(g.guestID()),
+            g.firstName(),
+            g.lastName(),
+            g.relationshipToMember(),
+            date(g.birthday())
+        };
+    }
+
+    // Renders a list of typed rows with one of the row renderers above
+    static <T> List<String[]> render(List<T> items, Function<T, String[]> renderer) {
+        List<String[]> rows = new ArrayList<>(items.size());
+        for (T item : items) {
+            rows.add(renderer.apply(item));
+        }
+        return rows;
+    }
+
     // Case 1 function to view the gym members and their memberships
     public static void viewGymMembers(Connection conn) throws SQLException {
-        String sql = "SELECT gm.memberID, gm.firstName, gm.lastName, " +
-                     "       gm.birthday, gm.phoneNumber, gm.email, gm.dateJoined " +
-                     "FROM GymMember gm " +
-                     "ORDER BY gm.memberID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            System.out.println("\n=== Gym Members ===");
-            System.out.println();
-            System.out.println("This table shows all the gym members and their details, including the member ID, first name, last name, birthday, phone number, email, and date joined.");
-
-            // Collect all data first to determine column widths
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasMembers = false;
-            
-            while (rs.next()) {
-                hasMembers = true;
-                int memberID = rs.getInt("memberID");
-                String firstName;
-                if (rs.getString("firstName") != null) {
-                    firstName = rs.getString("firstName");
-                } else {
-                    firstName = "";
-                }
-                String lastName;
-                if (rs.getString("lastName") != null) {
-                    lastName = rs.getString("lastName");
-                } else {
-                    lastName = "";
-                }
-                
-                String birthday;
-                java.sql.Date birthdayDate = rs.getDate("birthday");
-                if (rs.wasNull() || birthdayDate == null) {
-                    birthday = "(null)";
-                } else {
-                    birthday = birthdayDate.toString();
-                }
-                
-                String phoneNumber = rs.getString("phoneNumber");
-                if (phoneNumber == null) {
-                    phoneNumber = "(null)";
-                }
-                
-                String email = rs.getString("email");
-                if (email == null) {
-                    email = "(null)";
-                }
-                
-                String dateJoined;
-                java.sql.Date dateJoinedDate = rs.getDate("dateJoined");
-                if (rs.wasNull() || dateJoinedDate == null) {
-                    dateJoined = "(null)";
-                } else {
-                    dateJoined = dateJoinedDate.toString();
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(memberID),
-                    firstName,
-                    lastName,
-                    birthday,
-                    phoneNumber,
-                    email,
-                    dateJoined
-                });
-            }
-            
-            if (!hasMembers) {
-                System.out.println("No gym members in the database");
-                return;
-            }
-            
-            // Calculate column widths
-            int[] colWidths = {10, 15, 15, 12, 15, 25, 12}; //temporary column widths
-            String[] headers = {"Member ID", "First Name", "Last Name", "Birthday", "Phone Number", "Email", "Date Joined"};
-            
-            // Adjust widths based on actual data
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            //Display output 
-            // Print table header
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            // Print data rows
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+        showGymMembers(Queries.gymMembers(conn));
+    }
+
+    public static void showGymMembers(List<GymMember> members) {
+        System.out.println("\n=== Gym Members ===");
+        System.out.println();
+        System.out.println("This table shows all the gym members and their details, including the member ID, first name, last name, birthday, phone number, email, and date joined.");
+
+        if (members.isEmpty()) {
+            System.out.println("No gym members in the database");
+            return;
         }
+        printTable(MEMBER_HEADERS, MEMBER_WIDTHS, render(members, DatabaseViews::memberRow));
     }
 
     public static void viewAllMemberships(Connection conn) throws SQLException {
-        String sql = "SELECT ms.memberID, gm.firstName, gm.lastName, ms.status, " +
-                     "       pt.planType, pt.price, ms.startDate, ms.endDate " +
-                     "FROM Membership ms " +
-                     "LEFT JOIN GymMember gm ON ms.memberID = gm.memberID " +
-                     "LEFT JOIN Plan p ON ms.planID = p.planID " +
-                     "LEFT JOIN PlanType pt ON p.planType = pt.planType " +
-                     "ORDER BY ms.memberID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            System.out.println("\n=== All Memberships ===");
-            System.out.println();
-            System.out.println("This table shows all the memberships and their details, including the member ID, first name, last name, status, plan type, price, start date, and end date.");
-            System.out.println();
+        showAllMemberships(Queries.allMemberships(conn));
+    }
 
-            // Collect all data first to determine column widths
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasMemberships = false;
-            
-            while (rs.next()) {
-                hasMemberships = true;
-                int memberID = rs.getInt("memberID");
-                
-                String firstName = rs.getString("firstName");
-                if (firstName == null) {
-                    firstName = "(null)";
-                }
-                
-                String lastName = rs.getString("lastName");
-                if (lastName == null) {
-                    lastName = "(null)";
-                }
-                
-                String status = rs.getString("status");
-                if (status == null) {
-                    status = "(null)";
-                }
-                
-                String planType = rs.getString("planType");
-                if (planType == null) {
-                    planType = "(none)";
-                }
-                
-                String priceStr;
-                Double price = rs.getDouble("price");
-                if (rs.wasNull() || price == null) {
-                    priceStr = "-";
-                } else {
-                    priceStr = String.format("$%.2f", price);
-                }
-                
-                String startDate;
-                java.sql.Date startDateObj = rs.getDate("startDate");
-                if (rs.wasNull() || startDateObj == null) {
-                    startDate = "(null)";
-                } else {
-                    startDate = startDateObj.toString();
-                }
-                
-                String endDate;
-                java.sql.Date endDateObj = rs.getDate("endDate");
-                if (rs.wasNull() || endDateObj == null) {
-                    endDate = "(null)";
-                } else {
-                    endDate = endDateObj.toString();
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(memberID),
-                    firstName,
-                    lastName,
-                    status,
-                    planType,
-                    priceStr,
-                    startDate,
-                    endDate
-                });
-            }
-            
-            if (!hasMemberships) {
-                System.out.println("No memberships in the database");
-                return;
-            }
-            
-            // Calculate column widths
-            int[] colWidths = {10, 15, 15, 15, 15, 12, 12, 12}; //temporary column widths
-            String[] headers = {"Member ID", "First Name", "Last Name", "Status", "Plan Type", "Price", "Start Date", "End Date"};
-            
-            // Adjust widths based on actual data
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            // Print table header
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            // Print data rows
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+    public static void showAllMemberships(List<MembershipSummary> memberships) {
+        System.out.println("\n=== All Memberships ===");
+        System.out.println();
+        System.out.println("This table shows all the memberships and their details, including the member ID, first name, last name, status, plan type, price, start date, and end date.");
+        System.out.println();
+
+        if (memberships.isEmpty()) {
+            System.out.println("No memberships in the database");
+            return;
         }
+        printTable(MEMBERSHIP_HEADERS, MEMBERSHIP_WIDTHS, render(memberships, DatabaseViews::membershipRow));
     }
 
     public static void viewAllStaffMembers(Connection conn) throws SQLException {
-        String sql = "SELECT sm.staffID, sm.firstName, sm.lastName, sm.phoneNumber, " +
-                     "       sm.email, sm.hireDate, sm.salary, " +
-                     "       CASE " +
-                     "         WHEN d.staffID IS NOT NULL THEN 'Desk' " +
-                     "         WHEN t.staffID IS NOT NULL THEN 'Trainer' " +
-                     "         WHEN m.staffID IS NOT NULL THEN 'Manager' " +
-                     "         ELSE 'None' " +
-                     "       END AS role " +
-                     "FROM StaffMember sm " +
-                     "LEFT JOIN Desk d ON sm.staffID = d.staffID " +
-                     "LEFT JOIN Trainer t ON sm.staffID = t.staffID " +
-                     "LEFT JOIN Manager m ON sm.staffID = m.staffID " +
-                     "ORDER BY sm.staffID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            System.out.println("\n=== All Staff Members ===");
-            System.out.println();
-            System.out.println("This table shows all the staff members and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, and role.");
-            System.out.println();
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasStaff = false;
-            
-            while (rs.next()) {
-                hasStaff = true;
-                int staffID = rs.getInt("staffID");
-                String firstName;
-                if (rs.getString("firstName") != null) {
-                    firstName = rs.getString("firstName");
-                } else {
-                    firstName = "";
-                }
-                String lastName;
-                if (rs.getString("lastName") != null) {
-                    lastName = rs.getString("lastName");
-                } else {
-                    lastName = "";
-                }
-                String phoneNumber = rs.getString("phoneNumber");
-                if (phoneNumber == null) {
-                    phoneNumber = "(null)";
-                }
-                String email = rs.getString("email");
-                if (email == null) {
-                    email = "(null)";
-                }
-                String hireDate;
-                java.sql.Date hireDateObj = rs.getDate("hireDate");
-                if (rs.wasNull() || hireDateObj == null) {
-                    hireDate = "(null)";
-                } else {
-                    hireDate = hireDateObj.toString();
-                }
-                String salaryStr;
-                Double salary = rs.getDouble("salary");
-                if (rs.wasNull() || salary == null) {
-                    salaryStr = "-";
-                } else {
-                    salaryStr = String.format("$%.2f", salary);
-                }
-                String role = rs.getString("role");
-                if (role == null) {
-                    role = "None";
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(staffID),
-                    firstName,
-                    lastName,
-                    phoneNumber,
-                    email,
-                    hireDate,
-                    salaryStr,
-                    role
-                });
-            }
-            
-            if (!hasStaff) {
-                System.out.println("No staff members in the database");
-                return;
-            }
-            
-            int[] colWidths = {10, 15, 15, 15, 25, 12, 12, 10};
-            String[] headers = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Role"};
-            
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+        showAllStaffMembers(Queries.allStaffMembers(conn));
+    }
+
+    public static void showAllStaffMembers(List<StaffMember> staff) {
+        System.out.println("\n=== All Staff Members ===");
+        System.out.println();
+        System.out.println("This table shows all the staff members and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, and role.");
+        System.out.println();
+
+        if (staff.isEmpty()) {
+            System.out.println("No staff members in the database");
+            return;
         }
+        printTable(STAFF_HEADERS, STAFF_WIDTHS, render(staff, DatabaseViews::staffRow));
     }
 
     public static void viewDeskStaff(Connection conn) throws SQLException {
-        String sql = "SELECT sm.staffID, sm.firstName, sm.lastName, sm.phoneNumber, " +
-                     "       sm.email, sm.hireDate, sm.salary, " +
-                     "       d.schedule, d.deskLocation, d.responsibility " +
-                     "FROM StaffMember sm " +
-                     "INNER JOIN Desk d ON sm.staffID = d.staffID " +
-                     "ORDER BY sm.staffID;";
+        showDeskStaff(Queries.deskStaff(conn));
+    }
 
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+    public static void showDeskStaff(List<DeskStaff> staff) {
+        System.out.println("\n=== Desk Staff ===");
+        System.out.println();
+        System.out.println("This table shows all the desk staff and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, schedule, desk location, and responsibility.");
+        System.out.println();
 
-            System.out.println("\n=== Desk Staff ===");
-            System.out.println();
-            System.out.println("This table shows all the desk staff and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, schedule, desk location, and responsibility.");
-            System.out.println();
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasStaff = false;
-            
-            while (rs.next()) {
-                hasStaff = true;
-                int staffID = rs.getInt("staffID");
-                String firstName;
-                if (rs.getString("firstName") != null) {
-                    firstName = rs.getString("firstName");
-                } else {
-                    firstName = "";
-                }
-                String lastName;
-                if (rs.getString("lastName") != null) {
-                    lastName = rs.getString("lastName");
-                } else {
-                    lastName = "";
-                }
-                String phoneNumber = rs.getString("phoneNumber");
-                if (phoneNumber == null) {
-                    phoneNumber = "(null)";
-                }
-                String email = rs.getString("email");
-                if (email == null) {
-                    email = "(null)";
-                }
-                String hireDate;
-                java.sql.Date hireDateObj = rs.getDate("hireDate");
-                if (rs.wasNull() || hireDateObj == null) {
-                    hireDate = "(null)";
-                } else {
-                    hireDate = hireDateObj.toString();
-                }
-                String salaryStr;
-                Double salary = rs.getDouble("salary");
-                if (rs.wasNull() || salary == null) {
-                    salaryStr = "-";
-                } else {
-                    salaryStr = String.format("$%.2f", salary);
-                }
-                String schedule = rs.getString("schedule");
-                if (schedule == null) {
-                    schedule = "(null)";
-                }
-                String deskLocation = rs.getString("deskLocation");
-                if (deskLocation == null) {
-                    deskLocation = "(null)";
-                }
-                String responsibility = rs.getString("responsibility");
-                if (responsibility == null) {
-                    responsibility = "(null)";
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(staffID),
-                    firstName,
-                    lastName,
-                    phoneNumber,
-                    email,
-                    hireDate,
-                    salaryStr,
-                    schedule,
-                    deskLocation,
-                    responsibility
-                });
-            }
-            
-            if (!hasStaff) {
-                System.out.println("No desk staff in the database");
-                return;
-            }
-            
-            int[] colWidths = {10, 15, 15, 15, 25, 12, 12, 20, 15, 20};
-            String[] headers = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Schedule", "Desk Location", "Responsibility"};
-            
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+        if (staff.isEmpty()) {
+            System.out.println("No desk staff in the database");
+            return;
         }
+        printTable(DESK_HEADERS, DESK_WIDTHS, render(staff, DatabaseViews::deskRow));
     }
 
     public static void viewTrainers(Connection conn) throws SQLException {
-        String sql = "SELECT sm.staffID, sm.firstName, sm.lastName, sm.phoneNumber, " +
-                     "       sm.email, sm.hireDate, sm.salary, " +
-                     "       t.specialty, t.schedule, t.certificationLevel, t.experience " +
-                     "FROM StaffMember sm " +
-                     "INNER JOIN Trainer t ON sm.staffID = t.staffID " +
-                     "ORDER BY sm.staffID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+        showTrainers(Queries.trainers(conn));
+    }
 
-            System.out.println("\n=== Trainers ===");
-            System.out.println();
-            System.out.println("This table shows all the trainers and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, specialty, schedule, certification level, and  years of experience.");
-            System.out.println();
+    public static void showTrainers(List<TrainerStaff> trainers) {
+        System.out.println("\n=== Trainers ===");
+        System.out.println();
+        System.out.println("This table shows all the trainers and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, specialty, schedule, certification level, and  years of experience.");
+        System.out.println();
 
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasStaff = false;
-            
-            while (rs.next()) {
-                hasStaff = true;
-                int staffID = rs.getInt("staffID");
-                String firstName;
-                if (rs.getString("firstName") != null) {
-                    firstName = rs.getString("firstName");
-                } else {
-                    firstName = "";
-                }
-                String lastName;
-                if (rs.getString("lastName") != null) {
-                    lastName = rs.getString("lastName");
-                } else {
-                    lastName = "";
-                }
-                String phoneNumber = rs.getString("phoneNumber");
-                if (phoneNumber == null) {
-                    phoneNumber = "(null)";
-                }
-                String email = rs.getString("email");
-                if (email == null) {
-                    email = "(null)";
-                }
-                String hireDate;
-                java.sql.Date hireDateObj = rs.getDate("hireDate");
-                if (rs.wasNull() || hireDateObj == null) {
-                    hireDate = "(null)";
-                } else {
-                    hireDate = hireDateObj.toString();
-                }
-                String salaryStr;
-                Double salary = rs.getDouble("salary");
-                if (rs.wasNull() || salary == null) {
-                    salaryStr = "-";
-                } else {
-                    salaryStr = String.format("$%.2f", salary);
-                }
-                String specialty = rs.getString("specialty");
-                if (specialty == null) {
-                    specialty = "(null)";
-                }
-                String schedule = rs.getString("schedule");
-                if (schedule == null) {
-                    schedule = "(null)";
-                }
-                String certificationLevel = rs.getString("certificationLevel");
-                if (certificationLevel == null) {
-                    certificationLevel = "(null)";
-                }
-                int experience = rs.getInt("experience");
-                if (rs.wasNull()) {
-                    experience = 0;
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(staffID),
-                    firstName,
-                    lastName,
-                    phoneNumber,
-                    email,
-                    hireDate,
-                    salaryStr,
-                    specialty,
-                    schedule,
-                    certificationLevel,
-                    String.valueOf(experience)
-                });
-            }
-            
-            if (!hasStaff) {
-                System.out.println("No trainers in the database");
-                return;
-            }
-            
-            int[] colWidths = {10, 15, 15, 15, 25, 12, 12, 20, 20, 20, 10};
-            String[] headers = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Specialty", "Schedule", "Certification Level", "Experience"};
-            
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+        if (trainers.isEmpty()) {
+            System.out.println("No trainers in the database");
+            return;
         }
+        printTable(TRAINER_HEADERS, TRAINER_WIDTHS, render(trainers, DatabaseViews::trainerRow));
     }
 
     public static void viewManagers(Connection conn) throws SQLException {
-        String sql = "SELECT sm.staffID, sm.firstName, sm.lastName, sm.phoneNumber, " +
-                     "       sm.email, sm.hireDate, sm.salary, " +
-                     "       m.department, m.officeLocation, m.experience " +
-                     "FROM StaffMember sm " +
-                     "INNER JOIN Manager m ON sm.staffID = m.staffID " +
-                     "ORDER BY sm.staffID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+        showManagers(Queries.managers(conn));
+    }
 
-            System.out.println("\n=== Managers ===");
-            System.out.println();
-            System.out.println("This table shows all the managers and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, department, office location, and experience.");
-            System.out.println();
+    public static void showManagers(List<ManagerStaff> managers) {
+        System.out.println("\n=== Managers ===");
+        System.out.println();
+        System.out.println("This table shows all the managers and their details, including the staff ID, first name, last name, phone number, email, hire date, salary, department, office location, and experience.");
+        System.out.println();
 
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasStaff = false;
-            
-            while (rs.next()) {
-                hasStaff = true;
-                int staffID = rs.getInt("staffID");
-                String firstName;
-                if (rs.getString("firstName") != null) {
-                    firstName = rs.getString("firstName");
-                } else {
-                    firstName = "";
-                }
-                String lastName;
-                if (rs.getString("lastName") != null) {
-                    lastName = rs.getString("lastName");
-                } else {
-                    lastName = "";
-                }
-                String phoneNumber = rs.getString("phoneNumber");
-                if (phoneNumber == null) {
-                    phoneNumber = "(null)";
-                }
-                String email = rs.getString("email");
-                if (email == null) {
-                    email = "(null)";
-                }
-                String hireDate;
-                java.sql.Date hireDateObj = rs.getDate("hireDate");
-                if (rs.wasNull() || hireDateObj == null) {
-                    hireDate = "(null)";
-                } else {
-                    hireDate = hireDateObj.toString();
-                }
-                String salaryStr;
-                Double salary = rs.getDouble("salary");
-                if (rs.wasNull() || salary == null) {
-                    salaryStr = "-";
-                } else {
-                    salaryStr = String.format("$%.2f", salary);
-                }
-                String department = rs.getString("department");
-                if (department == null) {
-                    department = "(null)";
-                }
-                String officeLocation = rs.getString("officeLocation");
-                if (officeLocation == null) {
-                    officeLocation = "(null)";
-                }
-                String experienceStr;
-                Integer experience = rs.getInt("experience");
-                if (rs.wasNull() || experience == null) {
-                    experienceStr = "(null)";
-                } else {
-                    experienceStr = String.valueOf(experience);
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(staffID),
-                    firstName,
-                    lastName,
-                    phoneNumber,
-                    email,
-                    hireDate,
-                    salaryStr,
-                    department,
-                    officeLocation,
-                    experienceStr
-                });
-            }
-            
-            if (!hasStaff) {
-                System.out.println("No managers in the database");
-                return;
-            }
-            
-            int[] colWidths = {10, 15, 15, 15, 25, 12, 12, 20, 20, 10};
-            String[] headers = {"Staff ID", "First Name", "Last Name", "Phone Number", "Email", "Hire Date", "Salary", "Department", "Office Location", "Experience"};
-            
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+        if (managers.isEmpty()) {
+            System.out.println("No managers in the database");
+            return;
         }
+        printTable(MANAGER_HEADERS, MANAGER_WIDTHS, render(managers, DatabaseViews::managerRow));
     }
 
     public static void viewPlans(Connection conn) throws SQLException {
-        String sql = "SELECT p.planID, pt.planType, pt.price " +
-                     "FROM Plan p " +
-                     "JOIN PlanType pt ON p.planType = pt.planType " +
-                     "ORDER BY p.planID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            System.out.println("\n=== Plans ===");
-            System.out.println();
-            System.out.println("This table shows all the plans and their details, including the plan ID, plan type, and price.");
-            System.out.println();
+        showPlans(Queries.plans(conn));
+    }
 
-            // Collect all data first to determine column widths
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasPlans = false;
-            
-            while (rs.next()) {
-                hasPlans = true;
-                int planID = rs.getInt("planID");
-                
-                String planType = rs.getString("planType");
-                if (planType == null) {
-                    planType = "(null)";
-                }
-                
-                String priceStr;
-                Double price = rs.getDouble("price");
-                if (rs.wasNull() || price == null) {
-                    priceStr = "-";
-                } else {
-                    priceStr = String.format("$%.2f", price);
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(planID),
-                    planType,
-                    priceStr
-                });
-            }
-            
-            if (!hasPlans) {
-                System.out.println("No plans in the database");
-                return;
-            }
-            
-            // Calculate column widths
-            int[] colWidths = {10, 20, 12}; //temporary column widths
-            String[] headers = {"Plan ID", "Plan Type", "Price"};
-            
-            // Adjust widths based on actual data
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            //Display output 
-            // Print table header
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            // Print data rows
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+    public static void showPlans(List<Plan> plans) {
+        System.out.println("\n=== Plans ===");
+        System.out.println();
+        System.out.println("This table shows all the plans and their details, including the plan ID, plan type, and price.");
+        System.out.println();
+
+        if (plans.isEmpty()) {
+            System.out.println("No plans in the database");
+            return;
         }
+        printTable(PLAN_HEADERS, PLAN_WIDTHS, render(plans, DatabaseViews::planRow));
     }
 
     public static void viewPayments(Connection conn) throws SQLException {
-        String sql = "SELECT p.paymentID, p.staffID, p.memberID, p.amount, " +
-                     "       p.paymentType, p.dateOfPayment, p.status " +
-                     "FROM Payment p " +
-                     "ORDER BY p.paymentID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            System.out.println("\n=== Payments ===");
-            System.out.println();
-            System.out.println("This table shows payments, the ID of the staff member that processed the payment, the ID of the member that made the payment, " //split the long string into 2 lines
-            + "the amount of the payment, the type of payment, the date of the payment, and the status of the payment.");
-            System.out.println();
+        showPayments(Queries.payments(conn));
+    }
 
-            // Collect all data first to determine column widths
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasPayments = false;
-            
-            while (rs.next()) {
-                hasPayments = true;
-                int paymentID = rs.getInt("paymentID");
-                int staffID = rs.getInt("staffID");
-                int memberID = rs.getInt("memberID");
-                
-                String amountStr;
-                Double amount = rs.getDouble("amount");
-                if (rs.wasNull() || amount == null) {
-                    amountStr = "-";
-                } else {
-                    amountStr = String.format("$%.2f", amount);
-                }
-                
-                String paymentType = rs.getString("paymentType");
-                if (paymentType == null) {
-                    paymentType = "(null)";
-                }
-                
-                String dateOfPayment;
-                java.sql.Date dateOfPaymentObj = rs.getDate("dateOfPayment");
-                if (rs.wasNull() || dateOfPaymentObj == null) {
-                    dateOfPayment = "(null)";
-                } else {
-                    dateOfPayment = dateOfPaymentObj.toString();
-                }
-                
-                String status = rs.getString("status");
-                if (status == null) {
-                    status = "(null)";
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(paymentID),
-                    String.valueOf(staffID),
-                    String.valueOf(memberID),
-                    amountStr,
-                    paymentType,
-                    dateOfPayment,
-                    status
-                });
-            }
-            
-            if (!hasPayments) {
-                System.out.println("No payments in the database");
-                return;
-            }
-            
-            // Calculate column widths
-            int[] colWidths = {12, 10, 12, 12, 15, 15, 12}; //temporary column widths
-            String[] headers = {"Payment ID", "Staff ID", "Member ID", "Amount", "Payment Type", "Date of Payment", "Status"};
-            
-            // Adjust widths based on actual data
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            //Display output 
-            // Print table header
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            // Print data rows
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+    public static void showPayments(List<Payment> payments) {
+        System.out.println("\n=== Payments ===");
+        System.out.println();
+        System.out.println("This table shows payments, the ID of the staff member that processed the payment, the ID of the member that made the payment, " //split the long string into 2 lines
+        + "the amount of the payment, the type of payment, the date of the payment, and the status of the payment.");
+        System.out.println();
+
+        if (payments.isEmpty()) {
+            System.out.println("No payments in the database");
+            return;
         }
+        printTable(PAYMENT_HEADERS, PAYMENT_WIDTHS, render(payments, DatabaseViews::paymentRow));
     }
 
     public static void viewCheckIns(Connection conn) throws SQLException {
-        String sql = "SELECT c.checkInID, c.membershipID, c.staffID, c.ts, c.location " +
-                     "FROM CheckIn c " +
-                     "ORDER BY c.checkInID;";
+        showCheckIns(Queries.checkIns(conn));
+    }
 
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            System.out.println("\n=== Check-Ins ===");
-            System.out.println();
-            System.out.println("This table shows all the check-ins and their details, including the check-in ID, membership ID, ID of staff who checked in the member, timestamp, and location.");
-            System.out.println();
+    public static void showCheckIns(List<CheckIn> checkIns) {
+        System.out.println("\n=== Check-Ins ===");
+        System.out.println();
+        System.out.println("This table shows all the check-ins and their details, including the check-in ID, membership ID, ID of staff who checked in the member, timestamp, and location.");
+        System.out.println();
 
-            // Collect all data first to determine column widths
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasCheckIns = false;
-            
-            while (rs.next()) {
-                hasCheckIns = true;
-                int checkInID = rs.getInt("checkInID");
-                int membershipID = rs.getInt("membershipID");
-                int staffID = rs.getInt("staffID");
-                
-                String timestamp;
-                java.sql.Timestamp ts = rs.getTimestamp("ts");
-                if (rs.wasNull() || ts == null) {
-                    timestamp = "(null)";
-                } else {
-                    timestamp = ts.toString();
-                }
-                
-                String location = rs.getString("location");
-                if (location == null) {
-                    location = "(null)";
-                }
-                
-                rows.add(new String[]{
-                    String.valueOf(checkInID),
-                    String.valueOf(membershipID),
-                    String.valueOf(staffID),
-                    timestamp,
-                    location
-                });
-            }
-            
-            if (!hasCheckIns) {
-                System.out.println("No check-ins in the database");
-                return;
-            }
-            
-            // Calculate column widths
-            int[] colWidths = {12, 15, 10, 20, 15}; //temporary column widths
-            String[] headers = {"Check-In ID", "Membership ID", "Staff ID", "Timestamp", "Location"};
-            
-            // Adjust widths based on actual data
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            //Display output 
-            // Print table header
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            // Print data rows
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+        if (checkIns.isEmpty()) {
+            System.out.println("No check-ins in the database");
+            return;
         }
+        printTable(CHECK_IN_HEADERS, CHECK_IN_WIDTHS, render(checkIns, DatabaseViews::checkInRow));
     }
 
     public static void viewActiveMembers(Connection conn) throws SQLException {
-        String sql = "SELECT DISTINCT gm.memberID, gm.firstName, gm.lastName, " +
-                     "       gm.birthday, gm.phoneNumber, gm.email, gm.dateJoined " +
-                     "FROM GymMember gm " +
-                     "INNER JOIN Membership ms ON gm.memberID = ms.memberID " +
-                     "WHERE ms.status = 'Active' " +
-                     "ORDER BY gm.memberID;";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            System.out.println("\n=== Active Members ===");
-            System.out.println();
-            System.out.println("This table shows all gym members who have an active membership, including the member ID, first name, last name, birthday, phone number, email, and date joined.");
+        showActiveMembers(Queries.activeMembers(conn));
+    }
+
+    public static void showActiveMembers(List<GymMember> members) {
+        System.out.println("\n=== Active Members ===");
+        System.out.println();
+        System.out.println("This table shows all gym members who have an active membership, including the member ID, first name, last name, birthday, phone number, email, and date joined.");
+        System.out.println();
+
+        if (members.isEmpty()) {
+            System.out.println("No active members in the database");
+            return;
+        }
+        printTable(MEMBER_HEADERS, MEMBER_WIDTHS, render(members, DatabaseViews::memberRow));
+    }
+
+    // A member's guests, shown before recording a guest visit
+    public static void showGuests(List<Guest> guests) {
+        System.out.println();
+        if (guests.isEmpty()) {
+            System.out.println("This member has no guests yet");
+            return;
+        }
+        printTable(GUEST_HEADERS, GUEST_WIDTHS, render(guests, DatabaseViews::guestRow));
+    }
+
+    // Members in a MemberSegments segment, shown as a member table. members may be only the
+    // first part of the segment, count is the full size.
+    public static void showSegment(String segment, int count, List<GymMember> members) {
+        System.out.println("\n=== Segment: " + segment + " ===");
+        System.out.println();
+        System.out.println(count + " members match.");
+        System.out.println();
+
+        if (members.isEmpty()) {
+            return;
+        }
+        printTable(MEMBER_HEADERS, MEMBER_WIDTHS, render(members, DatabaseViews::memberRow));
+        if (members.size() < count) {
+            System.out.println("Showing the first " + members.size() + ".");
+        }
+    }
+
+    public static void showShifts(String title, List<StaffSchedules.Shift> shifts) {
+        System.out.println("\n=== " + title + " ===");
+        System.out.println();
+        if (shifts.isEmpty()) {
+            System.out.println("Nobody is scheduled");
+            return;
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (StaffSchedules.Shift shift : shifts) {
+            rows.add(new String[]{
+                String.valueOf(shift.staffID()),
+                shift.name(),
+                shift.role(),
+                orBlank(shift.location()),
+                minuteOfDay(shift.startMinute()) + "-" + minuteOfDay(shift.endMinute())
+            });
+        }
+        printTable(new String[]{"Staff ID", "Name", "Role", "Desk Location", "Shift"}, new int[]{10, 25, 10, 15, 12}, rows);
+    }
+
+    public static void showDeskConflicts(List<StaffSchedules.Conflict> conflicts) {
+        System.out.println("\n=== Desk Schedule Conflicts ===");
+        System.out.println();
+        System.out.println("Desk staff scheduled at the same desk at the same time.");
+        System.out.println();
+        if (conflicts.isEmpty()) {
+            System.out.println("No conflicts");
+            return;
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (StaffSchedules.Conflict conflict : conflicts) {
+            rows.add(new String[]{
+                conflict.first().location(),
+                conflict.first().day().toString(),
+                minuteOfDay(conflict.startMinute()) + "-" + minuteOfDay(conflict.endMinute()),
+                conflict.first().staffID() + " " + conflict.first().name(),
+                conflict.second().staffID() + " " + conflict.second().name()
+            });
+        }
+        printTable(new String[]{"Desk Location", "Day", "Overlap", "Staff", "Staff"}, new int[]{15, 10, 12, 25, 25}, rows);
+    }
+
+    public static void showUnreadableSchedules(List<StaffSchedules.Unreadable> unreadable) {
+        System.out.println("\n=== Unreadable Schedules ===");
+        System.out.println();
+        if (unreadable.isEmpty()) {
+            System.out.println("Every schedule could be read");
+            return;
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (StaffSchedules.Unreadable u : unreadable) {
+            rows.add(new String[]{String.valueOf(u.staffID()), u.name(), u.role(), orNull(u.schedule()), u.reason()});
+        }
+        printTable(new String[]{"Staff ID", "Name", "Role", "Schedule", "Problem"}, new int[]{10, 25, 10, 25, 30}, rows);
+    }
+
+    public static void showOffDutyCheckIns(List<CheckIn> checkIns) {
+        System.out.println("\n=== Check-Ins Recorded Off Duty ===");
+        System.out.println();
+        System.out.println("Check-ins whose desk staff member was not on their schedule at the time.");
+        System.out.println();
+        if (checkIns.isEmpty()) {
+            System.out.println("None found");
+            return;
+        }
+        printTable(CHECK_IN_HEADERS, CHECK_IN_WIDTHS, render(checkIns, DatabaseViews::checkInRow));
+    }
+
+    public static void showAuditHistory(int memberID, List<AuditJournal.Event> events) {
+        System.out.println("\n=== Audit History for Member " + memberID + " ===");
+        System.out.println();
+        if (events.isEmpty()) {
+            System.out.println("No recorded changes");
+            return;
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (AuditJournal.Event event : events) {
+            rows.add(new String[]{
+                String.valueOf(event.sequence()),
+                event.at().withNano(0).toString().replace('T', ' '),
+                event.table() + " " + event.operation(),
+                event.key() == 0 ? "" : String.valueOf(event.key()),
+                event.staffID() == 0 ? "" : String.valueOf(event.staffID()),
+                orBlank(event.oldValue()),
+                orBlank(event.newValue())
+            });
+        }
+        printTable(new String[]{"#", "When", "Change", "Row", "Staff", "Before", "After"},
+                new int[]{8, 20, 22, 8, 6, 25, 35}, rows);
+    }
+
+    // Search results (ViewQuery) get their own title and a "no match" line rather than the
+    // full view's text, which describes every row in the table
+    public static <T> void showSearchResults(View<T> view, List<T> rows, int limit) {
+        System.out.println("\n=== " + view.name() + " Search ===");
+        System.out.println();
+        if (rows.isEmpty()) {
+            System.out.println("No " + view.name().toLowerCase() + " match the search");
+            return;
+        }
+        printTable(view.headers(), view.widths(), render(rows, view::render));
+        System.out.println();
+        if (rows.size() == limit) {
+            System.out.println("Showing the first " + limit + " matches, there may be more.");
+        } else {
+            System.out.println(rows.size() + (rows.size() == 1 ? " match" : " matches"));
+        }
+    }
+
+    public static void showStaffCosts(StaffCosts.Report report) {
+        System.out.println("\n=== Staff Costs ===");
+        System.out.println();
+        long days = report.to().toEpochDay() - report.from().toEpochDay() + 1;
+        System.out.println("From " + report.from() + " to " + report.to() + " (" + days + " days). Period payroll is each salary "
+                + "prorated by day from the hire date, collected counts successful payments only.");
+        System.out.println();
+
+        List<String[]> rows = new ArrayList<>();
+        for (StaffCosts.Cost cost : report.roles()) {
+            rows.add(costRow(cost));
+        }
+        printTable(new String[]{"Role", "Staff", "Annual Payroll", "Period Payroll", "Avg Tenure", "Payments", "Collected", "Check-Ins"},
+                new int[]{12, 6, 15, 15, 11, 9, 13, 10}, rows);
+
+        if (!report.departments().isEmpty()) {
             System.out.println();
+            rows = new ArrayList<>();
+            for (StaffCosts.Cost cost : report.departments()) {
+                String[] row = costRow(cost);
+                rows.add(Arrays.copyOf(row, 5));
+            }
+            printTable(new String[]{"Department", "Managers", "Annual Payroll", "Period Payroll", "Avg Tenure"},
+                    new int[]{20, 9, 15, 15, 11}, rows);
+        }
 
-            // Collect all data first to determine column widths
-            java.util.List<String[]> rows = new java.util.ArrayList<>();
-            boolean hasMembers = false;
-            
-            while (rs.next()) {
-                hasMembers = true;
-                int memberID = rs.getInt("memberID");
-                String firstName;
-                if (rs.getString("firstName") != null) {
-                    firstName = rs.getString("firstName");
-                } else {
-                    firstName = "";
-                }
-                String lastName;
-                if (rs.getString("lastName") != null) {
-                    lastName = rs.getString("lastName");
-                } else {
-                    lastName = "";
-                }
-                
-                String birthday;
-                java.sql.Date birthdayDate = rs.getDate("birthday");
-                if (rs.wasNull() || birthdayDate == null) {
-                    birthday = "(null)";
-                } else {
-                    birthday = birthdayDate.toString();
-                }
-                
-                String phoneNumber = rs.getString("phoneNumber");
-                if (phoneNumber == null) {
-                    phoneNumber = "(null)";
-                }
-                
-                String email = rs.getString("email");
-                if (email == null) {
-                    email = "(null)";
-                }
-                
-                String dateJoined;
-                java.sql.Date dateJoinedDate = rs.getDate("dateJoined");
-                if (rs.wasNull() || dateJoinedDate == null) {
-                    dateJoined = "(null)";
-                } else {
-                    dateJoined = dateJoinedDate.toString();
-                }
-                
+        if (!report.desks().isEmpty()) {
+            System.out.println();
+            rows = new ArrayList<>();
+            for (StaffCosts.DeskCost desk : report.desks()) {
                 rows.add(new String[]{
-                    String.valueOf(memberID),
-                    firstName,
-                    lastName,
-                    birthday,
-                    phoneNumber,
-                    email,
-                    dateJoined
+                    String.valueOf(desk.staffID()),
+                    desk.name(),
+                    desk.periodPayroll().toString(),
+                    String.valueOf(desk.payments()),
+                    desk.collected().toString(),
+                    String.valueOf(desk.checkIns()),
+                    desk.payments() == 0 ? "" : desk.periodPayroll().divide(BigDecimal.valueOf(desk.payments()), 2, RoundingMode.HALF_UP).toString()
                 });
             }
-            
-            if (!hasMembers) {
-                System.out.println("No active members in the database");
-                return;
-            }
-            
-            // Calculate column widths
-            int[] colWidths = {10, 15, 15, 12, 15, 25, 12}; //temporary column widths
-            String[] headers = {"Member ID", "First Name", "Last Name", "Birthday", "Phone Number", "Email", "Date Joined"};
-            
-            // Adjust widths based on actual data
-            for (int i = 0; i < headers.length; i++) {
-                colWidths[i] = Math.max(colWidths[i], headers[i].length());
-            }
-            for (String[] row : rows) {
-                for (int i = 0; i < row.length; i++) {
-                    colWidths[i] = Math.max(colWidths[i], row[i].length());
-                }
-            }
-            
-            //Display output 
-            // Print table header
-            printTableRow(headers, colWidths);
-            printTableSeparator(colWidths);
-            
-            // Print data rows
-            for (String[] row : rows) {
-                printTableRow(row, colWidths);
-            }
+            printTable(new String[]{"Staff ID", "Desk Staff", "Period Payroll", "Payments", "Collected", "Check-Ins", "Payroll/Payment"},
+                    new int[]{9, 25, 15, 9, 13, 10, 15}, rows);
+            long payments = report.desks().stream().mapToLong(StaffCosts.DeskCost::payments).sum();
+            System.out.printf("%nDesk staff processed %.1f payments each on average.%n", (double) payments / report.desks().size());
+        }
+        if (report.unknownStaffRows() > 0) {
+            System.out.println(report.unknownStaffRows() + " payments and check-ins by staff added during the report are left out.");
         }
     }
-}
 
+    private static String[] costRow(StaffCosts.Cost cost) {
+        return new String[]{
+            cost.name(),
+            String.valueOf(cost.staff()),
+            cost.annualPayroll().toString(),
+            cost.periodPayroll().toString(),
+            String.format("%.1f yrs", cost.averageTenureYears()),
+            String.valueOf(cost.payments()),
+            cost.collected().toString(),
+            String.valueOf(cost.checkIns())
+        };
+    }
+
+    private static String minuteOfDay(int minute) {
+        return String.format("%02d:%02d", minute / 60, minute % 60);
+    }
+
+    // HQ view of one table across every branch, with the branch as the first column
+    public static <T> void showConsolidated(View<T> view, List<BranchShards.BranchRow<T>> rows) {
+        System.out.println("\n=== " + view.name() + " (All Branches) ===");
+        System.out.println();
+        System.out.println("This table shows the " + view.name().toLowerCase() + " of every branch, merged in order and labelled with the branch each row came from.");
+        System.out.println();
+
+        if (rows.isEmpty()) {
+            System.out.println("No " + view.name().toLowerCase() + " in any branch");
+            return;
+        }
+
+        String[] headers = new String[view.headers().length + 1];
+        headers[0] = "Branch";
+        System.arraycopy(view.headers(), 0, headers, 1, view.headers().length);
+        int[] widths = new int[view.widths().length + 1];
+        widths[0] = 10;
+        System.arraycopy(view.widths(), 0, widths, 1, view.widths().length);
+
+        List<String[]> table = new ArrayList<>(rows.size());
+        for (BranchShards.BranchRow<T> row : rows) {
+            String[] values = view.render(row.row());
+            String[] withBranch = new String[values.length + 1];
+            withBranch[0] = row.branch();
+            System.arraycopy(values, 0, withBranch, 1, values.length);
+            table.add(withBranch);
+        }
+        printTable(headers, widths, table);
+    }
+
+    public static void showBranchTotals(Map<String, BranchTotals> perBranch) {
+        System.out.println("\n=== Branch Totals ===");
+        System.out.println();
+        System.out.println("This table shows the number of members, active memberships, successful payment total, and check-ins for each branch, and all branches combined.");
+        System.out.println();
+
+        String[] headers = {"Branch", "Members", "Active Memberships", "Successful Payments", "Check-Ins"};
+        int[] widths = {10, 10, 18, 19, 10};
+        List<String[]> rows = new ArrayList<>();
+        BranchTotals all = BranchTotals.ZERO;
+        for (Map.Entry<String, BranchTotals> branch : perBranch.entrySet()) {
+            rows.add(totalsRow(branch.getKey(), branch.getValue()));
+            all = all.plus(branch.getValue());
+        }
+        rows.add(totalsRow("All", all));
+        printTable(headers, widths, rows);
+    }
+
+    private static String[] totalsRow(String branch, BranchTotals totals) {
+        return new String[]{
+            branch,
+            String.valueOf(totals.members()),
+            String.valueOf(totals.activeMemberships()),
+            money(totals.successfulPayments()),
+            String.valueOf(totals.checkIns())
+        };
+    }
+
+    public static void showRouteStats(Map<String, ConnectionRouter.RouteStats> stats) {
+        System.out.println("\n=== Read Routing Stats ===");
+        System.out.println();
+        System.out.println("This table shows how many queries went to the primary and to each replica, and how long they took.");
+        System.out.println();
+
+        String[] headers = {"Route", "Queries", "Avg (ms)", "Max (ms)"};
+        int[] widths = {12, 10, 10, 10};
+        List<String[]> rows = new ArrayList<>();
+        for (Map.Entry<String, ConnectionRouter.RouteStats> route : stats.entrySet()) {
+            ConnectionRouter.RouteStats s = route.getValue();
+            rows.add(new String[]{
+                route.getKey(),
+                String.valueOf(s.calls()),
+                String.format("%.2f", s.averageMillis()),
+                String.format("%.2f", s.maxMillis())
+            });
+        }
+        printTable(headers, widths, rows);
+    }
+
+    public static void showDiagnostics(ViewProfiler profiler, QueryCache cache) {
+        System.out.println("\n=== Diagnostics ===");
+        System.out.println();
+        System.out.println("Time, memory allocated and garbage collections for each view since the app started.");
+        System.out.println("Load is reading the rows, print is turning them into the table.");
+        System.out.println();
+
+        String[] headers = {"Step", "Calls", "Avg (ms)", "Max (ms)", "Avg Alloc (KB)", "Max Alloc (KB)", "GCs", "GC (ms)"};
+        int[] widths = {24, 6, 10, 10, 14, 14, 5, 8};
+        List<String[]> rows = new ArrayList<>();
+        for (Map.Entry<String, ViewProfiler.StepStats> step : profiler.stats().entrySet()) {
+            ViewProfiler.StepStats s = step.getValue();
+            rows.add(new String[]{
+                step.getKey(),
+                String.valueOf(s.calls()),
+                String.format("%.2f", s.averageMillis()),
+                String.format("%.2f", s.maxMillis()),
+                kilobytes(s.averageBytes()),
+                kilobytes(s.maxBytes()),
+                String.valueOf(s.gcCount()),
+                String.valueOf(s.gcMillis())
+            });
+        }
+        printTable(headers, widths, rows);
+
+        MemoryUsage heap = profiler.heap();
+        System.out.printf("%nHeap: %d MB used of %d MB committed, max %d MB%n",
+                heap.getUsed() >> 20, heap.getCommitted() >> 20, heap.getMax() >> 20);
+        if (profiler.recordingFile() != null) {
+            System.out.println("JFR recording on, written to " + profiler.recordingFile() + " on exit");
+        } else {
+            System.out.println("JFR recording off (diagnostics.jfr in app.properties)");
+        }
+        if (cache == null) {
+            System.out.println("Query cache off (cache.enabled in app.properties)");
+        } else {
+            QueryCache.Stats c = cache.stats();
+            System.out.printf("Query cache: %d hits, %d misses, %d out of date, %d evicted, %d entries using %s of %s KB (checked by %s)%n",
+                    c.hits(), c.misses(), c.stale(), c.evictions(), c.entries(),
+                    kilobytes(c.bytes()), kilobytes(c.maxBytes()), cache.validation().toString().toLowerCase());
+        }
+    }
+
+    private static String kilobytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.format("%.1f", bytes / 1024.0);
+    }
+
+    public static void showAnalytics(LocalDate from, LocalDate to, Map<String, HyperLogLog> visitors, Map<String, TDigest> amounts) {
+        System.out.println("\n=== Visit and Payment Analytics ===");
+        System.out.println();
+        System.out.println("From " + from + " to " + to + ". Numbers are estimates, unique visitors are within about 2%.");
+        System.out.println();
+
+        List<String[]> rows = new ArrayList<>();
+        for (Map.Entry<String, HyperLogLog> location : visitors.entrySet()) {
+            String name = location.getKey().isEmpty() ? "(no location)" : location.getKey();
+            rows.add(new String[]{name, String.valueOf(location.getValue().estimate())});
+        }
+        printTable(new String[]{"Location", "Unique Visitors"}, new int[]{20, 15}, rows);
+        System.out.println();
+
+        rows = new ArrayList<>();
+        for (Map.Entry<String, TDigest> type : amounts.entrySet()) {
+            TDigest digest = type.getValue();
+            rows.add(new String[]{
+                type.getKey(),
+                String.valueOf(digest.count()),
+                amount(digest, 0.5),
+                amount(digest, 0.9),
+                amount(digest, 0.99)
+            });
+        }
+        printTable(new String[]{"Payment Type", "Payments", "Median", "p90", "p99"}, new int[]{12, 8, 10, 10, 10}, rows);
+    }
+
+    private static String amount(TDigest digest, double q) {
+        return digest.count() == 0 ? "" : String.format("%.2f", digest.quantile(q));
+    }
+}
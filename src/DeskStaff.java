@@ -0,0 +1,7 @@
+// A StaffMember joined with their Desk row
+public record DeskStaff(
+        StaffMember staff,
+        String schedule,
+        String deskLocation,
+        String responsibility) {
+}
@@ -0,0 +1,11 @@
+import java.time.LocalDate;
+
+// One row of Guest, someone a member brings in
+public record Guest(
+        int guestID,
+        int memberID,
+        String firstName,
+        String lastName,
+        String relationshipToMember,
+        LocalDate birthday) {
+}
@@ -0,0 +1,249 @@
+// Records guest visits and enforces the monthly guest allowance (guests.monthlyQuota in
+// app.properties, per member, counting every guest they bring).
+//
+// The number of visits each member has used this month is kept in memory, loaded with one
+// grouped query when the app starts, so showing a member's allowance at the desk doesn't
+// touch the database, and a member already at the quota is turned away without it.
+//
+// The database has the final say though, since other desks record visits too. It keeps one
+// GuestAllowance row per member and month with the visits used. Recording a visit adds one
+// to it only while it is under the quota (a single conditional UPDATE on the primary key)
+// and inserts the GuestVisit row in the same transaction, so two desks can't both take the
+// last visit, and desks for different members never wait on each other. Opening the
+// service brings this month's rows up to the visits counted by the grouped query, which
+// covers visits recorded before the rows existed or inserted by other tools. The counters
+// start over when the month changes.
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GuestVisits {
+
+    public enum Result {
+        RECORDED,
+        QUOTA_REACHED,
+        UNKNOWN_GUEST
+    }
+
+    private static final String TAKE_VISIT_SQL =
+            "UPDATE GuestAllowance SET used = used + 1 WHERE memberID = ? AND month = ? AND used < ?;";
+
+    // The member's first visit this month, when there is no row to add to yet
+    private static final String FIRST_VISIT_SQL =
+            "INSERT IGNORE INTO GuestAllowance (memberID, month, used) VALUES (?, ?, 1);";
+
+    private static final String SEED_SQL =
+            "INSERT INTO GuestAllowance (memberID, month, used) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE used = GREATEST(used, VALUES(used));";
+
+    private static final String INSERT_VISIT_SQL =
+            "INSERT INTO GuestVisit (guestID, visitDate) VALUES (?, ?);";
+
+    private static final String MONTH_COUNTS_SQL =
+            "SELECT g.memberID, COUNT(*) " +
+            "FROM GuestVisit v " +
+            "JOIN Guest g ON v.guestID = g.guestID " +
+            "WHERE v.visitDate >= ? AND v.visitDate < ? " +
+            "GROUP BY g.memberID;";
+
+    // Visits used per memberID in one month
+    private static final class MonthCounts {
+        final YearMonth month;
+        final Map<Integer, AtomicInteger> used = new ConcurrentHashMap<>();
+
+        MonthCounts(YearMonth month) {
+            this.month = month;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final int monthlyQuota;
+    private final Map<Integer, Integer> memberOfGuest = new ConcurrentHashMap<>();
+    private volatile MonthCounts counts;
+
+    private GuestVisits(ConnectionPool pool, int monthlyQuota, MonthCounts counts) {
+        this.pool = pool;
+        this.monthlyQuota = monthlyQuota;
+        this.counts = counts;
+    }
+
+    // Loads this month's counts, seeds the allowance rows with them and returns the ready service
+    public static GuestVisits open(ConnectionPool pool, int monthlyQuota) throws SQLException {
+        return new GuestVisits(pool, monthlyQuota, pool.run(conn -> {
+            MonthCounts counts = loadCounts(conn, YearMonth.now());
+            seed(conn, counts);
+            return counts;
+        }));
+    }
+
+    public int monthlyQuota() {
+        return monthlyQuota;
+    }
+
+    // Guest visits the member has left this month
+    public int remaining(int memberID) {
+        AtomicInteger used = currentCounts().used.get(memberID);
+        return Math.max(0, monthlyQuota - (used == null ? 0 : used.get()));
+    }
+
+    public Result recordVisit(int guestID) throws SQLException {
+        Integer memberID = memberOf(guestID);
+        if (memberID == null) {
+            return Result.UNKNOWN_GUEST;
+        }
+        MonthCounts month = currentCounts();
+        AtomicInteger used = month.used.computeIfAbsent(memberID, k -> new AtomicInteger());
+        if (used.get() >= monthlyQuota) {
+            return Result.QUOTA_REACHED;
+        }
+        LocalDate today = LocalDate.now();
+        boolean taken = pool.run(conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (!takeVisit(conn, memberID, month.month)) {
+                    conn.rollback();
+                    return false;
+                }
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_VISIT_SQL)) {
+                    ps.setInt(1, guestID);
+                    ps.setObject(2, today);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+        if (!taken) {
+            used.set(monthlyQuota);
+            return Result.QUOTA_REACHED;
+        }
+        used.incrementAndGet();
+        return Result.RECORDED;
+    }
+
+    // Counts one visit against the member's allowance, false when it is used up
+    private boolean takeVisit(Connection conn, int memberID, YearMonth month) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(TAKE_VISIT_SQL)) {
+            ps.setInt(1, memberID);
+            ps.setObject(2, month.atDay(1));
+            ps.setInt(3, monthlyQuota);
+            if (ps.executeUpdate() == 1) {
+                return true;
+            }
+        }
+        // No row yet, or one at the quota, which the insert leaves alone
+        try (PreparedStatement ps = conn.prepareStatement(FIRST_VISIT_SQL)) {
+            ps.setInt(1, memberID);
+            ps.setObject(2, month.atDay(1));
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    // Adds a guest for a member and returns the new guestID
+    public int addGuest(int memberID, String firstName, String lastName, String relationship, LocalDate birthday) throws SQLException {
+        int guestID = pool.run(conn -> {
+            String sql = "INSERT INTO Guest (memberID, firstName, lastName, relationshipToMember, birthday) VALUES (?, ?, ?, ?, ?);";
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, memberID);
+                ps.setString(2, firstName);
+                ps.setString(3, lastName);
+                ps.setString(4, relationship);
+                ps.setObject(5, birthday);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    keys.next();
+                    return keys.getInt(1);
+                }
+            }
+        });
+        memberOfGuest.put(guestID, memberID);
+        return guestID;
+    }
+
+    public List<Guest> guests(int memberID) throws SQLException {
+        return pool.run(conn -> {
+            String sql = "SELECT " + RowMappers.GUEST_COLUMNS + " FROM Guest g WHERE g.memberID = ? ORDER BY g.guestID;";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, memberID);
+                List<Guest> guests = RowMappers.mapAll(ps, RowMappers.GUEST);
+                for (Guest guest : guests) {
+                    memberOfGuest.put(guest.guestID(), guest.memberID());
+                }
+                return guests;
+            }
+        });
+    }
+
+    // A guest always belongs to the same member, so it is looked up once
+    private Integer memberOf(int guestID) throws SQLException {
+        Integer memberID = memberOfGuest.get(guestID);
+        if (memberID != null) {
+            return memberID;
+        }
+        memberID = pool.run(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT memberID FROM Guest WHERE guestID = ?;")) {
+                ps.setInt(1, guestID);
+                List<Integer> ids = RowMappers.mapAll(ps, rs -> rs.getInt(1));
+                return ids.isEmpty() ? null : ids.get(0);
+            }
+        });
+        if (memberID != null) {
+            memberOfGuest.put(guestID, memberID);
+        }
+        return memberID;
+    }
+
+    // The counters for this month, starting empty ones when the month has changed
+    private MonthCounts currentCounts() {
+        MonthCounts current = counts;
+        YearMonth now = YearMonth.now();
+        if (current.month.equals(now)) {
+            return current;
+        }
+        synchronized (this) {
+            if (!counts.month.equals(now)) {
+                counts = new MonthCounts(now);
+            }
+            return counts;
+        }
+    }
+
+    private static MonthCounts loadCounts(Connection conn, YearMonth month) throws SQLException {
+        MonthCounts counts = new MonthCounts(month);
+        try (PreparedStatement ps = conn.prepareStatement(MONTH_COUNTS_SQL)) {
+            ps.setObject(1, month.atDay(1));
+            ps.setObject(2, month.plusMonths(1).atDay(1));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    counts.used.put(rs.getInt(1), new AtomicInteger(rs.getInt(2)));
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void seed(Connection conn, MonthCounts counts) throws SQLException {
+        if (counts.used.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(SEED_SQL)) {
+            for (Map.Entry<Integer, AtomicInteger> member : counts.used.entrySet()) {
+                ps.setInt(1, member.getKey());
+                ps.setObject(2, counts.month.atDay(1));
+                ps.setInt(3, member.getValue().get());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+import java.time.LocalDate;
+
+// One row of GymMember. Values are kept as read from the database, formatting happens
+// when the row is printed. version is what MemberService checks before saving an edit.
+public record GymMember(
+        int memberID,
+        String firstName,
+        String lastName,
+        LocalDate birthday,
+        String phoneNumber,
+        String email,
+        LocalDate dateJoined,
+        int version) {
+}
@@ -0,0 +1,115 @@
+// Estimates how many distinct ids were added, in a few KB no matter how many there are.
+// Used by Analytics for unique visitors (membershipIDs) per day and location. Sketches of
+// different days or locations merge into one for the whole range, and the estimate is
+// within about 1.6% (one standard error at 4096 registers).
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class HyperLogLog {
+
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final byte SPARSE = 1;
+    private static final byte DENSE = 2;
+
+    // Highest leading-zero rank seen for each register
+    private final byte[] registers = new byte[REGISTERS];
+
+    public void add(int id) {
+        long hash = hash(id);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // Rank of the remaining bits, the sentinel bit caps it when they are all zero
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        // Small counts are more accurate from the number of empty registers
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // A day at one location only touches a few hundred registers, so those are stored as
+    // (index, value) pairs until the full array is smaller
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+        if (used * 3 + 3 >= REGISTERS + 1) {
+            ByteBuffer out = ByteBuffer.allocate(REGISTERS + 1);
+            out.put(DENSE).put(registers);
+            return out.array();
+        }
+        ByteBuffer out = ByteBuffer.allocate(used * 3 + 3);
+        out.put(SPARSE).putShort((short) used);
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                out.putShort((short) i).put(registers[i]);
+            }
+        }
+        return out.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog hll = new HyperLogLog();
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        byte format = in.get();
+        if (format == DENSE) {
+            in.get(hll.registers);
+        } else if (format == SPARSE) {
+            int used = in.getShort() & 0xFFFF;
+            for (int i = 0; i < used; i++) {
+                hll.registers[in.getShort() & 0xFFFF] = in.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Not a HyperLogLog sketch, format " + format);
+        }
+        return hll;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog && Arrays.equals(registers, ((HyperLogLog) o).registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+
+    // 64-bit finalizer from MurmurHash3, spreads consecutive ids over all the bits
+    private static long hash(int id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,75 @@
+// A static interval tree over half-open [start, end) intervals, built once from a list and
+// then only queried. Intervals are sorted by start and treated as a balanced binary tree
+// (the middle element of each range is its root), and every node remembers the largest end
+// in its subtree, so a query skips whole subtrees that end before it. Finding the k
+// intervals that overlap a point or range takes O(log n + k).
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+public class IntervalTree<T> {
+
+    private final List<T> items;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] maxEnds;
+
+    public IntervalTree(List<T> intervals, ToIntFunction<T> start, ToIntFunction<T> end) {
+        items = new ArrayList<>(intervals);
+        items.sort(Comparator.comparingInt(start));
+        int n = items.size();
+        starts = new int[n];
+        ends = new int[n];
+        maxEnds = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = start.applyAsInt(items.get(i));
+            ends[i] = end.applyAsInt(items.get(i));
+        }
+        computeMaxEnds(0, n);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    // Intervals containing point, i.e. start <= point < end
+    public List<T> containing(int point) {
+        return overlapping(point, point + 1);
+    }
+
+    // Intervals that share any time with [from, to), i.e. start < to and end > from
+    public List<T> overlapping(int from, int to) {
+        List<T> found = new ArrayList<>();
+        collect(0, items.size(), from, to, found);
+        return found;
+    }
+
+    private int computeMaxEnds(int lo, int hi) {
+        if (lo >= hi) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        int max = Math.max(ends[mid], Math.max(computeMaxEnds(lo, mid), computeMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private void collect(int lo, int hi, int from, int to, List<T> found) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] <= from) {
+            return; // everything below here ends before the query starts
+        }
+        collect(lo, mid, from, to, found);
+        if (starts[mid] >= to) {
+            return; // this one and everything to its right start after the query ends
+        }
+        if (ends[mid] > from) {
+            found.add(items.get(mid));
+        }
+        collect(mid + 1, hi, from, to, found);
+    }
+}
@@ -0,0 +1,70 @@
+// Collects operation timings for the benchmarks and load tests and reports percentiles.
+// One recorder per thread, merged at the end, so recording never needs a lock. Code that
+// runs for as long as the app does passes a window and gets the last window timings
+// instead of all of them, so the memory and the sort in percentileMillis stay bounded.
+import java.util.Arrays;
+
+public class LatencyRecorder {
+
+    private final int window; // 0 keeps every timing
+    private long[] nanos;
+    private int count;
+    private long total;
+
+    public LatencyRecorder() {
+        this(0);
+    }
+
+    public LatencyRecorder(int window) {
+        this.window = window;
+        this.nanos = new long[window > 0 ? window : 1024];
+    }
+
+    public void record(long elapsedNanos) {
+        if (window > 0) {
+            // Ring buffer, overwriting the oldest timing once it is full
+            nanos[(int) (total % window)] = elapsedNanos;
+            count = Math.min(count + 1, window);
+            total++;
+            return;
+        }
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = elapsedNanos;
+        total++;
+    }
+
+    public void addAll(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.nanos[i]);
+        }
+    }
+
+    // Timings the percentiles are taken from
+    public int count() {
+        return count;
+    }
+
+    // Timings recorded in all, including ones a window has dropped
+    public long total() {
+        return total;
+    }
+
+    // p is between 0 and 100, e.g. 99 for p99
+    public double percentileMillis(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+    }
+
+    public String summary() {
+        String n = total == count ? String.valueOf(count) : total + " (last " + count + ")";
+        return String.format("n=%s p50=%.2fms p99=%.2fms max=%.2fms",
+                n, percentileMillis(50), percentileMillis(99), percentileMillis(100));
+    }
+}
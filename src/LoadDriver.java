@@ -0,0 +1,132 @@
+// Replays front desk traffic against the database with several simulated desks at once
+// and reports p50/p99 latency for each kind of request. Best run after DataGenerator:
+//
+//   java -cp bin:mysql-connector-j.jar LoadDriver <clients> <seconds>
+//
+// Each client has its own connection and loops over a weighted mix: mostly check-ins,
+// some small lookups (plans, staff) and now and then one of the full table views.
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LoadDriver {
+
+    // Operation name and weight out of 100
+    private static final String CHECK_IN = "Check-In";
+    private static final Object[][] MIX = {
+        {CHECK_IN, 60},
+        {View.PLANS, 10},
+        {View.ALL_STAFF_MEMBERS, 8},
+        {View.DESK_STAFF, 7},
+        {View.ACTIVE_MEMBERS, 5},
+        {View.ALL_MEMBERSHIPS, 4},
+        {View.GYM_MEMBERS, 3},
+        {View.PAYMENTS, 2},
+        {View.CHECK_INS, 1}
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: LoadDriver <clients> <seconds>");
+            return;
+        }
+        int clients = Integer.parseInt(args[0]);
+        int seconds = Integer.parseInt(args[1]);
+
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+
+        int[] activeMemberships;
+        int[] deskStaff;
+        try (Connection conn = Database.connect(props)) {
+            activeMemberships = ids(conn, "SELECT membershipID FROM Membership WHERE status = 'Active'");
+            deskStaff = ids(conn, "SELECT staffID FROM Desk");
+        }
+        if (activeMemberships.length == 0 || deskStaff.length == 0) {
+            System.out.println("Need at least one active membership and one desk staff member, run DataGenerator first");
+            return;
+        }
+
+        System.out.printf("Running %d clients for %d seconds...%n", clients, seconds);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Map<String, LatencyRecorder>>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            results.add(pool.submit(() -> runClient(props, deadline, new Random(seed), activeMemberships, deskStaff)));
+        }
+
+        Map<String, LatencyRecorder> merged = new LinkedHashMap<>();
+        for (Future<Map<String, LatencyRecorder>> result : results) {
+            for (Map.Entry<String, LatencyRecorder> op : result.get().entrySet()) {
+                merged.computeIfAbsent(op.getKey(), k -> new LatencyRecorder()).addAll(op.getValue());
+            }
+        }
+        pool.shutdown();
+        report(merged, seconds);
+    }
+
+    private static Map<String, LatencyRecorder> runClient(Properties props, long deadline, Random random,
+                                                          int[] memberships, int[] deskStaff) throws SQLException {
+        Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+        try (Connection conn = Database.connect(props);
+             PreparedStatement checkIn = conn.prepareStatement(
+                     "INSERT INTO CheckIn (membershipID, staffID, location) VALUES (?, ?, 'Main Entrance')")) {
+            while (System.nanoTime() < deadline) {
+                Object op = pickOperation(random);
+                long start = System.nanoTime();
+                if (op == CHECK_IN) {
+                    checkIn.setInt(1, memberships[random.nextInt(memberships.length)]);
+                    checkIn.setInt(2, deskStaff[random.nextInt(deskStaff.length)]);
+                    checkIn.executeUpdate();
+                } else {
+                    ((View<?>) op).load(conn);
+                }
+                recorders.computeIfAbsent(op.toString(), k -> new LatencyRecorder()).record(System.nanoTime() - start);
+            }
+        }
+        return recorders;
+    }
+
+    private static Object pickOperation(Random random) {
+        int roll = random.nextInt(100);
+        for (Object[] entry : MIX) {
+            roll -= (Integer) entry[1];
+            if (roll < 0) {
+                return entry[0];
+            }
+        }
+        return CHECK_IN;
+    }
+
+    private static int[] ids(Connection conn, String sql) throws SQLException {
+        List<Integer> ids = RowMappers.query(conn, sql, rs -> rs.getInt(1));
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void report(Map<String, LatencyRecorder> ops, int seconds) {
+        String[] headers = {"Operation", "Count", "Per Second", "p50 (ms)", "p99 (ms)", "Max (ms)"};
+        int[] widths = {18, 8, 10, 10, 10, 10};
+        List<String[]> rows = new ArrayList<>();
+        for (Map.Entry<String, LatencyRecorder> op : ops.entrySet()) {
+            LatencyRecorder r = op.getValue();
+            rows.add(new String[]{
+                op.getKey(),
+                String.valueOf(r.count()),
+                String.format("%.1f", r.count() / (double) seconds),
+                String.format("%.2f", r.percentileMillis(50)),
+                String.format("%.2f", r.percentileMillis(99)),
+                String.format("%.2f", r.percentileMillis(100))
+            });
+        }
+        System.out.println();
+        DatabaseViews.printTable(headers, widths, rows);
+    }
+}
@@ -0,0 +1,485 @@
+// A copy of every menu view kept on this desk terminal, so the views keep working while
+// the central database can't be reached. Check-ins recorded here go to a local
+// CheckInJournal first and are sent to the database by the same background thread that
+// keeps the copy up to date.
+//
+// Every syncSeconds the thread:
+//  - sends check-ins the journal still holds, in batches
+//  - adds the new rows of views that are read in id order (members, payments, check-ins),
+//    asking only for ids after the last one it has
+//  - reloads any other view when the row count, highest id or version sum of one of its
+//    tables moved (the versions probe of QueryCache), and every view at least every
+//    fullSyncMinutes, which is when other edits to existing rows made elsewhere show up
+//  - appends what changed to replica.snapshot (row blocks, see RowBlocks), which is what
+//    the app starts from when the database is down at startup. A full sync writes the
+//    file again with one block per view.
+// Edits made in this app are shown right away: until the next sync has picked them up,
+// rows() returns null for the views they touch (see QueryCache.changed) and the caller
+// reads from the database instead.
+//
+//   replica.enabled=true
+//   replica.dir=local
+//   replica.syncSeconds=5
+//   replica.fullSyncMinutes=30
+//   replica.terminal=desk-1      (defaults to the host name)
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class LocalReplica implements AutoCloseable {
+
+    private static final int SNAPSHOT_FORMAT = 2;
+
+    // Views sorted by an AUTO_INCREMENT id, with the ChangeFeed table that says how to read
+    // the rows after a given id. The table's columns are the view's columns.
+    private static final Map<View<?>, ChangeFeed.Table<?>> BY_ID = Map.of(
+            View.GYM_MEMBERS, ChangeFeed.Table.GYM_MEMBER,
+            View.PAYMENTS, ChangeFeed.Table.PAYMENT,
+            View.CHECK_INS, ChangeFeed.Table.CHECK_IN);
+
+    // What a sync did to one view
+    private enum Synced { NOTHING, ADDED, RELOADED, FULL_SYNC }
+
+    // The rows of one view, as the blocks saved in the snapshot and the rows decoded from
+    // each of them. A sync that adds rows makes a new Copy sharing the old chunks.
+    private static final class Copy {
+        final List<List<?>> chunks;
+        final List<byte[]> blocks;
+        final int lastKey;
+        final String probe;
+        final Map<String, Long> versions;
+        final long checkedAt; // the last full sync
+
+        Copy(List<List<?>> chunks, List<byte[]> blocks, int lastKey, String probe, Map<String, Long> versions, long checkedAt) {
+            this.chunks = chunks;
+            this.blocks = blocks;
+            this.lastKey = lastKey;
+            this.probe = probe;
+            this.versions = versions;
+            this.checkedAt = checkedAt;
+        }
+
+        long bytes() {
+            long bytes = 0;
+            for (byte[] block : blocks) {
+                bytes += block.length;
+            }
+            return bytes;
+        }
+    }
+
+    // The rows of all chunks as one read-only list
+    private static final class Rows<T> extends AbstractList<T> {
+        private final List<List<T>> chunks;
+        private final int[] starts;
+
+        Rows(List<List<T>> chunks) {
+            this.chunks = chunks;
+            this.starts = new int[chunks.size() + 1];
+            for (int i = 0; i < chunks.size(); i++) {
+                starts[i + 1] = starts[i] + chunks.get(i).size();
+            }
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int chunk = Arrays.binarySearch(starts, index);
+            if (chunk < 0) {
+                chunk = -chunk - 2;
+            }
+            // Skip empty chunks that start at the same index
+            while (chunks.get(chunk).isEmpty()) {
+                chunk++;
+            }
+            return chunks.get(chunk).get(index - starts[chunk]);
+        }
+
+        @Override
+        public int size() {
+            return starts[starts.length - 1];
+        }
+    }
+
+    private final Properties props;
+    private final Path snapshot;
+    private final CheckInJournal journal;
+    private final long fullSyncMillis;
+    private final Map<View<?>, Set<String>> tables = new HashMap<>();
+    private final Map<View<?>, Copy> copies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncer;
+    private Connection conn; // only used from the sync thread
+    private boolean snapshotBehind; // an append failed, the next sync writes the whole file
+    private volatile boolean online;
+    private volatile LocalDateTime syncedAt; // last successful sync, or when the snapshot was saved
+    private volatile String lastError;
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+    private LocalReplica(Properties props, Path dir, String terminal) throws IOException {
+        this.props = props;
+        this.snapshot = dir.resolve("replica.snapshot");
+        this.journal = new CheckInJournal(dir.resolve("checkins.journal"), terminal);
+        this.fullSyncMillis = Database.intProperty(props, "replica.fullSyncMinutes", 30) * 60_000L;
+        for (View<?> view : View.ALL) {
+            tables.put(view, QueryCache.tables(view.sql()));
+        }
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "local-replica");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Starts loading the last snapshot (if there is one) and then syncing, both on the sync
+    // thread, so a large snapshot doesn't hold up the menu. Doesn't need the database, so it
+    // works when the database is down.
+    public static LocalReplica open(Properties props) throws IOException {
+        String terminal = props.getProperty("replica.terminal", "").trim();
+        if (terminal.isEmpty()) {
+            terminal = InetAddress.getLocalHost().getHostName();
+        }
+        Path dir = Paths.get(props.getProperty("replica.dir", "local"));
+        Files.createDirectories(dir);
+        LocalReplica replica = new LocalReplica(props, dir, terminal);
+        replica.syncer.execute(replica::loadSnapshot);
+        replica.syncer.scheduleWithFixedDelay(replica::sync, 0,
+                Database.intProperty(props, "replica.syncSeconds", 5), TimeUnit.SECONDS);
+        return replica;
+    }
+
+    // Waits for the snapshot to be read, for when the rows are needed now (offline)
+    public void awaitLoaded() {
+        loaded.join();
+    }
+
+    // The view's rows from this terminal, or null if it doesn't have them (or hasn't read the
+    // snapshot yet) or an edit made in this app since the last sync could be missing from them
+    public <T> List<T> rows(View<T> view) {
+        if (!loaded.isDone()) {
+            return null;
+        }
+        Copy copy = copies.get(view);
+        if (copy == null) {
+            return null;
+        }
+        if (online && !copy.versions.equals(QueryCache.versions(tables.get(view)))) {
+            syncNow();
+            return null;
+        }
+        @SuppressWarnings("unchecked") // copies are only stored under the view that loaded them
+        List<List<T>> chunks = (List<List<T>>) (List<?>) copy.chunks;
+        return new Rows<>(chunks);
+    }
+
+    // Saves a check-in on this terminal, it reaches the database with the next sync
+    public void recordCheckIn(int membershipID, int staffID, LocalDateTime ts, String location) throws IOException {
+        journal.record(membershipID, staffID, ts, location);
+        syncNow();
+    }
+
+    public int pendingCheckIns() throws IOException {
+        return journal.pending();
+    }
+
+    // Whether the last sync reached the database
+    public boolean isOnline() {
+        return online;
+    }
+
+    public LocalDateTime syncedAt() {
+        return syncedAt;
+    }
+
+    public String lastError() {
+        return lastError;
+    }
+
+    public void syncNow() {
+        syncer.execute(this::sync);
+    }
+
+    // Runs on the scheduler, so nothing may escape: an exception would cancel every later sync
+    private void sync() {
+        try {
+            if (conn == null || !conn.isValid(2)) {
+                closeConnection();
+                Database.loadDriver(props);
+                conn = Database.connect(props);
+            }
+            journal.replay(conn);
+            boolean rewrite = false;
+            List<View<?>> changed = new ArrayList<>();
+            for (View<?> view : View.ALL) {
+                Synced synced = sync(view);
+                if (synced == Synced.FULL_SYNC) {
+                    rewrite = true;
+                } else if (synced != Synced.NOTHING) {
+                    changed.add(view);
+                }
+            }
+            if (rewrite || snapshotBehind || !Files.exists(snapshot) || Files.size(snapshot) > 2 * liveBytes() + (1 << 20)) {
+                snapshotBehind = true;
+                save();
+                snapshotBehind = false;
+            } else if (!changed.isEmpty()) {
+                snapshotBehind = true;
+                append(changed);
+                snapshotBehind = false;
+            }
+            online = true;
+            syncedAt = LocalDateTime.now();
+            lastError = null;
+        } catch (SQLException | ClassNotFoundException e) {
+            online = false;
+            lastError = e.getMessage();
+            closeConnection();
+        } catch (IOException e) {
+            lastError = e.getMessage();
+        } catch (RuntimeException e) {
+            lastError = e.toString();
+            closeConnection();
+        }
+    }
+
+    // Brings one view up to date. Views read in id order only ask for the rows after the
+    // last id, other views are read again when the row count or highest id of one of their
+    // tables moved. Every view is read in full every fullSyncMinutes, which is when edits
+    // to existing rows made elsewhere show up.
+    private <T> Synced sync(View<T> view) throws SQLException {
+        Copy copy = copies.get(view);
+        Set<String> viewTables = tables.get(view);
+        // Taken first, so a write that lands during the sync gets synced again next time
+        Map<String, Long> versions = QueryCache.versions(viewTables);
+        long now = System.currentTimeMillis();
+        ChangeFeed.Table<?> table = BY_ID.get(view);
+        boolean due = copy == null || now - copy.checkedAt >= fullSyncMillis;
+
+        if (!due && table != null && copy.versions.equals(versions)) {
+            String key = table.alias + "." + table.keyColumn;
+            String sql = "SELECT " + table.columns + " FROM " + table.tableName + " " + table.alias + " " +
+                         "WHERE " + key + " > ? ORDER BY " + key + ";";
+            List<T> added = new ArrayList<>();
+            byte[] block;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, copy.lastKey);
+                try (ResultSet rs = ps.executeQuery()) {
+                    block = RowBlocks.encode(rs, view.mapper(), added);
+                }
+            }
+            if (added.isEmpty()) {
+                return Synced.NOTHING;
+            }
+            List<List<?>> chunks = new ArrayList<>(copy.chunks);
+            chunks.add(added);
+            List<byte[]> blocks = new ArrayList<>(copy.blocks);
+            blocks.add(block);
+            copies.put(view, new Copy(chunks, blocks, view.key(added.get(added.size() - 1)), copy.probe,
+                    versions, copy.checkedAt));
+            return Synced.ADDED;
+        }
+
+        String probe = table == null ? QueryCache.versionsProbe(conn, viewTables) : "";
+        if (!due && table == null && copy.versions.equals(versions) && probe.equals(copy.probe)) {
+            return Synced.NOTHING;
+        }
+        List<T> rows = new ArrayList<>();
+        byte[] block;
+        try (PreparedStatement ps = conn.prepareStatement(view.sql());
+             ResultSet rs = ps.executeQuery()) {
+            block = RowBlocks.encode(rs, view.mapper(), rows);
+        }
+        int lastKey = rows.isEmpty() ? 0 : view.key(rows.get(rows.size() - 1));
+        copies.put(view, new Copy(List.of(rows), List.of(block), lastKey, probe, versions, due ? now : copy.checkedAt));
+        return due ? Synced.FULL_SYNC : Synced.RELOADED;
+    }
+
+    // The snapshot is a list of records, each one view's rows read in full or the rows added
+    // to it since. Syncs append records, a full sync writes the file again with just the
+    // blocks each view has now. Written to a temporary file and moved into place, so a crash
+    // leaves the old snapshot.
+    private void save() throws IOException {
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_FORMAT);
+            for (Map.Entry<View<?>, Copy> entry : copies.entrySet()) {
+                Copy copy = entry.getValue();
+                for (int i = 0; i < copy.blocks.size(); i++) {
+                    writeRecord(out, entry.getKey(), copy, i == 0, copy.blocks.get(i));
+                }
+            }
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Adds the new block of each view to the end of the snapshot. A crash half way leaves a
+    // record cut short, which load() drops.
+    private void append(List<View<?>> changed) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(snapshot, StandardOpenOption.APPEND)))) {
+            for (View<?> view : changed) {
+                Copy copy = copies.get(view);
+                boolean full = copy.blocks.size() == 1;
+                writeRecord(out, view, copy, full, copy.blocks.get(copy.blocks.size() - 1));
+            }
+        }
+    }
+
+    // A record is its length followed by the view, whether it replaces the view's rows, the
+    // view's last id, probe and last full sync after it, and the block
+    private static void writeRecord(DataOutputStream out, View<?> view, Copy copy, boolean full, byte[] block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.length + 64);
+        try (DataOutputStream record = new DataOutputStream(bytes)) {
+            record.writeUTF(view.name());
+            record.writeBoolean(full);
+            record.writeInt(copy.lastKey);
+            record.writeUTF(copy.probe);
+            record.writeLong(copy.checkedAt);
+            record.writeInt(block.length);
+            record.write(block);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    // The first task on the sync thread
+    private void loadSnapshot() {
+        try {
+            load();
+        } catch (IOException | SQLException | RuntimeException e) {
+            // Starting empty just means the first sync reads every view
+            System.out.println("Ignoring unreadable " + snapshot + ": " + e.getMessage());
+            copies.clear();
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException deleteError) {
+                lastError = deleteError.getMessage();
+            }
+        } finally {
+            loaded.complete(null);
+        }
+    }
+
+    private void load() throws IOException, SQLException {
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        Map<String, View<?>> byName = new HashMap<>();
+        for (View<?> view : View.ALL) {
+            byName.put(view.name(), view);
+        }
+        long size = Files.size(snapshot);
+        long good;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (size < 4 || in.readInt() != SNAPSHOT_FORMAT) {
+                throw new IOException("written by a different version of the app");
+            }
+            good = 4;
+            while (size - good >= 4) {
+                int length = in.readInt();
+                if (length < 0 || size - good - 4 < length) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                good += 4 + length;
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                View<?> view = byName.get(record.readUTF());
+                boolean full = record.readBoolean();
+                int lastKey = record.readInt();
+                String probe = record.readUTF();
+                long checkedAt = record.readLong();
+                byte[] block = new byte[record.readInt()];
+                record.readFully(block);
+                if (view != null) {
+                    loadRecord(view, full, lastKey, probe, checkedAt, block);
+                }
+            }
+        }
+        if (good < size) {
+            // The last append was cut short
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+                channel.truncate(good);
+            }
+        }
+        syncedAt = LocalDateTime.ofInstant(Files.getLastModifiedTime(snapshot).toInstant(), ZoneId.systemDefault());
+    }
+
+    private <T> void loadRecord(View<T> view, boolean full, int lastKey, String probe, long checkedAt, byte[] block) throws SQLException {
+        Copy copy = copies.get(view);
+        List<List<?>> chunks = new ArrayList<>();
+        List<byte[]> blocks = new ArrayList<>();
+        if (!full && copy != null) {
+            chunks.addAll(copy.chunks);
+            blocks.addAll(copy.blocks);
+        }
+        chunks.add(RowBlocks.decode(block, view.mapper()));
+        blocks.add(block);
+        copies.put(view, new Copy(chunks, blocks, lastKey, probe, QueryCache.versions(tables.get(view)), checkedAt));
+    }
+
+    // What the snapshot would take written out again
+    private long liveBytes() {
+        long bytes = 0;
+        for (Copy copy : copies.values()) {
+            bytes += copy.bytes();
+        }
+        return bytes;
+    }
+
+    private void closeConnection() {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // The link is already gone
+        }
+        conn = null;
+    }
+
+    @Override
+    public void close() {
+        syncer.shutdown();
+        try {
+            syncer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeConnection();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // Every record() already forced its line to disk
+        }
+    }
+}
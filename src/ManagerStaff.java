@@ -0,0 +1,7 @@
+// A StaffMember joined with their Manager row
+public record ManagerStaff(
+        StaffMember staff,
+        String department,
+        String officeLocation,
+        Integer experience) {
+}
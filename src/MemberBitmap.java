@@ -0,0 +1,438 @@
+// A compressed set of memberIDs for MemberSegments, laid out like a Roaring bitmap: ids are
+// split by their high 16 bits into chunks of 65536, and each chunk is stored as a sorted
+// array while it has up to 4096 ids (8 KB at most) or as a 65536-bit bitmap (8 KB) once it
+// has more. Sparse sets such as one day's visitors stay small, dense ones such as all
+// active members cost one bit per id, and AND / OR / AND NOT work a whole chunk at a time.
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class MemberBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024; // 65536 bits
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+
+    public static MemberBitmap of(int... ids) {
+        MemberBitmap bitmap = new MemberBitmap();
+        for (int id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    public void add(int id) {
+        char key = (char) (id >>> 16);
+        int i = Arrays.binarySearch(keys, key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new ArrayContainer());
+        }
+        containers[i] = containers[i].add((char) id);
+    }
+
+    public void remove(int id) {
+        int i = Arrays.binarySearch(keys, (char) (id >>> 16));
+        if (i < 0) {
+            return;
+        }
+        containers[i] = containers[i].remove((char) id);
+        if (containers[i].cardinality() == 0) {
+            keys = concat(Arrays.copyOfRange(keys, 0, i), Arrays.copyOfRange(keys, i + 1, keys.length));
+            Container[] rest = new Container[containers.length - 1];
+            System.arraycopy(containers, 0, rest, 0, i);
+            System.arraycopy(containers, i + 1, rest, i, rest.length - i);
+            containers = rest;
+        }
+    }
+
+    public boolean contains(int id) {
+        int i = Arrays.binarySearch(keys, (char) (id >>> 16));
+        return i >= 0 && containers[i].contains((char) id);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (Container c : containers) {
+            total += c.cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    // Calls action for every id in ascending order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int[] next = {0};
+        forEach(id -> ids[next[0]++] = id);
+        return ids;
+    }
+
+    public MemberBitmap and(MemberBitmap other) {
+        MemberBitmap result = new MemberBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public MemberBitmap or(MemberBitmap other) {
+        MemberBitmap result = new MemberBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // The ids in this bitmap that are not in other
+    public MemberBitmap andNot(MemberBitmap other) {
+        MemberBitmap result = new MemberBitmap();
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.keys.length && other.keys[j] == keys[i]) {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    // Roughly how much memory the ids take, for the diagnostics
+    public long sizeInBytes() {
+        long bytes = keys.length * 2L;
+        for (Container c : containers) {
+            bytes += c.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // Adds a container after the last key, skipping empty results
+    private void append(char key, Container container) {
+        if (container.cardinality() == 0) {
+            return;
+        }
+        insert(keys.length, key, container);
+    }
+
+    private void insert(int i, char key, Container container) {
+        char[] newKeys = new char[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(containers, 0, newContainers, 0, i);
+        newKeys[i] = key;
+        newContainers[i] = container;
+        System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+        System.arraycopy(containers, i, newContainers, i + 1, containers.length - i);
+        keys = newKeys;
+        containers = newContainers;
+    }
+
+    private static char[] concat(char[] a, char[] b) {
+        char[] both = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+        return both;
+    }
+
+    // The low 16 bits of the ids in one chunk. add and remove return the container to keep,
+    // which is a different kind when the chunk crosses ARRAY_MAX.
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract long[] words();
+
+        abstract Container copy();
+
+        abstract long sizeInBytes();
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                return ((ArrayContainer) this).intersect((ArrayContainer) other);
+            }
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, true);
+            }
+            if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).filter(this, true);
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] result = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = a[i] & b[i];
+            }
+            return fromWords(result);
+        }
+
+        Container or(Container other) {
+            long[] result = words();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i++) {
+                    result[array.values[i] >>> 6] |= 1L << array.values[i];
+                }
+            } else {
+                long[] b = other.words();
+                for (int i = 0; i < WORDS; i++) {
+                    result[i] |= b[i];
+                }
+            }
+            return fromWords(result);
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, false);
+            }
+            long[] result = words();
+            long[] b = other.words();
+            for (int i = 0; i < WORDS; i++) {
+                result[i] &= ~b[i];
+            }
+            return fromWords(result);
+        }
+
+        // Picks the smaller kind for the ids in words (which it may keep)
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX) {
+                return new BitmapContainer(words, cardinality);
+            }
+            ArrayContainer array = new ArrayContainer(cardinality);
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.values[array.size++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int size;
+
+        ArrayContainer() {
+            this(4);
+        }
+
+        ArrayContainer(int capacity) {
+            values = new char[Math.max(4, capacity)];
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX) {
+                return new BitmapContainer(words(), size).add(value);
+            }
+            i = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        long[] words() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer(size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return values.length * 2L;
+        }
+
+        // Both sorted, so one merge pass
+        ArrayContainer intersect(ArrayContainer other) {
+            ArrayContainer result = new ArrayContainer(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (values[i] < other.values[j]) {
+                    i++;
+                } else if (values[i] > other.values[j]) {
+                    j++;
+                } else {
+                    result.values[result.size++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        // The values that are (keep = true) or are not (keep = false) in other
+        ArrayContainer filter(Container other, boolean keep) {
+            ArrayContainer result = new ArrayContainer(size);
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i]) == keep) {
+                    result.values[result.size++] = values[i];
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] bits;
+        int cardinality;
+
+        BitmapContainer(long[] bits, int cardinality) {
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long mask = 1L << value;
+            if ((bits[value >>> 6] & mask) == 0) {
+                bits[value >>> 6] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long mask = 1L << value;
+            if ((bits[value >>> 6] & mask) != 0) {
+                bits[value >>> 6] &= ~mask;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX) {
+                    return fromWords(bits);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (bits[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    action.accept(high | (i * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        long[] words() {
+            return bits.clone();
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(bits.clone(), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return WORDS * 8L;
+        }
+    }
+}
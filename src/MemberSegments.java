@@ -0,0 +1,362 @@
+// Answers marketing's "which members ..." questions from bitmaps held in memory instead of
+// a new multi-join query each time. For every attribute value it keeps a MemberBitmap of
+// the memberIDs that have it:
+//   status:Active / Paused / Cancelled   has a membership with that status
+//   plan:Monthly / "Monthly Premium" / Annual   has a membership on that plan type
+//   trainer:<staffID>                    is trained by that trainer
+//   visited:<yyyy-mm-dd>[..<yyyy-mm-dd>] checked in that day (or in that range)
+//   visited:last<N>                      checked in during the last N days, today included
+//   all                                  every member
+// and a segment combines them with AND, OR, NOT and parentheses, e.g.
+//   status:Active AND plan:"Monthly Premium" AND trainer:12 AND NOT visited:last7
+//
+// A status and a plan ANDed together have to belong to the same membership, so the member
+// above needs an Active "Monthly Premium" membership, not an Active Monthly one and a
+// Cancelled "Monthly Premium" one. For that there is also a bitmap per status and plan pair,
+// and the parser uses those for the status and plan terms of an AND.
+//
+// refresh() only reads what was added since the last refresh for check-ins, members and
+// memberships (by id, like ChangeFeed). Changes to existing memberships made through the
+// app are passed in with membershipChanged(). TrainerTrainsMember has no id to follow, it is
+// small and is reloaded every time. rebuild() starts over, which also picks up edits made
+// outside the app. The app rebuilds every segments.rebuildMinutes, or when asked to.
+//
+//   java -cp bin:mysql-connector-j.jar MemberSegments "status:Active AND NOT visited:last7"
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+public class MemberSegments {
+
+    private static final String NEW_MEMBERS_SQL =
+            "SELECT memberID FROM GymMember WHERE memberID > ? ORDER BY memberID;";
+
+    private static final String NEW_MEMBERSHIPS_SQL =
+            "SELECT ms.membershipID, ms.memberID, ms.status, p.planType " +
+            "FROM Membership ms JOIN Plan p ON ms.planID = p.planID " +
+            "WHERE ms.membershipID > ? ORDER BY ms.membershipID;";
+
+    private static final String MEMBER_MEMBERSHIPS_SQL =
+            "SELECT ms.membershipID, ms.memberID, ms.status, p.planType " +
+            "FROM Membership ms JOIN Plan p ON ms.planID = p.planID " +
+            "WHERE ms.memberID = ?;";
+
+    private static final String NEW_CHECK_INS_SQL =
+            "SELECT c.checkInID, DATE(c.ts), ms.memberID " +
+            "FROM CheckIn c JOIN Membership ms ON c.membershipID = ms.membershipID " +
+            "WHERE c.checkInID > ? ORDER BY c.checkInID;";
+
+    private static final String TRAINERS_SQL =
+            "SELECT trainerID, memberID FROM TrainerTrainsMember;";
+
+    private MemberBitmap all = new MemberBitmap();
+    private final Map<String, MemberBitmap> attributes = new HashMap<>();
+    private final TreeMap<LocalDate, MemberBitmap> visits = new TreeMap<>();
+    private int lastMemberID;
+    private int lastMembershipID;
+    private int lastCheckInID;
+    private long builtAt; // when rebuild() last ran, 0 before the first one
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.out.println("Usage: MemberSegments \"<segment>\", e.g. \"status:Active AND NOT visited:last7\"");
+            return;
+        }
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (Connection conn = Database.connect(props)) {
+            MemberSegments segments = new MemberSegments();
+            segments.refresh(conn);
+            MemberBitmap result = segments.evaluate(args[0]);
+            DatabaseViews.showSegment(args[0], result.cardinality(), members(conn, result, Integer.MAX_VALUE));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.out.println("Invalid segment: " + e.getMessage());
+        }
+    }
+
+    // Reads what was added since the last call. Returns the number of rows read.
+    public synchronized int refresh(Connection conn) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(NEW_MEMBERS_SQL)) {
+            ps.setInt(1, lastMemberID);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lastMemberID = rs.getInt(1);
+                    all.add(lastMemberID);
+                    rows++;
+                }
+            }
+        }
+        // A new membership can only add a status or plan to its member
+        try (PreparedStatement ps = conn.prepareStatement(NEW_MEMBERSHIPS_SQL)) {
+            ps.setInt(1, lastMembershipID);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lastMembershipID = rs.getInt(1);
+                    addMembership(rs.getInt(2), rs.getString(3), rs.getString(4));
+                    rows++;
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(NEW_CHECK_INS_SQL)) {
+            ps.setInt(1, lastCheckInID);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lastCheckInID = rs.getInt(1);
+                    visits.computeIfAbsent(rs.getObject(2, LocalDate.class), k -> new MemberBitmap()).add(rs.getInt(3));
+                    rows++;
+                }
+            }
+        }
+
+        attributes.keySet().removeIf(name -> name.startsWith("trainer:"));
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(TRAINERS_SQL)) {
+            while (rs.next()) {
+                attributes.computeIfAbsent("trainer:" + rs.getInt(1), k -> new MemberBitmap()).add(rs.getInt(2));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    // Drops everything and reads all of it again
+    public synchronized int rebuild(Connection conn) throws SQLException {
+        all = new MemberBitmap();
+        attributes.clear();
+        visits.clear();
+        lastMemberID = 0;
+        lastMembershipID = 0;
+        lastCheckInID = 0;
+        builtAt = System.currentTimeMillis();
+        return refresh(conn);
+    }
+
+    // How long ago rebuild() last ran, Long.MAX_VALUE if it never has
+    public synchronized long millisSinceRebuild() {
+        return builtAt == 0 ? Long.MAX_VALUE : System.currentTimeMillis() - builtAt;
+    }
+
+    // A membership's status or plan was changed (e.g. by MemberService). The member's
+    // status and plan bits are worked out again from all of their memberships.
+    public synchronized void membershipChanged(Connection conn, int memberID) throws SQLException {
+        for (Map.Entry<String, MemberBitmap> attribute : attributes.entrySet()) {
+            String name = attribute.getKey();
+            if (name.startsWith("status:") || name.startsWith("plan:") || name.startsWith("membership:")) {
+                attribute.getValue().remove(memberID);
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(MEMBER_MEMBERSHIPS_SQL)) {
+            ps.setInt(1, memberID);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    addMembership(rs.getInt(2), rs.getString(3), rs.getString(4));
+                }
+            }
+        }
+    }
+
+    public synchronized MemberBitmap evaluate(String segment) {
+        return new Parser(segment).parse();
+    }
+
+    // Total size of the bitmaps, for showing next to the results
+    public synchronized long sizeInBytes() {
+        long bytes = all.sizeInBytes();
+        for (MemberBitmap bitmap : attributes.values()) {
+            bytes += bitmap.sizeInBytes();
+        }
+        for (MemberBitmap bitmap : visits.values()) {
+            bytes += bitmap.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // The GymMember rows for the first limit ids in the bitmap, in memberID order
+    public static List<GymMember> members(Connection conn, MemberBitmap ids, int limit) throws SQLException {
+        int[] sorted = ids.toArray();
+        int[] wanted = Arrays.copyOf(sorted, Math.min(limit, sorted.length));
+        List<GymMember> members = new ArrayList<>();
+        for (int from = 0; from < wanted.length; from += 1000) {
+            int to = Math.min(wanted.length, from + 1000);
+            String sql = "SELECT " + RowMappers.GYM_MEMBER_COLUMNS + " FROM GymMember gm WHERE gm.memberID IN ("
+                    + "?,".repeat(to - from - 1) + "?) ORDER BY gm.memberID;";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = from; i < to; i++) {
+                    ps.setInt(i - from + 1, wanted[i]);
+                }
+                members.addAll(RowMappers.mapAll(ps, RowMappers.GYM_MEMBER));
+            }
+        }
+        return members;
+    }
+
+    private void addMembership(int memberID, String status, String planType) {
+        String statusTerm = "status:" + status.toLowerCase();
+        String planTerm = "plan:" + planType.toLowerCase();
+        attributes.computeIfAbsent(statusTerm, k -> new MemberBitmap()).add(memberID);
+        attributes.computeIfAbsent(planTerm, k -> new MemberBitmap()).add(memberID);
+        attributes.computeIfAbsent(pair(statusTerm, planTerm), k -> new MemberBitmap()).add(memberID);
+    }
+
+    // Key of the bitmap of members with a membership that has both the status and the plan
+    private static String pair(String statusTerm, String planTerm) {
+        return "membership:" + statusTerm + "|" + planTerm;
+    }
+
+    private MemberBitmap term(String term) {
+        String lower = term.toLowerCase();
+        if (lower.equals("all")) {
+            return all;
+        }
+        if (lower.startsWith("visited:")) {
+            return visited(lower.substring("visited:".length()));
+        }
+        if (!lower.startsWith("status:") && !lower.startsWith("plan:") && !lower.startsWith("trainer:")) {
+            throw new IllegalArgumentException("Unknown attribute: " + term);
+        }
+        return attributes.getOrDefault(lower, new MemberBitmap());
+    }
+
+    private MemberBitmap visited(String range) {
+        LocalDate from;
+        LocalDate to;
+        if (range.startsWith("last")) {
+            to = LocalDate.now();
+            from = to.minusDays(Integer.parseInt(range.substring(4)) - 1);
+        } else if (range.contains("..")) {
+            from = LocalDate.parse(range.substring(0, range.indexOf("..")));
+            to = LocalDate.parse(range.substring(range.indexOf("..") + 2));
+        } else {
+            from = LocalDate.parse(range);
+            to = from;
+        }
+        MemberBitmap result = new MemberBitmap();
+        for (MemberBitmap day : visits.subMap(from, true, to, true).values()) {
+            result = result.or(day);
+        }
+        return result;
+    }
+
+    // expression := and (OR and)*
+    // and        := not (AND not)*
+    // not        := NOT not | ( expression ) | term
+    private final class Parser {
+        private final List<String> tokens = new ArrayList<>();
+        private int next;
+
+        Parser(String segment) {
+            int i = 0;
+            while (i < segment.length()) {
+                char c = segment.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else {
+                    // A term runs to the next space or parenthesis, quotes can hold spaces
+                    StringBuilder token = new StringBuilder();
+                    boolean quoted = false;
+                    while (i < segment.length()) {
+                        c = segment.charAt(i);
+                        if (c == '"') {
+                            quoted = !quoted;
+                        } else if (!quoted && (Character.isWhitespace(c) || c == '(' || c == ')')) {
+                            break;
+                        } else {
+                            token.append(c);
+                        }
+                        i++;
+                    }
+                    tokens.add(token.toString());
+                }
+            }
+        }
+
+        MemberBitmap parse() {
+            MemberBitmap result = expression();
+            if (next < tokens.size()) {
+                throw new IllegalArgumentException("Unexpected " + tokens.get(next));
+            }
+            return result;
+        }
+
+        private MemberBitmap expression() {
+            MemberBitmap result = and();
+            while (accept("OR")) {
+                result = result.or(and());
+            }
+            return result;
+        }
+
+        // Plain status and plan terms are set aside and matched per membership at the end
+        private MemberBitmap and() {
+            List<String> statuses = new ArrayList<>();
+            List<String> plans = new ArrayList<>();
+            MemberBitmap result = null;
+            do {
+                String term = next < tokens.size() ? tokens.get(next).toLowerCase() : "";
+                if (term.startsWith("status:")) {
+                    statuses.add(term);
+                    next++;
+                } else if (term.startsWith("plan:")) {
+                    plans.add(term);
+                    next++;
+                } else {
+                    MemberBitmap operand = not();
+                    result = result == null ? operand : result.and(operand);
+                }
+            } while (accept("AND"));
+
+            List<String> membershipTerms = new ArrayList<>();
+            if (statuses.isEmpty() || plans.isEmpty()) {
+                membershipTerms.addAll(statuses);
+                membershipTerms.addAll(plans);
+            } else {
+                for (String status : statuses) {
+                    for (String plan : plans) {
+                        membershipTerms.add(pair(status, plan));
+                    }
+                }
+            }
+            for (String name : membershipTerms) {
+                MemberBitmap operand = attributes.getOrDefault(name, new MemberBitmap());
+                result = result == null ? operand : result.and(operand);
+            }
+            return result;
+        }
+
+        private MemberBitmap not() {
+            if (accept("NOT")) {
+                return all.andNot(not());
+            }
+            if (accept("(")) {
+                MemberBitmap result = expression();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("Missing )");
+                }
+                return result;
+            }
+            if (next == tokens.size()) {
+                throw new IllegalArgumentException("Segment ends too early");
+            }
+            return term(tokens.get(next++));
+        }
+
+        private boolean accept(String token) {
+            if (next < tokens.size() && tokens.get(next).equalsIgnoreCase(token)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
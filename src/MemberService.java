@@ -0,0 +1,120 @@
+// Saves edits to members and memberships made at the desks.
+//
+// Two things keep edits from different desks from overwriting each other:
+//  - every UPDATE checks the row's version column and bumps it, so an edit based on an
+//    old copy of the row is rejected instead of silently undoing someone else's change
+//  - edits for the same member take the same lock (one of a fixed set of stripes keyed by
+//    memberID), so they queue up in this process instead of racing to the database.
+// Edits for different members almost always use different stripes and run in parallel
+// on the pooled connections.
+//
+// Every saved edit is published to the change feed as an UPDATE once it has committed.
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class MemberService {
+
+    private static final int STRIPES = 64;
+
+    private final ConnectionPool pool;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final long lockWaitMillis;
+    private final ChangeFeed feed; // null when the feed is turned off
+
+    public MemberService(ConnectionPool pool, long lockWaitMillis, ChangeFeed feed) {
+        this.pool = pool;
+        this.lockWaitMillis = lockWaitMillis;
+        this.feed = feed;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Changes a member's phone number and email. current is the row the desk is looking at.
+    public GymMember updateContact(GymMember current, String phoneNumber, String email) throws SQLException {
+        String sql = "UPDATE GymMember " +
+                     "SET phoneNumber = ?, email = ?, version = version + 1 " +
+                     "WHERE memberID = ? AND version = ?;";
+        withMemberLock(current.memberID(), conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, phoneNumber);
+                ps.setString(2, email);
+                ps.setInt(3, current.memberID());
+                ps.setInt(4, current.version());
+                return checkUpdated(ps.executeUpdate(), "Member " + current.memberID());
+            }
+        });
+        GymMember updated = new GymMember(current.memberID(), current.firstName(), current.lastName(), current.birthday(),
+                phoneNumber, email, current.dateJoined(), current.version() + 1);
+        return published(ChangeFeed.Table.GYM_MEMBER, updated.memberID(), updated);
+    }
+
+    public Membership updateMembershipStatus(Membership current, String status) throws SQLException {
+        String sql = "UPDATE Membership " +
+                     "SET status = ?, version = version + 1 " +
+                     "WHERE membershipID = ? AND version = ?;";
+        withMemberLock(current.memberID(), conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, status);
+                ps.setInt(2, current.membershipID());
+                ps.setInt(3, current.version());
+                return checkUpdated(ps.executeUpdate(), "Membership " + current.membershipID());
+            }
+        });
+        Membership updated = new Membership(current.membershipID(), current.memberID(), current.planID(),
+                current.startDate(), current.endDate(), status, current.version() + 1);
+        return published(ChangeFeed.Table.MEMBERSHIP, updated.membershipID(), updated);
+    }
+
+    public Membership changeEndDate(Membership current, LocalDate endDate) throws SQLException {
+        String sql = "UPDATE Membership " +
+                     "SET endDate = ?, version = version + 1 " +
+                     "WHERE membershipID = ? AND version = ?;";
+        withMemberLock(current.memberID(), conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setObject(1, endDate);
+                ps.setInt(2, current.membershipID());
+                ps.setInt(3, current.version());
+                return checkUpdated(ps.executeUpdate(), "Membership " + current.membershipID());
+            }
+        });
+        Membership updated = new Membership(current.membershipID(), current.memberID(), current.planID(),
+                current.startDate(), endDate, current.status(), current.version() + 1);
+        return published(ChangeFeed.Table.MEMBERSHIP, updated.membershipID(), updated);
+    }
+
+    // Marks the table's cached views out of date and tells the feed's listeners
+    private <T> T published(ChangeFeed.Table<T> table, int key, T row) {
+        QueryCache.changed(table.tableName);
+        if (feed != null) {
+            feed.publish(new ChangeFeed.ChangeEvent<>(table, ChangeFeed.Operation.UPDATE, key, row));
+        }
+        return row;
+    }
+
+    private <T> T withMemberLock(int memberID, SqlWork<T> work) throws SQLException {
+        ReentrantLock lock = stripes[Math.floorMod(memberID, STRIPES)];
+        try {
+            if (!lock.tryLock(lockWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new ConcurrentUpdateException("Member " + memberID + " is being edited at another desk, please try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to edit member " + memberID, e);
+        }
+        try {
+            return pool.run(work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Integer checkUpdated(int rows, String what) throws ConcurrentUpdateException {
+        if (rows == 0) {
+            throw new ConcurrentUpdateException(what + " was changed by someone else, reload it and try again");
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,88 @@
+// Measures how MemberService holds up when many desks edit members at once.
+//
+//   java -cp bin:mysql-connector-j.jar MemberServiceBenchmark <threads> <seconds> <hotMembers>
+//
+// Every thread keeps editing a random member out of the first hotMembers members: a small
+// number means heavy contention on the same rows, a large number means mostly unrelated
+// edits. Each edit reloads the member, saves it, and retries when the version check says
+// someone else got there first. The edit rewrites the current contact info, so the data
+// does not change, only the version goes up.
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MemberServiceBenchmark {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: MemberServiceBenchmark <threads> <seconds> <hotMembers>");
+            return;
+        }
+        int threads = Integer.parseInt(args[0]);
+        int seconds = Integer.parseInt(args[1]);
+        int hotMembers = Integer.parseInt(args[2]);
+
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+
+        AtomicLong conflicts = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        try (ConnectionPool pool = ConnectionPool.open(props, threads)) {
+            MemberService service = new MemberService(pool, 2000, null);
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            List<Future<LatencyRecorder>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+                results.add(workers.submit(() -> {
+                    LatencyRecorder latency = new LatencyRecorder();
+                    while (System.nanoTime() < deadline) {
+                        int memberID = 1 + random.nextInt(hotMembers);
+                        long start = System.nanoTime();
+                        if (edit(service, pool, memberID, conflicts)) {
+                            latency.record(System.nanoTime() - start);
+                        } else {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return latency;
+                }));
+            }
+
+            LatencyRecorder all = new LatencyRecorder();
+            for (Future<LatencyRecorder> result : results) {
+                all.addAll(result.get());
+            }
+            workers.shutdown();
+
+            System.out.printf("threads=%d hotMembers=%d%n", threads, hotMembers);
+            System.out.printf("edits/s=%.1f conflicts=%d gave up=%d%n", all.count() / (double) seconds, conflicts.get(), failures.get());
+            System.out.println("edit latency " + all.summary());
+        }
+    }
+
+    // Returns false when the edit still conflicted after MAX_ATTEMPTS tries
+    private static boolean edit(MemberService service, ConnectionPool pool, int memberID, AtomicLong conflicts) throws SQLException {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            GymMember current = pool.run(conn -> Queries.member(conn, memberID));
+            if (current == null) {
+                return false;
+            }
+            try {
+                service.updateContact(current, current.phoneNumber(), current.email());
+                return true;
+            } catch (ConcurrentUpdateException e) {
+                conflicts.incrementAndGet();
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,12 @@
+import java.time.LocalDate;
+
+// One row of Membership
+public record Membership(
+        int membershipID,
+        int memberID,
+        int planID,
+        LocalDate startDate,
+        LocalDate endDate,
+        String status,
+        int version) {
+}
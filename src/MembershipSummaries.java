@@ -0,0 +1,113 @@
+// Maintenance for the materialized MembershipSummary table behind the All Memberships screen.
+// The triggers in membership_summary.sql keep it current, this checks that they did and
+// rebuilds it from the base tables when they didn't (or when it was just created).
+//
+//   java -cp bin:mysql-connector-j.jar MembershipSummaries install   creates the table and triggers, then rebuilds
+//   java -cp bin:mysql-connector-j.jar MembershipSummaries check     lists memberships whose summary row is wrong
+//   java -cp bin:mysql-connector-j.jar MembershipSummaries rebuild   refills the table from the base tables
+import java.sql.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class MembershipSummaries {
+
+    public static final Path SCRIPT = Path.of("src", "membership_summary.sql");
+
+    // What each summary row should be, straight from the base tables
+    private static final String SOURCE_SQL =
+            "SELECT ms.membershipID, ms.memberID, gm.firstName, gm.lastName, ms.planID, pt.planType, pt.price, " +
+            "       ms.status, ms.startDate, ms.endDate " +
+            "FROM Membership ms " +
+            "JOIN GymMember gm ON ms.memberID = gm.memberID " +
+            "JOIN Plan p ON ms.planID = p.planID " +
+            "JOIN PlanType pt ON p.planType = pt.planType";
+
+    private static final String REBUILD_SQL =
+            "INSERT INTO MembershipSummary " +
+            "(membershipID, memberID, firstName, lastName, planID, planType, price, status, startDate, endDate) " +
+            SOURCE_SQL;
+
+    // Summary rows with no membership, memberships with no summary row, and rows that differ.
+    // <=> compares NULLs as equal.
+    private static final String CHECK_SQL =
+            "SELECT s.membershipID, 'no membership' FROM MembershipSummary s " +
+            "LEFT JOIN Membership ms ON s.membershipID = ms.membershipID " +
+            "WHERE ms.membershipID IS NULL " +
+            "UNION ALL " +
+            "SELECT src.membershipID, 'missing' FROM (" + SOURCE_SQL + ") src " +
+            "LEFT JOIN MembershipSummary s ON s.membershipID = src.membershipID " +
+            "WHERE s.membershipID IS NULL " +
+            "UNION ALL " +
+            "SELECT src.membershipID, 'out of date' FROM (" + SOURCE_SQL + ") src " +
+            "JOIN MembershipSummary s ON s.membershipID = src.membershipID " +
+            "WHERE NOT (s.memberID <=> src.memberID AND s.firstName <=> src.firstName " +
+            "   AND s.lastName <=> src.lastName AND s.planID <=> src.planID " +
+            "   AND s.planType <=> src.planType AND s.price <=> src.price " +
+            "   AND s.status <=> src.status AND s.startDate <=> src.startDate " +
+            "   AND s.endDate <=> src.endDate) " +
+            "ORDER BY 1;";
+
+    public record Mismatch(int membershipID, String problem) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 || !List.of("install", "check", "rebuild").contains(args[0])) {
+            System.out.println("Usage: MembershipSummaries install|check|rebuild");
+            return;
+        }
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (Connection conn = Database.connect(props)) {
+            switch (args[0]) {
+                case "install":
+                    Database.runScript(conn, SCRIPT);
+                    System.out.println("Created MembershipSummary, copied " + rebuild(conn) + " memberships");
+                    break;
+                case "check":
+                    report(check(conn));
+                    break;
+                case "rebuild":
+                    System.out.println("Rebuilt MembershipSummary with " + rebuild(conn) + " memberships");
+                    break;
+            }
+        }
+    }
+
+    public static List<Mismatch> check(Connection conn) throws SQLException {
+        return RowMappers.query(conn, CHECK_SQL, rs -> new Mismatch(rs.getInt(1), rs.getString(2)));
+    }
+
+    // Replaces the whole table in one transaction, so the screen sees either the old rows
+    // or the new ones. Returns the number of rows copied.
+    public static int rebuild(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM MembershipSummary");
+            int rows = st.executeUpdate(REBUILD_SQL);
+            conn.commit();
+            QueryCache.changed("MembershipSummary");
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void report(List<Mismatch> mismatches) {
+        if (mismatches.isEmpty()) {
+            System.out.println("MembershipSummary matches the base tables.");
+            return;
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (Mismatch mismatch : mismatches) {
+            rows.add(new String[]{String.valueOf(mismatch.membershipID()), mismatch.problem()});
+        }
+        DatabaseViews.printTable(new String[]{"Membership ID", "Problem"}, new int[]{13, 12}, rows);
+        System.out.println(mismatches.size() + " memberships differ, run MembershipSummaries rebuild to fix them.");
+    }
+}
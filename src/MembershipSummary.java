@@ -0,0 +1,15 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// A membership joined with its member's name and plan, as shown on the memberships screen.
+// Name and plan columns come from LEFT JOINs, so they can be null.
+public record MembershipSummary(
+        int memberID,
+        String firstName,
+        String lastName,
+        String status,
+        String planType,
+        BigDecimal price,
+        LocalDate startDate,
+        LocalDate endDate) {
+}
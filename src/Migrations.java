@@ -0,0 +1,151 @@
+// Brings an existing database up to date with tables.sql without dropping anything.
+// tables.sql starts over from empty tables, which is fine for a new database or
+// DataGenerator --reset, but on a database with real members every column and table added
+// since it was created goes through here instead. Every step checks whether it was already
+// applied first, so running it again does nothing.
+//
+//   java -cp bin:mysql-connector-j.jar Migrations check   lists the steps this database still needs
+//   java -cp bin:mysql-connector-j.jar Migrations apply   applies them
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class Migrations {
+
+    // One change to the schema. applied counts something that exists once the change is in,
+    // so a result above 0 means there is nothing to do.
+    public record Step(String name, String applied, String ddl) {
+    }
+
+    private static final String COLUMN_EXISTS =
+            "SELECT COUNT(*) FROM information_schema.COLUMNS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '%s' AND COLUMN_NAME = '%s';";
+
+    private static final String INDEX_EXISTS =
+            "SELECT COUNT(*) FROM information_schema.STATISTICS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '%s' AND INDEX_NAME = '%s';";
+
+    private static final String TABLE_EXISTS =
+            "SELECT COUNT(*) FROM information_schema.TABLES " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '%s';";
+
+    // In the order they were added to tables.sql, the definitions are the same as there
+    public static final List<Step> STEPS = List.of(
+            new Step("GymMember.version",
+                    String.format(COLUMN_EXISTS, "GymMember", "version"),
+                    "ALTER TABLE GymMember ADD COLUMN version INT NOT NULL DEFAULT 0;"),
+            new Step("Membership.version",
+                    String.format(COLUMN_EXISTS, "Membership", "version"),
+                    "ALTER TABLE Membership ADD COLUMN version INT NOT NULL DEFAULT 0;"),
+            new Step("DailySketch table",
+                    String.format(TABLE_EXISTS, "DailySketch"),
+                    "CREATE TABLE DailySketch (" +
+                    "  kind ENUM('visitors', 'amounts') NOT NULL," +
+                    "  dimension VARCHAR(50) NOT NULL," +
+                    "  day DATE NOT NULL," +
+                    "  sketch BLOB NOT NULL," +
+                    "  PRIMARY KEY (kind, dimension, day)," +
+                    "  INDEX (kind, day)" +
+                    ");"),
+            new Step("SketchWatermark table",
+                    String.format(TABLE_EXISTS, "SketchWatermark"),
+                    "CREATE TABLE SketchWatermark (" +
+                    "  kind ENUM('visitors', 'amounts') PRIMARY KEY," +
+                    "  lastID INT NOT NULL" +
+                    ");"),
+            new Step("SketchGap table",
+                    String.format(TABLE_EXISTS, "SketchGap"),
+                    "CREATE TABLE SketchGap (" +
+                    "  kind ENUM('visitors', 'amounts') NOT NULL," +
+                    "  id INT NOT NULL," +
+                    "  seenAt DATETIME NOT NULL," +
+                    "  PRIMARY KEY (kind, id)" +
+                    ");"),
+            new Step("CheckInJournal table",
+                    String.format(TABLE_EXISTS, "CheckInJournal"),
+                    "CREATE TABLE CheckInJournal (" +
+                    "  terminal VARCHAR(100) PRIMARY KEY," +
+                    "  journalID VARCHAR(36) NOT NULL," +
+                    "  replayedBytes BIGINT NOT NULL" +
+                    ");"),
+            // CheckInJournal first shipped without the journal id
+            new Step("CheckInJournal.journalID",
+                    String.format(COLUMN_EXISTS, "CheckInJournal", "journalID"),
+                    "ALTER TABLE CheckInJournal ADD COLUMN journalID VARCHAR(36) NOT NULL DEFAULT '' AFTER terminal;"),
+            new Step("Payment.version",
+                    String.format(COLUMN_EXISTS, "Payment", "version"),
+                    "ALTER TABLE Payment ADD COLUMN version INT NOT NULL DEFAULT 0 AFTER status;"),
+            new Step("GymMember version index",
+                    String.format(INDEX_EXISTS, "GymMember", "version"),
+                    "ALTER TABLE GymMember ADD INDEX (version);"),
+            new Step("Membership version index",
+                    String.format(INDEX_EXISTS, "Membership", "version"),
+                    "ALTER TABLE Membership ADD INDEX (version);"),
+            new Step("Payment version index",
+                    String.format(INDEX_EXISTS, "Payment", "version"),
+                    "ALTER TABLE Payment ADD INDEX (version);"),
+            new Step("GuestAllowance table",
+                    String.format(TABLE_EXISTS, "GuestAllowance"),
+                    "CREATE TABLE GuestAllowance (" +
+                    "  memberID INT NOT NULL," +
+                    "  month DATE NOT NULL," +
+                    "  used INT NOT NULL," +
+                    "  PRIMARY KEY (memberID, month)," +
+                    "  FOREIGN KEY (memberID) REFERENCES GymMember(memberID)" +
+                    "    ON UPDATE CASCADE" +
+                    "    ON DELETE CASCADE" +
+                    ");"));
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 || !List.of("check", "apply").contains(args[0])) {
+            System.out.println("Usage: Migrations check|apply");
+            return;
+        }
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (Connection conn = Database.connect(props)) {
+            List<Step> pending = pending(conn);
+            if (pending.isEmpty()) {
+                System.out.println("The database is up to date.");
+                return;
+            }
+            for (Step step : pending) {
+                if (args[0].equals("apply")) {
+                    apply(conn, step);
+                    System.out.println("Applied " + step.name());
+                } else {
+                    System.out.println("Needs " + step.name());
+                }
+            }
+        }
+    }
+
+    // The steps this database doesn't have yet
+    public static List<Step> pending(Connection conn) throws SQLException {
+        List<Step> pending = new ArrayList<>();
+        for (Step step : STEPS) {
+            if (!isApplied(conn, step)) {
+                pending.add(step);
+            }
+        }
+        return pending;
+    }
+
+    // Checked again right before, in case another desk applied it since pending() ran
+    public static void apply(Connection conn, Step step) throws SQLException {
+        if (isApplied(conn, step)) {
+            return;
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute(step.ddl());
+        }
+    }
+
+    private static boolean isApplied(Connection conn, Step step) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(step.applied())) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+}
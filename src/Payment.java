@@ -0,0 +1,13 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// One row of Payment
+public record Payment(
+        int paymentID,
+        int staffID,
+        int memberID,
+        BigDecimal amount,
+        String paymentType,
+        LocalDate dateOfPayment,
+        String status) {
+}
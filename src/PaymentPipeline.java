@@ -0,0 +1,333 @@
+// Applies payment status changes coming from the desks' card terminals
+// (Pending -> Success/Failed, Success -> Refunded).
+//
+// Terminals submit events with an idempotency key, the events wait in a bounded queue,
+// and applier threads write them in batches, one transaction per batch. Each UPDATE only
+// matches if the payment is still in the status the transition starts from, so two
+// terminals racing on the same payment can't both win, and replaying an event that
+// already went through changes nothing. Events for one payment always go to the same
+// applier so they are applied in the order they arrived.
+//
+// A key is remembered once its event applied or while it waits, so the same event sent
+// twice is answered DUPLICATE; one that failed or conflicted is forgotten so it can be
+// retried. The keys are only kept in memory and are gone after a restart, where a replay
+// is still caught by the status check above (it comes back CONFLICT).
+//
+// Each applier keeps its own connection and opens a new one when it was lost, so the
+// pipeline recovers from a database restart. A batch that fails completes its futures
+// with the error, whatever went wrong.
+//
+// A batch first locks its payments and reads their status, and decides from that which
+// events apply, so the result of each event doesn't depend on the update counts the driver
+// reports (with rewriteBatchedStatements it reports SUCCESS_NO_INFO for every row).
+// The locked rows are also what goes out on the change feed as UPDATEs after the commit.
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class PaymentPipeline implements AutoCloseable {
+
+    public record PaymentEvent(String idempotencyKey, int paymentID, String newStatus, int staffID) {
+    }
+
+    public enum Result {
+        APPLIED,   // the status changed
+        CONFLICT,  // the payment wasn't in the status this transition starts from (or doesn't exist)
+        DUPLICATE, // this idempotency key was already submitted
+        REJECTED   // the queue is full or the transition isn't allowed
+    }
+
+    private static final int MAX_BATCH = 200;
+    private static final int REMEMBERED_KEYS = 100_000;
+    private static final int LATENCY_WINDOW = 10_000;
+
+    private static final String UPDATE_SQL = "UPDATE Payment SET status = ?, version = version + 1 WHERE paymentID = ? AND status = ?;";
+
+    // new status -> the only status it can be reached from
+    private static final Map<String, String> TRANSITIONS = Map.of(
+            "Success", "Pending",
+            "Failed", "Pending",
+            "Refunded", "Success");
+
+    private static final class Pending {
+        final PaymentEvent event;
+        final CompletableFuture<Result> result = new CompletableFuture<>();
+        final long queuedAt = System.nanoTime();
+
+        Pending(PaymentEvent event) {
+            this.event = event;
+        }
+    }
+
+    private final Properties props;
+    private final Connection[] connections; // each one only used by its applier, null after a drop
+    private final List<BlockingQueue<Pending>> queues = new ArrayList<>();
+    private final List<Thread> appliers = new ArrayList<>();
+    private final LatencyRecorder applyLatency = new LatencyRecorder(LATENCY_WINDOW);
+    private final ChangeFeed feed; // null when the feed is turned off
+    private volatile boolean running = true;
+
+    // Recently seen idempotency keys, oldest dropped first
+    private final Map<String, Boolean> seenKeys = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > REMEMBERED_KEYS;
+        }
+    };
+
+    // Opens one connection per applier, the pipeline closes them when it is closed
+    public PaymentPipeline(Properties props, int applierCount, int queueCapacity, ChangeFeed feed) throws SQLException {
+        this.props = props;
+        this.connections = new Connection[applierCount];
+        this.feed = feed;
+        try {
+            for (int i = 0; i < applierCount; i++) {
+                connections[i] = Database.connect(props);
+            }
+        } catch (SQLException e) {
+            closeConnections();
+            throw e;
+        }
+        for (int i = 0; i < applierCount; i++) {
+            BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(queueCapacity);
+            int applierIndex = i;
+            Thread applier = new Thread(() -> applyLoop(applierIndex, queue), "payment-applier-" + (i + 1));
+            applier.setDaemon(true);
+            queues.add(queue);
+            appliers.add(applier);
+            applier.start();
+        }
+    }
+
+    // The status a payment had before an applied update to newStatus
+    public static String previousStatus(String newStatus) {
+        return TRANSITIONS.get(newStatus);
+    }
+
+    // Queues an event and returns right away, the future completes once it is applied
+    public CompletableFuture<Result> submit(PaymentEvent event) {
+        if (!TRANSITIONS.containsKey(event.newStatus())) {
+            return CompletableFuture.completedFuture(Result.REJECTED);
+        }
+        synchronized (seenKeys) {
+            if (seenKeys.putIfAbsent(event.idempotencyKey(), Boolean.TRUE) != null) {
+                return CompletableFuture.completedFuture(Result.DUPLICATE);
+            }
+        }
+        Pending pending = new Pending(event);
+        if (!queues.get(Math.floorMod(event.paymentID(), queues.size())).offer(pending)) {
+            synchronized (seenKeys) {
+                seenKeys.remove(event.idempotencyKey()); // let the terminal retry with the same key
+            }
+            return CompletableFuture.completedFuture(Result.REJECTED);
+        }
+        return pending.result;
+    }
+
+    // Events waiting to be applied
+    public int backlog() {
+        int total = 0;
+        for (BlockingQueue<Pending> queue : queues) {
+            total += queue.size();
+        }
+        return total;
+    }
+
+    // Time from submit() to commit, over the last LATENCY_WINDOW events
+    public String applyLatency() {
+        synchronized (applyLatency) {
+            return applyLatency.summary();
+        }
+    }
+
+    private void applyLoop(int applier, BlockingQueue<Pending> queue) {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                applyBatch(applier, batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                // applyBatch fails its own batch, this keeps the applier alive if that throws too
+                fail(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(int applier, List<Pending> batch) {
+        Connection conn = connections[applier];
+        try {
+            if (conn == null) {
+                conn = Database.connect(props);
+                connections[applier] = conn;
+            }
+            conn.setAutoCommit(false);
+            Map<Integer, Payment> rows = lockPayments(conn, batch);
+            Map<Integer, String> statuses = new HashMap<>();
+            for (Payment row : rows.values()) {
+                statuses.put(row.paymentID(), row.status());
+            }
+            boolean[] applied = new boolean[batch.size()];
+            int appliedCount = 0;
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    PaymentEvent event = batch.get(i).event;
+                    String from = TRANSITIONS.get(event.newStatus());
+                    if (!from.equals(statuses.get(event.paymentID()))) {
+                        continue;
+                    }
+                    // A later event in the batch for the same payment starts from this status
+                    statuses.put(event.paymentID(), event.newStatus());
+                    applied[i] = true;
+                    appliedCount++;
+                    ps.setString(1, event.newStatus());
+                    ps.setInt(2, event.paymentID());
+                    ps.setString(3, from);
+                    ps.addBatch();
+                }
+                if (appliedCount > 0) {
+                    ps.executeBatch();
+                }
+            }
+            conn.commit();
+            if (appliedCount > 0) {
+                QueryCache.changed("Payment");
+            }
+
+            long now = System.nanoTime();
+            synchronized (applyLatency) {
+                for (int i = 0; i < batch.size(); i++) {
+                    applyLatency.record(now - batch.get(i).queuedAt);
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (!applied[i]) {
+                    synchronized (seenKeys) {
+                        seenKeys.remove(batch.get(i).event.idempotencyKey());
+                    }
+                }
+                batch.get(i).result.complete(applied[i] ? Result.APPLIED : Result.CONFLICT);
+            }
+            if (feed != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (applied[i]) {
+                        Payment before = rows.get(batch.get(i).event.paymentID());
+                        Payment after = new Payment(before.paymentID(), before.staffID(), before.memberID(), before.amount(),
+                                before.paymentType(), before.dateOfPayment(), batch.get(i).event.newStatus());
+                        feed.publish(new ChangeFeed.ChangeEvent<>(ChangeFeed.Table.PAYMENT, ChangeFeed.Operation.UPDATE,
+                                after.paymentID(), after));
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+            }
+            if (e instanceof SQLException && Database.connectionLost((SQLException) e) && conn != null) {
+                // The next batch opens a new one
+                try {
+                    conn.close();
+                } catch (SQLException closeError) {
+                    // It is gone either way
+                }
+                connections[applier] = null;
+            }
+            fail(batch, e);
+        }
+    }
+
+    // Completes the events not completed yet with the error and forgets their keys, so the
+    // terminals can retry them
+    private void fail(List<Pending> batch, Exception e) {
+        for (Pending pending : batch) {
+            if (pending.result.isDone()) {
+                continue;
+            }
+            synchronized (seenKeys) {
+                seenKeys.remove(pending.event.idempotencyKey());
+            }
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    // Every payment in the batch as it is now, locked until the transaction ends.
+    // Payments that don't exist are missing from the map.
+    private static Map<Integer, Payment> lockPayments(Connection conn, List<Pending> batch) throws SQLException {
+        LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        for (Pending pending : batch) {
+            ids.add(pending.event.paymentID());
+        }
+        String sql = "SELECT " + RowMappers.PAYMENT_COLUMNS + " FROM Payment p WHERE p.paymentID IN (" +
+                     String.join(", ", Collections.nCopies(ids.size(), "?")) + ") FOR UPDATE;";
+        Map<Integer, Payment> rows = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : ids) {
+                ps.setInt(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Payment row = RowMappers.PAYMENT.map(rs);
+                    rows.put(row.paymentID(), row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread applier : appliers) {
+            applier.interrupt();
+        }
+        for (Thread applier : appliers) {
+            try {
+                applier.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (BlockingQueue<Pending> queue : queues) {
+            for (Pending pending : queue) {
+                pending.result.complete(Result.REJECTED);
+            }
+        }
+        closeConnections();
+    }
+
+    private void closeConnections() {
+        for (Connection conn : connections) {
+            if (conn == null) {
+                continue;
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // Nothing useful to do while shutting down
+            }
+        }
+    }
+}
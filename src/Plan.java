@@ -0,0 +1,8 @@
+import java.math.BigDecimal;
+
+// One row of Plan with the price from PlanType
+public record Plan(
+        int planID,
+        String planType,
+        BigDecimal price) {
+}
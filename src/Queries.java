@@ -0,0 +1,162 @@
+// The SELECTs behind each view, returning typed rows instead of printing them.
+// DatabaseViews renders these lists, and anything else that needs the same data
+// (exports, caches, reports) can call these directly.
+import java.sql.*;
+import java.util.List;
+
+public class Queries {
+
+    // The view queries, also used by View for loading and streaming
+    public static final String GYM_MEMBERS_SQL =
+            "SELECT " + RowMappers.GYM_MEMBER_COLUMNS + " " +
+            "FROM GymMember gm " +
+            "ORDER BY gm.memberID;";
+
+    // Reads the MembershipSummary table that triggers keep up to date (see membership_summary.sql),
+    // in the order of its (memberID, membershipID) index
+    public static final String ALL_MEMBERSHIPS_SQL =
+            "SELECT " + RowMappers.MEMBERSHIP_SUMMARY_COLUMNS + " " +
+            "FROM MembershipSummary s " +
+            "ORDER BY s.memberID, s.membershipID;";
+
+    public static final String ALL_STAFF_MEMBERS_SQL =
+            "SELECT " + RowMappers.STAFF_MEMBER_COLUMNS + ", " +
+            "       CASE " +
+            "         WHEN d.staffID IS NOT NULL THEN 'Desk' " +
+            "         WHEN t.staffID IS NOT NULL THEN 'Trainer' " +
+            "         WHEN m.staffID IS NOT NULL THEN 'Manager' " +
+            "         ELSE 'None' " +
+            "       END AS role " +
+            "FROM StaffMember sm " +
+            "LEFT JOIN Desk d ON sm.staffID = d.staffID " +
+            "LEFT JOIN Trainer t ON sm.staffID = t.staffID " +
+            "LEFT JOIN Manager m ON sm.staffID = m.staffID " +
+            "ORDER BY sm.staffID;";
+
+    public static final String DESK_STAFF_SQL =
+            "SELECT " + RowMappers.DESK_COLUMNS + " " +
+            "FROM StaffMember sm " +
+            "INNER JOIN Desk d ON sm.staffID = d.staffID " +
+            "ORDER BY sm.staffID;";
+
+    public static final String TRAINERS_SQL =
+            "SELECT " + RowMappers.TRAINER_COLUMNS + " " +
+            "FROM StaffMember sm " +
+            "INNER JOIN Trainer t ON sm.staffID = t.staffID " +
+            "ORDER BY sm.staffID;";
+
+    public static final String MANAGERS_SQL =
+            "SELECT " + RowMappers.MANAGER_COLUMNS + " " +
+            "FROM StaffMember sm " +
+            "INNER JOIN Manager m ON sm.staffID = m.staffID " +
+            "ORDER BY sm.staffID;";
+
+    public static final String PLANS_SQL =
+            "SELECT " + RowMappers.PLAN_COLUMNS + " " +
+            "FROM Plan p " +
+            "JOIN PlanType pt ON p.planType = pt.planType " +
+            "ORDER BY p.planID;";
+
+    public static final String PAYMENTS_SQL =
+            "SELECT " + RowMappers.PAYMENT_COLUMNS + " " +
+            "FROM Payment p " +
+            "ORDER BY p.paymentID;";
+
+    public static final String CHECK_INS_SQL =
+            "SELECT " + RowMappers.CHECK_IN_COLUMNS + " " +
+            "FROM CheckIn c " +
+            "ORDER BY c.checkInID;";
+
+    public static final String ACTIVE_MEMBERS_SQL =
+            "SELECT DISTINCT " + RowMappers.GYM_MEMBER_COLUMNS + " " +
+            "FROM GymMember gm " +
+            "INNER JOIN Membership ms ON gm.memberID = ms.memberID " +
+            "WHERE ms.status = 'Active' " +
+            "ORDER BY gm.memberID;";
+
+    public static List<GymMember> gymMembers(Connection conn) throws SQLException {
+        return RowMappers.query(conn, GYM_MEMBERS_SQL, RowMappers.GYM_MEMBER);
+    }
+
+    public static List<MembershipSummary> allMemberships(Connection conn) throws SQLException {
+        return RowMappers.query(conn, ALL_MEMBERSHIPS_SQL, RowMappers.MEMBERSHIP_SUMMARY);
+    }
+
+    public static List<StaffMember> allStaffMembers(Connection conn) throws SQLException {
+        return RowMappers.query(conn, ALL_STAFF_MEMBERS_SQL, RowMappers.STAFF_MEMBER);
+    }
+
+    public static List<DeskStaff> deskStaff(Connection conn) throws SQLException {
+        return RowMappers.query(conn, DESK_STAFF_SQL, RowMappers.DESK);
+    }
+
+    public static List<TrainerStaff> trainers(Connection conn) throws SQLException {
+        return RowMappers.query(conn, TRAINERS_SQL, RowMappers.TRAINER);
+    }
+
+    public static List<ManagerStaff> managers(Connection conn) throws SQLException {
+        return RowMappers.query(conn, MANAGERS_SQL, RowMappers.MANAGER);
+    }
+
+    public static List<Plan> plans(Connection conn) throws SQLException {
+        return RowMappers.query(conn, PLANS_SQL, RowMappers.PLAN);
+    }
+
+    public static List<Payment> payments(Connection conn) throws SQLException {
+        return RowMappers.query(conn, PAYMENTS_SQL, RowMappers.PAYMENT);
+    }
+
+    public static List<CheckIn> checkIns(Connection conn) throws SQLException {
+        return RowMappers.query(conn, CHECK_INS_SQL, RowMappers.CHECK_IN);
+    }
+
+    public static List<GymMember> activeMembers(Connection conn) throws SQLException {
+        return RowMappers.query(conn, ACTIVE_MEMBERS_SQL, RowMappers.GYM_MEMBER);
+    }
+
+    public static BranchTotals branchTotals(Connection conn) throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM GymMember), " +
+                     "       (SELECT COUNT(*) FROM Membership WHERE status = 'Active'), " +
+                     "       (SELECT COALESCE(SUM(amount), 0) FROM Payment WHERE status = 'Success'), " +
+                     "       (SELECT COUNT(*) FROM CheckIn);";
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return new BranchTotals(rs.getLong(1), rs.getLong(2), rs.getBigDecimal(3), rs.getLong(4));
+        }
+    }
+
+    // Single rows by id, for edit screens. Returns null when there is no such row.
+    public static GymMember member(Connection conn, int memberID) throws SQLException {
+        String sql = "SELECT " + RowMappers.GYM_MEMBER_COLUMNS + " " +
+                     "FROM GymMember gm " +
+                     "WHERE gm.memberID = ?;";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, memberID);
+            List<GymMember> rows = RowMappers.mapAll(ps, RowMappers.GYM_MEMBER);
+            return rows.isEmpty() ? null : rows.get(0);
+        }
+    }
+
+    public static Membership membership(Connection conn, int membershipID) throws SQLException {
+        String sql = "SELECT " + RowMappers.MEMBERSHIP_COLUMNS + " " +
+                     "FROM Membership ms " +
+                     "WHERE ms.membershipID = ?;";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, membershipID);
+            List<Membership> rows = RowMappers.mapAll(ps, RowMappers.MEMBERSHIP);
+            return rows.isEmpty() ? null : rows.get(0);
+        }
+    }
+
+    public static Payment payment(Connection conn, int paymentID) throws SQLException {
+        String sql = "SELECT " + RowMappers.PAYMENT_COLUMNS + " " +
+                     "FROM Payment p " +
+                     "WHERE p.paymentID = ?;";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, paymentID);
+            List<Payment> rows = RowMappers.mapAll(ps, RowMappers.PAYMENT);
+            return rows.isEmpty() ? null : rows.get(0);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+// Keeps the results of view queries so opening the same view again, with nothing changed
+// in between, doesn't read every row from MySQL again. Entries are keyed by the SQL and its
+// parameters and hold the rows as one compact byte block (see RowBlocks), and the
+// least recently used entries are dropped once the blocks add up to more than maxBytes.
+//
+// An entry is only used while the tables its query reads are unchanged:
+//  - every write this app makes calls changed() with the tables it touched, which bumps a
+//    version number per table; an entry saved under older versions is thrown away
+//  - other desks and tools write too, so before using an entry the tables are probed on the
+//    same connection the query would have used:
+//      versions  row count, highest id and the sum of the version column where the table
+//                has one. Every edit through MemberService or PaymentPipeline bumps a
+//                version, so this catches those edits and added or removed rows from an
+//                index scan. Misses edits that don't bump version (hand-written SQL, and
+//                tables without the column: staff and plans).
+//      checksum  CHECKSUM TABLE, catches every change but reads the tables on the server
+//      ids       row count and highest id, cheap but misses edits to existing rows
+//      none      trust the version numbers only, for a single desk
+//
+//   cache.maxMegabytes=64
+//   cache.validate=versions
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class QueryCache {
+
+    public enum Validation { VERSIONS, CHECKSUM, IDS, NONE }
+
+    // Tables filled from other tables by triggers (see membership_summary.sql). A write to
+    // any of the sources also changes the derived table.
+    private static final Map<String, List<String>> DERIVED = Map.of(
+            "MembershipSummary", List.of("Membership", "GymMember", "Plan", "PlanType"));
+
+    // The column the ids and versions probes take the highest value of
+    private static final Map<String, String> KEYS = Map.ofEntries(
+            Map.entry("GymMember", "memberID"),
+            Map.entry("Membership", "membershipID"),
+            Map.entry("MembershipSummary", "membershipID"),
+            Map.entry("Payment", "paymentID"),
+            Map.entry("CheckIn", "checkInID"),
+            Map.entry("StaffMember", "staffID"),
+            Map.entry("Desk", "staffID"),
+            Map.entry("Trainer", "staffID"),
+            Map.entry("Manager", "staffID"),
+            Map.entry("Plan", "planID"),
+            Map.entry("PlanType", "planType"));
+
+    // Tables with a version column bumped on every edit, indexed so the versions probe
+    // doesn't read the rows
+    private static final Set<String> VERSIONED = Set.of("GymMember", "Membership", "Payment");
+
+    private static final Pattern TABLES = Pattern.compile("\\b(?:FROM|JOIN)\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private static final Map<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final byte[] rows;
+        final Set<String> tables;
+        final Map<String, Long> versions;
+        final String fingerprint;
+
+        Entry(byte[] rows, Set<String> tables, Map<String, Long> versions, String fingerprint) {
+            this.rows = rows;
+            this.tables = tables;
+            this.versions = versions;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    public record Stats(long hits, long misses, long stale, long evictions, int entries, long bytes, long maxBytes) {
+    }
+
+    private final long maxBytes;
+    private final Validation validation;
+    // Access order, so the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long stale;
+    private long evictions;
+
+    public QueryCache(long maxBytes, Validation validation) {
+        this.maxBytes = maxBytes;
+        this.validation = validation;
+    }
+
+    public static QueryCache open(Properties props) {
+        return new QueryCache(Database.intProperty(props, "cache.maxMegabytes", 64) * 1024L * 1024L,
+                Validation.valueOf(props.getProperty("cache.validate", "versions").trim().toUpperCase()));
+    }
+
+    // Called after a write (once it is committed) with the tables it changed
+    public static void changed(String... tables) {
+        for (String table : tables) {
+            VERSIONS.computeIfAbsent(table, k -> new AtomicLong()).incrementAndGet();
+            for (Map.Entry<String, List<String>> derived : DERIVED.entrySet()) {
+                if (derived.getValue().contains(table)) {
+                    VERSIONS.computeIfAbsent(derived.getKey(), k -> new AtomicLong()).incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public <T> List<T> load(Connection conn, View<T> view) throws SQLException {
+        return query(conn, view.sql(), List.of(), view.mapper());
+    }
+
+    // Runs sql with params through mapper, or maps the saved rows if the tables it reads
+    // haven't changed since it last ran
+    public <T> List<T> query(Connection conn, String sql, List<Object> params, RowMappers.RowMapper<T> mapper) throws SQLException {
+        String key = key(sql, params);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            if (entry.versions.equals(versions(entry.tables)) && entry.fingerprint.equals(fingerprint(conn, entry.tables))) {
+                synchronized (this) {
+                    hits++;
+                }
+                return RowBlocks.decode(entry.rows, mapper);
+            }
+            synchronized (this) {
+                stale++;
+                if (entries.remove(key, entry)) {
+                    bytes -= entry.rows.length;
+                }
+            }
+        }
+
+        // Versions and fingerprint are taken before the query, so a write that lands while it
+        // runs makes the entry look out of date next time instead of hiding the change
+        Set<String> tables = tables(sql);
+        Map<String, Long> versions = versions(tables);
+        String fingerprint = fingerprint(conn, tables);
+        List<T> rows = new ArrayList<>();
+        byte[] block;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                block = RowBlocks.encode(rs, mapper, rows);
+            }
+        }
+        synchronized (this) {
+            misses++;
+            if (block.length <= maxBytes) {
+                Entry old = entries.put(key, new Entry(block, tables, versions, fingerprint));
+                bytes += block.length - (old == null ? 0 : old.rows.length);
+                evict();
+            }
+        }
+        return rows;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, stale, evictions, entries.size(), bytes, maxBytes);
+    }
+
+    public Validation validation() {
+        return validation;
+    }
+
+    private void evict() {
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (bytes > maxBytes && oldest.hasNext()) {
+            bytes -= oldest.next().rows.length;
+            oldest.remove();
+            evictions++;
+        }
+    }
+
+    private static String key(String sql, List<Object> params) {
+        StringBuilder key = new StringBuilder(sql);
+        for (Object param : params) {
+            key.append('\u0000').append(param == null ? "" : param.getClass().getSimpleName() + ":" + param);
+        }
+        return key.toString();
+    }
+
+    // The tables a SELECT reads, from its FROM and JOIN clauses
+    static Set<String> tables(String sql) {
+        Set<String> tables = new TreeSet<>();
+        Matcher m = TABLES.matcher(sql);
+        while (m.find()) {
+            tables.add(m.group(1));
+        }
+        return tables;
+    }
+
+    // The version number of each table, bumped by changed()
+    static Map<String, Long> versions(Set<String> tables) {
+        Map<String, Long> versions = new LinkedHashMap<>();
+        for (String table : tables) {
+            AtomicLong version = VERSIONS.get(table);
+            versions.put(table, version == null ? 0 : version.get());
+        }
+        return versions;
+    }
+
+    // CHECKSUM TABLE for all of the tables as one string, which changes whenever any row does
+    static String checksum(Connection conn, Set<String> tables) throws SQLException {
+        StringBuilder checksum = new StringBuilder();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("CHECKSUM TABLE " + String.join(", ", tables) + ";")) {
+            while (rs.next()) {
+                checksum.append(rs.getString(1)).append('=').append(rs.getString(2)).append(';');
+            }
+        }
+        return checksum.toString();
+    }
+
+    // What the tables look like right now, in one round trip
+    private String fingerprint(Connection conn, Set<String> tables) throws SQLException {
+        if (validation == Validation.NONE || tables.isEmpty()) {
+            return "";
+        }
+        if (validation == Validation.CHECKSUM) {
+            return checksum(conn, tables);
+        }
+        if (validation == Validation.VERSIONS) {
+            return versionsProbe(conn, tables);
+        }
+        return idsProbe(conn, tables);
+    }
+
+    // Row count, highest id and sum of versions of every table as one string, in one round
+    // trip. A derived table is probed through the tables it is filled from, since those are
+    // the ones whose edits bump a version.
+    static String versionsProbe(Connection conn, Set<String> tables) throws SQLException {
+        Set<String> probed = new TreeSet<>(tables);
+        for (String table : tables) {
+            probed.addAll(DERIVED.getOrDefault(table, List.of()));
+        }
+        List<String> probes = new ArrayList<>();
+        for (String table : probed) {
+            String keyColumn = KEYS.get(table);
+            probes.add(VERSIONED.contains(table)
+                    ? "(SELECT CONCAT(COUNT(*), '/', COALESCE(SUM(version), 0)) FROM " + table + ")"
+                    : "(SELECT COUNT(*) FROM " + table + ")");
+            probes.add(keyColumn == null ? "NULL" : "(SELECT MAX(" + keyColumn + ") FROM " + table + ")");
+        }
+        return probe(conn, probes);
+    }
+
+    // Row count and highest id of every table as one string, in one round trip. Only reads
+    // the indexes, but misses edits to existing rows.
+    static String idsProbe(Connection conn, Set<String> tables) throws SQLException {
+        List<String> probes = new ArrayList<>();
+        for (String table : tables) {
+            String keyColumn = KEYS.get(table);
+            probes.add("(SELECT COUNT(*) FROM " + table + ")");
+            probes.add(keyColumn == null ? "NULL" : "(SELECT MAX(" + keyColumn + ") FROM " + table + ")");
+        }
+        return probe(conn, probes);
+    }
+
+    private static String probe(Connection conn, List<String> probes) throws SQLException {
+        StringBuilder fingerprint = new StringBuilder();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + String.join(", ", probes) + ";")) {
+            rs.next();
+            for (int i = 1; i <= probes.size(); i++) {
+                fingerprint.append(rs.getString(i)).append(';');
+            }
+        }
+        return fingerprint.toString();
+    }
+}
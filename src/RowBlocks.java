@@ -0,0 +1,209 @@
+// Rows from a result set saved as one compact byte block instead of mapped records, for
+// QueryCache and LocalReplica. A block is a column count followed by every row's columns
+// in order, each column a kind byte and its value. Blocks are read back through the same
+// RowMapper that mapped the rows the first time, by handing it a ResultSet over the saved
+// columns, so the mappers stay the one place that knows the column order.
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class RowBlocks {
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte DATE = 3;
+    private static final byte DATE_TIME = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte TEXT = 6;
+
+    private RowBlocks() {
+    }
+
+    // Maps every row into rows and writes it to the returned block at the same time
+    public static <T> byte[] encode(ResultSet rs, RowMappers.RowMapper<T> mapper, List<T> rows) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        byte[] kinds = new byte[columns + 1];
+        for (int i = 1; i <= columns; i++) {
+            kinds[i] = kind(meta.getColumnType(i));
+        }
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(block)) {
+            out.writeShort(columns);
+            while (rs.next()) {
+                rows.add(mapper.map(rs));
+                for (int i = 1; i <= columns; i++) {
+                    writeColumn(out, rs, i, kinds[i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteArrayOutputStream doesn't throw
+        }
+        return block.toByteArray();
+    }
+
+    private static byte kind(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return LONG;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return DECIMAL;
+            case Types.DATE:
+                return DATE;
+            case Types.TIMESTAMP:
+                return DATE_TIME;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            default:
+                return TEXT;
+        }
+    }
+
+    private static void writeColumn(DataOutputStream out, ResultSet rs, int i, byte kind) throws SQLException, IOException {
+        Object value;
+        switch (kind) {
+            case LONG:
+                long number = rs.getLong(i);
+                value = rs.wasNull() ? null : number;
+                break;
+            case DECIMAL:
+                value = rs.getBigDecimal(i);
+                break;
+            case DATE:
+                value = rs.getObject(i, LocalDate.class);
+                break;
+            case DATE_TIME:
+                value = rs.getObject(i, LocalDateTime.class);
+                break;
+            case DOUBLE:
+                double real = rs.getDouble(i);
+                value = rs.wasNull() ? null : real;
+                break;
+            default:
+                value = rs.getString(i);
+        }
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        out.writeByte(kind);
+        switch (kind) {
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case DECIMAL:
+                BigDecimal decimal = (BigDecimal) value;
+                byte[] unscaled = decimal.unscaledValue().toByteArray();
+                out.writeByte(decimal.scale());
+                out.writeByte(unscaled.length);
+                out.write(unscaled);
+                break;
+            case DATE:
+                out.writeInt((int) ((LocalDate) value).toEpochDay());
+                break;
+            case DATE_TIME:
+                LocalDateTime ts = (LocalDateTime) value;
+                out.writeLong(ts.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(ts.getNano());
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            default:
+                out.writeUTF((String) value);
+        }
+    }
+
+    public static <T> List<T> decode(byte[] block, RowMappers.RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(block))) {
+            Object[] row = new Object[in.readShort() + 1];
+            boolean[] lastWasNull = new boolean[1];
+            ResultSet rs = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> column(method.getName(), args, row, lastWasNull));
+            while (in.available() > 0) {
+                for (int i = 1; i < row.length; i++) {
+                    row[i] = readColumn(in);
+                }
+                rows.add(mapper.map(rs));
+            }
+        } catch (IOException e) {
+            throw new SQLException("Cached rows are damaged", e);
+        }
+        return rows;
+    }
+
+    private static Object readColumn(DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+            case NULL:
+                return null;
+            case LONG:
+                return in.readLong();
+            case DECIMAL:
+                int scale = in.readByte();
+                byte[] unscaled = new byte[in.readByte()];
+                in.readFully(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            case DATE:
+                return LocalDate.ofEpochDay(in.readInt());
+            case DATE_TIME:
+                return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            case DOUBLE:
+                return in.readDouble();
+            default:
+                return in.readUTF();
+        }
+    }
+
+    // The getters the RowMappers use, by column position
+    private static Object column(String method, Object[] args, Object[] row, boolean[] lastWasNull) throws SQLException {
+        if (args == null || args.length == 0 || !(args[0] instanceof Integer)) {
+            if (method.equals("wasNull")) {
+                return lastWasNull[0];
+            }
+            throw new SQLFeatureNotSupportedException("Cached rows don't support " + method);
+        }
+        Object value = row[(Integer) args[0]];
+        lastWasNull[0] = value == null;
+        switch (method) {
+            case "getInt":
+                return value == null ? 0 : ((Number) value).intValue();
+            case "getLong":
+                return value == null ? 0L : ((Number) value).longValue();
+            case "getDouble":
+                return value == null ? 0.0 : ((Number) value).doubleValue();
+            case "getString":
+                return value == null ? null : value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+            case "getBigDecimal":
+                return value == null || value instanceof BigDecimal ? value : new BigDecimal(value.toString());
+            case "getObject":
+                if (args.length == 2 && value != null && args[1] == Integer.class) {
+                    return ((Number) value).intValue();
+                }
+                return value;
+            default:
+                throw new SQLFeatureNotSupportedException("Cached rows don't support " + method);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// Turns result set rows into the typed records (GymMember, Payment, ...).
+// Each mapper reads its columns once, by position, so every query that uses a mapper must
+// select the matching *_COLUMNS list first and in that order.
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RowMappers {
+
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    public static final String GYM_MEMBER_COLUMNS =
+            "gm.memberID, gm.firstName, gm.lastName, gm.birthday, gm.phoneNumber, gm.email, gm.dateJoined, gm.version";
+
+    public static final String MEMBERSHIP_COLUMNS =
+            "ms.membershipID, ms.memberID, ms.planID, ms.startDate, ms.endDate, ms.status, ms.version";
+
+    // From the materialized MembershipSummary table, see membership_summary.sql
+    public static final String MEMBERSHIP_SUMMARY_COLUMNS =
+            "s.memberID, s.firstName, s.lastName, s.status, s.planType, s.price, s.startDate, s.endDate";
+
+    public static final String PLAN_COLUMNS =
+            "p.planID, pt.planType, pt.price";
+
+    public static final String PAYMENT_COLUMNS =
+            "p.paymentID, p.staffID, p.memberID, p.amount, p.paymentType, p.dateOfPayment, p.status";
+
+    public static final String CHECK_IN_COLUMNS =
+            "c.checkInID, c.membershipID, c.staffID, c.ts, c.location";
+
+    public static final String GUEST_COLUMNS =
+            "g.guestID, g.memberID, g.firstName, g.lastName, g.relationshipToMember, g.birthday";
+
+    // The role column is only meaningful for the all-staff view, subtype queries select a constant
+    public static final String STAFF_MEMBER_COLUMNS =
+            "sm.staffID, sm.firstName, sm.lastName, sm.phoneNumber, sm.email, sm.hireDate, sm.salary";
+
+    public static final String DESK_COLUMNS =
+            STAFF_MEMBER_COLUMNS + ", 'Desk' AS role, d.schedule, d.deskLocation, d.responsibility";
+
+    public static final String TRAINER_COLUMNS =
+            STAFF_MEMBER_COLUMNS + ", 'Trainer' AS role, t.specialty, t.schedule, t.certificationLevel, t.experience";
+
+    public static final String MANAGER_COLUMNS =
+            STAFF_MEMBER_COLUMNS + ", 'Manager' AS role, m.department, m.officeLocation, m.experience";
+
+    public static final RowMapper<GymMember> GYM_MEMBER = rs -> new GymMember(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getObject(4, LocalDate.class),
+            rs.getString(5),
+            rs.getString(6),
+            rs.getObject(7, LocalDate.class),
+            rs.getInt(8));
+
+    public static final RowMapper<Membership> MEMBERSHIP = rs -> new Membership(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getInt(3),
+            rs.getObject(4, LocalDate.class),
+            rs.getObject(5, LocalDate.class),
+            rs.getString(6),
+            rs.getInt(7));
+
+    public static final RowMapper<MembershipSummary> MEMBERSHIP_SUMMARY = rs -> new MembershipSummary(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getString(5),
+            rs.getBigDecimal(6),
+            rs.getObject(7, LocalDate.class),
+            rs.getObject(8, LocalDate.class));
+
+    public static final RowMapper<Plan> PLAN = rs -> new Plan(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getBigDecimal(3));
+
+    public static final RowMapper<Payment> PAYMENT = rs -> new Payment(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getInt(3),
+            rs.getBigDecimal(4),
+            rs.getString(5),
+            rs.getObject(6, LocalDate.class),
+            rs.getString(7));
+
+    public static final RowMapper<CheckIn> CHECK_IN = rs -> new CheckIn(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getInt(3),
+            rs.getObject(4, LocalDateTime.class),
+            rs.getString(5));
+
+    public static final RowMapper<Guest> GUEST = rs -> new Guest(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getString(5),
+            rs.getObject(6, LocalDate.class));
+
+    // Expects STAFF_MEMBER_COLUMNS followed by a role column
+    public static final RowMapper<StaffMember> STAFF_MEMBER = rs -> new StaffMember(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getString(5),
+            rs.getObject(6, LocalDate.class),
+            rs.getBigDecimal(7),
+            rs.getString(8));
+
+    public static final RowMapper<DeskStaff> DESK = rs -> new DeskStaff(
+            STAFF_MEMBER.map(rs),
+            rs.getString(9),
+            rs.getString(10),
+            rs.getString(11));
+
+    public static final RowMapper<TrainerStaff> TRAINER = rs -> new TrainerStaff(
+            STAFF_MEMBER.map(rs),
+            rs.getString(9),
+            rs.getString(10),
+            rs.getString(11),
+            rs.getObject(12, Integer.class));
+
+    public static final RowMapper<ManagerStaff> MANAGER = rs -> new ManagerStaff(
+            STAFF_MEMBER.map(rs),
+            rs.getString(9),
+            rs.getString(10),
+            rs.getObject(11, Integer.class));
+
+    // Runs a prepared statement and maps every row
+    public static <T> List<T> mapAll(PreparedStatement ps, RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                rows.add(mapper.map(rs));
+            }
+        }
+        return rows;
+    }
+
+    // Same as above for queries without parameters
+    public static <T> List<T> query(Connection conn, String sql, RowMapper<T> mapper) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            return mapAll(ps, mapper);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+// Turns the free-text Trainer.schedule and Desk.schedule values into weekly time intervals.
+// It understands the ways people have been typing them, for example
+//   Mon-Fri 06:00-14:00
+//   Sat-Sun 8am-4pm
+//   Mon, Wed, Fri 9-5; Sat 10:00-14:00
+//   Weekdays 22:00-06:00        (past midnight, the rest goes on the next day)
+//   Daily 7:30am - 3:30pm
+//   9am-5pm Mon-Fri, 10-2 Sat
+// Days apply to the times that follow them. Times with no days before them take the days
+// right after them, and mean every day when none follow before the end or a ';'. Bare hours
+// from 1 to 12 with no am/pm are read as opening hours: 1 to 7 are pm, 8 to 12 are morning
+// or noon, so 9-5 is 9am to 5pm and 1-5 is 1pm to 5pm. A bare range that would then go
+// past midnight, like 6-10, could be either and is refused. 24-hour times like 22:00-06:00
+// or 22-6 go past midnight. Days with no times for them, or anything else it can't read,
+// make parse() throw
+// IllegalArgumentException, so the caller can list the schedule as unreadable instead of
+// guessing.
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ScheduleParser {
+
+    // One stretch of a weekly schedule on one day, in minutes since midnight. end is
+    // exclusive and at most 1440.
+    public record DayInterval(DayOfWeek day, int startMinute, int endMinute) {
+    }
+
+    private static final String TIME = "\\d{1,2}(?::\\d{2})?\\s*(?:[ap]\\.?m?\\.?)?";
+    private static final String DAY = "(?:mon|tue|wed|thu|fri|sat|sun)[a-z]*\\.?";
+
+    private static final Pattern TOKEN = Pattern.compile(
+            "(?<times>" + TIME + "\\s*(?:-|to)\\s*" + TIME + ")"
+            + "|(?<days>" + DAY + "(?:\\s*(?:-|to)\\s*" + DAY + ")?)"
+            + "|(?<every>weekdays|weekends|daily|every\\s*day)"
+            + "|(?<separator>[,;&/]|and|\\s+)");
+
+    private static final Pattern ONE_TIME = Pattern.compile("(\\d{1,2})(?::(\\d{2}))?\\s*([ap])?");
+
+    public static List<DayInterval> parse(String schedule) {
+        if (schedule == null || schedule.isBlank()) {
+            throw new IllegalArgumentException("No schedule");
+        }
+        String text = schedule.toLowerCase().replace('\u2013', '-').replace('\u2014', '-').trim();
+        List<DayInterval> intervals = new ArrayList<>();
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        boolean daysUsed = false; // the next day name starts a new group
+        List<String> pending = new ArrayList<>(); // times with no days before them yet
+        Matcher m = TOKEN.matcher(text);
+        int at = 0;
+        while (at < text.length()) {
+            if (!m.find(at) || m.start() != at) {
+                throw new IllegalArgumentException("Can't read \"" + schedule.substring(at).trim() + "\"");
+            }
+            if (m.group("times") != null) {
+                if (!pending.isEmpty() && !days.isEmpty()) {
+                    // "9-5 Mon-Fri 10-2 Sat": the days after the earlier times end with them
+                    addPending(pending, days, intervals);
+                    days = EnumSet.noneOf(DayOfWeek.class);
+                    daysUsed = false;
+                }
+                if (days.isEmpty()) {
+                    pending.add(m.group("times"));
+                } else {
+                    addTimes(m.group("times"), days, intervals);
+                    daysUsed = true;
+                }
+            } else if (m.group("days") != null || m.group("every") != null) {
+                if (daysUsed) {
+                    days = EnumSet.noneOf(DayOfWeek.class);
+                    daysUsed = false;
+                }
+                days.addAll(m.group("days") != null ? dayRange(m.group("days")) : everyKeyword(m.group("every")));
+            } else if (m.group("separator").equals(";") && !pending.isEmpty()) {
+                addPending(pending, days, intervals);
+                daysUsed = true;
+            }
+            at = m.end();
+        }
+        if (!pending.isEmpty()) {
+            addPending(pending, days, intervals);
+        } else if (!days.isEmpty() && !daysUsed) {
+            throw new IllegalArgumentException("No times for the days at the end of \"" + schedule + "\"");
+        }
+        if (intervals.isEmpty()) {
+            throw new IllegalArgumentException("No times in \"" + schedule + "\"");
+        }
+        return intervals;
+    }
+
+    // Adds the waiting times for the days, or for every day when there are none
+    private static void addPending(List<String> pending, Set<DayOfWeek> days, List<DayInterval> intervals) {
+        for (String times : pending) {
+            addTimes(times, days.isEmpty() ? EnumSet.allOf(DayOfWeek.class) : days, intervals);
+        }
+        pending.clear();
+    }
+
+    private static void addTimes(String range, Set<DayOfWeek> days, List<DayInterval> intervals) {
+        String[] ends = range.split("\\s*(?:-|to)\\s*", 2);
+        Matcher from = ONE_TIME.matcher(ends[0].replace(".", ""));
+        Matcher to = ONE_TIME.matcher(ends[1].replace(".", ""));
+        if (!from.lookingAt() || !to.lookingAt()) {
+            throw new IllegalArgumentException("Can't read the times in \"" + range + "\"");
+        }
+        String toHalf = to.group(3);
+        String fromHalf = from.group(3);
+        int fromHour = Integer.parseInt(from.group(1));
+        int toHour = Integer.parseInt(to.group(1));
+        if (fromHalf == null && toHalf != null) {
+            // "6-10pm" is the evening, "9-5pm" starts in the morning
+            fromHalf = fromHour % 12 <= toHour % 12 ? toHalf : (toHalf.equals("p") ? "a" : "p");
+        }
+        int start = minutes(fromHour, from.group(2), fromHalf);
+        int end = minutes(toHour, to.group(2), toHalf);
+        boolean bareHours = from.group(2) == null && to.group(2) == null && fromHalf == null && toHalf == null;
+        if (bareHours && fromHour >= 1 && fromHour <= 12 && toHour >= 1 && toHour <= 12) {
+            start = openingHour(fromHour) * 60;
+            end = openingHour(toHour) * 60;
+            if (end <= start) {
+                throw new IllegalArgumentException("Can't tell am from pm in \"" + range + "\", add them");
+            }
+        }
+        if (start >= 24 * 60 || end > 24 * 60 || start == end) {
+            throw new IllegalArgumentException("Not a valid time range: \"" + range + "\"");
+        }
+        for (DayOfWeek day : days) {
+            if (end > start) {
+                intervals.add(new DayInterval(day, start, end));
+            } else {
+                intervals.add(new DayInterval(day, start, 24 * 60));
+                if (end > 0) {
+                    intervals.add(new DayInterval(day.plus(1), 0, end));
+                }
+            }
+        }
+    }
+
+    // A bare 1 to 12 read as opening hours: 1 to 7 are the afternoon and evening
+    private static int openingHour(int hour) {
+        return hour <= 7 ? hour + 12 : hour;
+    }
+
+    private static int minutes(int hour, String minute, String half) {
+        if (half != null) {
+            if (hour < 1 || hour > 12) {
+                throw new IllegalArgumentException("Not a 12-hour time: " + hour + half + "m");
+            }
+            hour = hour % 12 + (half.equals("p") ? 12 : 0);
+        }
+        int m = minute == null ? 0 : Integer.parseInt(minute);
+        if (m >= 60) {
+            throw new IllegalArgumentException("Not a valid minute: " + m);
+        }
+        return hour * 60 + m;
+    }
+
+    private static Set<DayOfWeek> dayRange(String text) {
+        String[] ends = text.split("\\s*(?:-|to)\\s*", 2);
+        DayOfWeek first = day(ends[0]);
+        DayOfWeek last = ends.length == 2 ? day(ends[1]) : first;
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        // Ranges can wrap around the week, e.g. Fri-Mon
+        for (DayOfWeek d = first; ; d = d.plus(1)) {
+            days.add(d);
+            if (d == last) {
+                return days;
+            }
+        }
+    }
+
+    private static DayOfWeek day(String text) {
+        switch (text.trim().substring(0, 3)) {
+            case "mon": return DayOfWeek.MONDAY;
+            case "tue": return DayOfWeek.TUESDAY;
+            case "wed": return DayOfWeek.WEDNESDAY;
+            case "thu": return DayOfWeek.THURSDAY;
+            case "fri": return DayOfWeek.FRIDAY;
+            case "sat": return DayOfWeek.SATURDAY;
+            default: return DayOfWeek.SUNDAY;
+        }
+    }
+
+    private static Set<DayOfWeek> everyKeyword(String keyword) {
+        if (keyword.equals("weekdays")) {
+            return EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+        }
+        if (keyword.equals("weekends")) {
+            return EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+        }
+        return EnumSet.allOf(DayOfWeek.class);
+    }
+}
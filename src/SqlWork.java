@@ -0,0 +1,8 @@
+import java.sql.*;
+
+// A piece of database work to run on whichever connection the caller picks
+// (a branch, a replica, a background connection, ...)
+@FunctionalInterface
+public interface SqlWork<T> {
+    T run(Connection conn) throws SQLException;
+}
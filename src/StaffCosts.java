@@ -0,0 +1,324 @@
+// Payroll against activity for finance: salary cost, tenure, payments processed and
+// check-ins recorded per role (Desk, Trainer, Manager), per department (Manager.department)
+// and per desk staff member, for a date range.
+//
+// Each table is read once, streamed, with only the columns the totals need:
+//  - StaffMember with its role and department, which sets up one row of arrays per staff
+//    member, found by staffID through an int-keyed hash index
+//  - Payment and CheckIn in the range, each row adding to its staff member's counters
+// so there is no query per staff member and no boxed map entry per row, and the cost of a
+// report grows with the rows in the range rather than with rows times staff. Money is
+// added up in cents as longs and only turned into BigDecimal for the result.
+//
+// Period payroll is salary prorated by day over the part of the range the staff member
+// was employed (from their hire date). Payments and check-ins by a staff member added
+// after the StaffMember pass are counted in unknownStaffRows instead.
+//
+//   java -cp bin:mysql-connector-j.jar StaffCosts [from yyyy-mm-dd] [to yyyy-mm-dd]
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class StaffCosts {
+
+    // Indexes into ROLES, as the CASE in STAFF_SQL returns them
+    public static final List<String> ROLES = List.of("Desk", "Trainer", "Manager", "None");
+    private static final int DESK = 0;
+
+    private static final String STAFF_SQL =
+            "SELECT sm.staffID, CONCAT(sm.firstName, ' ', sm.lastName), sm.hireDate, " +
+            "       ROUND(COALESCE(sm.salary, 0) * 100), " +
+            "       CASE " +
+            "         WHEN d.staffID IS NOT NULL THEN 0 " +
+            "         WHEN t.staffID IS NOT NULL THEN 1 " +
+            "         WHEN m.staffID IS NOT NULL THEN 2 " +
+            "         ELSE 3 " +
+            "       END, " +
+            "       m.department " +
+            "FROM StaffMember sm " +
+            "LEFT JOIN Desk d ON sm.staffID = d.staffID " +
+            "LEFT JOIN Trainer t ON sm.staffID = t.staffID " +
+            "LEFT JOIN Manager m ON sm.staffID = m.staffID;";
+
+    // Every payment a desk processed counts, only successful ones count as collected
+    private static final String PAYMENTS_SQL =
+            "SELECT staffID, status = 'Success', ROUND(amount * 100) " +
+            "FROM Payment " +
+            "WHERE dateOfPayment BETWEEN ? AND ?;";
+
+    private static final String CHECK_INS_SQL =
+            "SELECT staffID " +
+            "FROM CheckIn " +
+            "WHERE ts >= ? AND ts < ?;";
+
+    // One role or department. averageTenureYears is up to the end of the range, over the
+    // staff hired by then.
+    public record Cost(String name, int staff, BigDecimal annualPayroll, BigDecimal periodPayroll,
+                       double averageTenureYears, long payments, BigDecimal collected, long checkIns) {
+    }
+
+    public record DeskCost(int staffID, String name, BigDecimal periodPayroll, long payments,
+                           BigDecimal collected, long checkIns) {
+    }
+
+    // desks is sorted by payments processed, most first
+    public record Report(LocalDate from, LocalDate to, List<Cost> roles, List<Cost> departments,
+                         List<DeskCost> desks, long paymentRows, long checkInRows, long unknownStaffRows) {
+    }
+
+    // staffID -> row in the Staff arrays. Open addressing with linear probing, so a lookup
+    // is a few int reads and nothing is boxed. staffIDs start at 1, 0 marks an empty slot.
+    private static final class IdIndex {
+        private int[] keys = new int[64];
+        private int[] rows = new int[64];
+        private int size;
+
+        int get(int id) {
+            int mask = keys.length - 1;
+            for (int i = hash(id) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return rows[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(int id, int row) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (keys[i] != 0 && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                size++;
+            }
+            keys[i] = id;
+            rows[i] = row;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = new int[oldKeys.length * 2];
+            rows = new int[oldRows.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldRows[i]);
+                }
+            }
+        }
+
+        // Spreads sequential ids over the table
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static final long NO_HIRE_DATE = Long.MIN_VALUE;
+
+    // One row per staff member, as parallel arrays
+    private static final class Staff {
+        final IdIndex index = new IdIndex();
+        final List<String> departments = new ArrayList<>();
+        final Map<String, Integer> departmentIndex = new HashMap<>();
+        int size;
+        int[] ids = new int[64];
+        String[] names = new String[64];
+        long[] hireDays = new long[64]; // epoch day, NO_HIRE_DATE when not known
+        long[] salaryCents = new long[64];
+        byte[] roles = new byte[64];
+        int[] departmentOf = new int[64]; // into departments, -1 for none
+        long[] payments = new long[64];
+        long[] collectedCents = new long[64];
+        long[] checkIns = new long[64];
+
+        void add(int id, String name, LocalDate hireDate, long salary, int role, String department) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                hireDays = Arrays.copyOf(hireDays, capacity);
+                salaryCents = Arrays.copyOf(salaryCents, capacity);
+                roles = Arrays.copyOf(roles, capacity);
+                departmentOf = Arrays.copyOf(departmentOf, capacity);
+                payments = Arrays.copyOf(payments, capacity);
+                collectedCents = Arrays.copyOf(collectedCents, capacity);
+                checkIns = Arrays.copyOf(checkIns, capacity);
+            }
+            ids[size] = id;
+            names[size] = name;
+            hireDays[size] = hireDate == null ? NO_HIRE_DATE : hireDate.toEpochDay();
+            salaryCents[size] = salary;
+            roles[size] = (byte) role;
+            departmentOf[size] = department == null ? -1 : departmentIndex.computeIfAbsent(department, d -> {
+                departments.add(d);
+                return departments.size() - 1;
+            });
+            index.put(id, size);
+            size++;
+        }
+    }
+
+    // Totals for one role or department while they are being added up
+    private static final class Tally {
+        int staff;
+        long annualCents;
+        long periodCents;
+        long tenureDays;
+        int tenured;
+        long payments;
+        long collectedCents;
+        long checkIns;
+
+        Cost toCost(String name) {
+            return new Cost(name, staff, cents(annualCents), cents(periodCents),
+                    tenured == 0 ? 0 : tenureDays / 365.25 / tenured, payments, cents(collectedCents), checkIns);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalDate to = args.length > 1 ? LocalDate.parse(args[1]) : LocalDate.now();
+        LocalDate from = args.length > 0 ? LocalDate.parse(args[0]) : to.withDayOfMonth(1);
+
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (Connection conn = Database.connect(props)) {
+            long start = System.nanoTime();
+            Report report = report(conn, from, to);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            DatabaseViews.showStaffCosts(report);
+            System.out.println("Read " + report.paymentRows() + " payments and " + report.checkInRows()
+                    + " check-ins in " + millis + " ms");
+        }
+    }
+
+    public static Report report(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        Staff staff = new Staff();
+        try (PreparedStatement ps = streaming(conn, STAFF_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                staff.add(rs.getInt(1), rs.getString(2), rs.getObject(3, LocalDate.class), rs.getLong(4),
+                        rs.getInt(5), rs.getString(6));
+            }
+        }
+
+        long paymentRows = 0;
+        long checkInRows = 0;
+        long unknown = 0;
+        try (PreparedStatement ps = streaming(conn, PAYMENTS_SQL)) {
+            ps.setObject(1, from);
+            ps.setObject(2, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    paymentRows++;
+                    int row = staff.index.get(rs.getInt(1));
+                    if (row < 0) {
+                        unknown++;
+                        continue;
+                    }
+                    staff.payments[row]++;
+                    if (rs.getBoolean(2)) {
+                        staff.collectedCents[row] += rs.getLong(3);
+                    }
+                }
+            }
+        }
+        try (PreparedStatement ps = streaming(conn, CHECK_INS_SQL)) {
+            ps.setObject(1, from.atStartOfDay());
+            ps.setObject(2, to.plusDays(1).atStartOfDay());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    checkInRows++;
+                    int row = staff.index.get(rs.getInt(1));
+                    if (row < 0) {
+                        unknown++;
+                        continue;
+                    }
+                    staff.checkIns[row]++;
+                }
+            }
+        }
+
+        Tally[] roles = new Tally[ROLES.size()];
+        Tally[] departments = new Tally[staff.departments.size()];
+        for (int i = 0; i < roles.length; i++) {
+            roles[i] = new Tally();
+        }
+        for (int i = 0; i < departments.length; i++) {
+            departments[i] = new Tally();
+        }
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        List<DeskCost> desks = new ArrayList<>();
+        for (int row = 0; row < staff.size; row++) {
+            long period = periodCents(staff.salaryCents[row], staff.hireDays[row], fromDay, toDay);
+            add(roles[staff.roles[row]], staff, row, period, toDay);
+            if (staff.departmentOf[row] >= 0) {
+                add(departments[staff.departmentOf[row]], staff, row, period, toDay);
+            }
+            if (staff.roles[row] == DESK) {
+                desks.add(new DeskCost(staff.ids[row], staff.names[row], cents(period), staff.payments[row],
+                        cents(staff.collectedCents[row]), staff.checkIns[row]));
+            }
+        }
+        desks.sort(Comparator.comparingLong(DeskCost::payments).reversed().thenComparingInt(DeskCost::staffID));
+
+        List<Cost> roleCosts = new ArrayList<>();
+        for (int i = 0; i < roles.length; i++) {
+            if (roles[i].staff > 0) {
+                roleCosts.add(roles[i].toCost(ROLES.get(i)));
+            }
+        }
+        List<Cost> departmentCosts = new ArrayList<>();
+        for (int i = 0; i < departments.length; i++) {
+            departmentCosts.add(departments[i].toCost(staff.departments.get(i)));
+        }
+        departmentCosts.sort(Comparator.comparing(Cost::name));
+        return new Report(from, to, roleCosts, departmentCosts, desks, paymentRows, checkInRows, unknown);
+    }
+
+    private static void add(Tally tally, Staff staff, int row, long periodCents, long toDay) {
+        tally.staff++;
+        tally.annualCents += staff.salaryCents[row];
+        tally.periodCents += periodCents;
+        long hireDay = staff.hireDays[row];
+        if (hireDay != NO_HIRE_DATE && hireDay <= toDay) {
+            tally.tenureDays += toDay - hireDay;
+            tally.tenured++;
+        }
+        tally.payments += staff.payments[row];
+        tally.collectedCents += staff.collectedCents[row];
+        tally.checkIns += staff.checkIns[row];
+    }
+
+    // Salary for the days of [fromDay, toDay] on or after the hire date. Staff without a
+    // hire date are taken to have been there the whole range.
+    private static long periodCents(long salaryCents, long hireDay, long fromDay, long toDay) {
+        long start = Math.max(fromDay, hireDay);
+        long days = Math.max(0, toDay - start + 1);
+        return salaryCents * days / 365;
+    }
+
+    // Forward-only and streamed (see AsyncViews), so a large range isn't held in memory
+    private static PreparedStatement streaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(Integer.MIN_VALUE);
+        return ps;
+    }
+
+    private static BigDecimal cents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
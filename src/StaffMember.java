@@ -0,0 +1,15 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// One row of StaffMember. role is "Desk", "Trainer", "Manager" or "None" depending on
+// which subtype table the staff member is in.
+public record StaffMember(
+        int staffID,
+        String firstName,
+        String lastName,
+        String phoneNumber,
+        String email,
+        LocalDate hireDate,
+        BigDecimal salary,
+        String role) {
+}
@@ -0,0 +1,142 @@
+// Who is working when, from the Desk and Trainer schedule columns. Each schedule is parsed
+// by ScheduleParser into weekly intervals, and the intervals for each weekday go into an
+// IntervalTree, so "who is on shift at 6pm Tuesday" or "who overlaps this shift" is a tree
+// lookup instead of reading every staff row.
+//
+// The same lookups find desk staff booked at the same desk at the same time, and check-ins
+// recorded by someone who wasn't on duty at the time (CheckIn.staffID is the desk staff
+// member who let the member in). Staff whose schedule can't be read are listed separately
+// and are left out of the off-duty check, since we can't tell either way.
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class StaffSchedules {
+
+    // One weekly interval for one staff member. location is the desk for desk staff and
+    // null for trainers.
+    public record Shift(int staffID, String name, String role, String location, DayOfWeek day,
+                        int startMinute, int endMinute) {
+    }
+
+    // Two desk staff at the same desk at the same time, from start to end
+    public record Conflict(Shift first, Shift second, int startMinute, int endMinute) {
+    }
+
+    public record Unreadable(int staffID, String name, String role, String schedule, String reason) {
+    }
+
+    private static final String SCHEDULES_SQL =
+            "SELECT sm.staffID, sm.firstName, sm.lastName, 'Desk', d.deskLocation, d.schedule " +
+            "FROM StaffMember sm INNER JOIN Desk d ON sm.staffID = d.staffID " +
+            "UNION ALL " +
+            "SELECT sm.staffID, sm.firstName, sm.lastName, 'Trainer', NULL, t.schedule " +
+            "FROM StaffMember sm INNER JOIN Trainer t ON sm.staffID = t.staffID " +
+            "ORDER BY 1;";
+
+    private static final String CHECK_INS_SQL =
+            "SELECT " + RowMappers.CHECK_IN_COLUMNS + " FROM CheckIn c " +
+            "WHERE c.ts >= ? AND c.ts < ? ORDER BY c.ts, c.checkInID;";
+
+    private final Map<DayOfWeek, IntervalTree<Shift>> days = new EnumMap<>(DayOfWeek.class);
+    private final Set<Integer> scheduled = new HashSet<>();
+    private final List<Unreadable> unreadable = new ArrayList<>();
+
+    public static StaffSchedules load(Connection conn) throws SQLException {
+        StaffSchedules schedules = new StaffSchedules();
+        Map<DayOfWeek, List<Shift>> shifts = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            shifts.put(day, new ArrayList<>());
+        }
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(SCHEDULES_SQL)) {
+            while (rs.next()) {
+                int staffID = rs.getInt(1);
+                String name = rs.getString(2) + " " + rs.getString(3);
+                String role = rs.getString(4);
+                String schedule = rs.getString(6);
+                try {
+                    for (ScheduleParser.DayInterval interval : ScheduleParser.parse(schedule)) {
+                        shifts.get(interval.day()).add(new Shift(staffID, name, role, rs.getString(5),
+                                interval.day(), interval.startMinute(), interval.endMinute()));
+                    }
+                    schedules.scheduled.add(staffID);
+                } catch (IllegalArgumentException e) {
+                    schedules.unreadable.add(new Unreadable(staffID, name, role, schedule, e.getMessage()));
+                }
+            }
+        }
+        for (DayOfWeek day : DayOfWeek.values()) {
+            schedules.days.put(day, new IntervalTree<>(shifts.get(day), Shift::startMinute, Shift::endMinute));
+        }
+        return schedules;
+    }
+
+    public List<Shift> onShift(LocalDateTime at) {
+        return onShift(at.getDayOfWeek(), at.getHour() * 60 + at.getMinute());
+    }
+
+    public List<Shift> onShift(DayOfWeek day, int minute) {
+        return days.get(day).containing(minute);
+    }
+
+    // Shifts that share any time with [startMinute, endMinute) on that day
+    public List<Shift> overlapping(DayOfWeek day, int startMinute, int endMinute) {
+        return days.get(day).overlapping(startMinute, endMinute);
+    }
+
+    public boolean isOnDuty(int staffID, LocalDateTime at) {
+        for (Shift shift : onShift(at)) {
+            if (shift.staffID() == staffID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Desk staff with overlapping shifts at the same desk, each pair once
+    public List<Conflict> deskConflicts() {
+        List<Conflict> conflicts = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (Shift shift : days.get(day).overlapping(0, 24 * 60)) {
+                if (shift.location() == null) {
+                    continue;
+                }
+                for (Shift other : overlapping(day, shift.startMinute(), shift.endMinute())) {
+                    if (other.staffID() > shift.staffID() && shift.location().equals(other.location())) {
+                        conflicts.add(new Conflict(shift, other, Math.max(shift.startMinute(), other.startMinute()),
+                                Math.min(shift.endMinute(), other.endMinute())));
+                    }
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    public List<Unreadable> unreadable() {
+        return unreadable;
+    }
+
+    // Check-ins from the from day through the to day whose staff member has a readable
+    // schedule and wasn't on it at the time
+    public List<CheckIn> offDutyCheckIns(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        List<CheckIn> offDuty = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(CHECK_INS_SQL)) {
+            ps.setObject(1, from);
+            ps.setObject(2, to.plusDays(1));
+            for (CheckIn checkIn : RowMappers.mapAll(ps, RowMappers.CHECK_IN)) {
+                if (scheduled.contains(checkIn.staffID()) && !isOnDuty(checkIn.staffID(), checkIn.ts())) {
+                    offDuty.add(checkIn);
+                }
+            }
+        }
+        return offDuty;
+    }
+}
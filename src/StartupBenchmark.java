@@ -0,0 +1,180 @@
+// Measures how long App takes to start, the way a desk sees it: from launching the JVM to
+// the first "Enter your choice:" prompt, and to the first table on screen (option 1). Each
+// run is a fresh JVM, compared across three setups:
+//  - connect first: startup.fastStart=false, the old behaviour
+//  - fast start: the menu shows while the connections open in the background
+//  - fast start + CDS: same, with the class data sharing archive from --archive
+//
+//   java -cp bin:mysql-connector-j.jar StartupBenchmark --archive
+//   java -cp bin:mysql-connector-j.jar StartupBenchmark [runs] [--max-prompt-ms N] [--max-result-ms N]
+//
+// --archive does one training run through a few views and writes the classes it loaded to
+// bin/app.jsa. Rebuild it after every compile, then start the app with
+//
+//   java -XX:SharedArchiveFile=bin/app.jsa -cp bin:mysql-connector-j.jar App
+//
+// The classpath has to be the same one the archive was made with, otherwise the JVM warns
+// and starts without it. With --max-prompt-ms / --max-result-ms the benchmark exits with
+// status 1 when the fastest setup's p50 is over the limit, so a slower startup fails the check.
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class StartupBenchmark {
+
+    private static final String ARCHIVE = "bin" + File.separator + "app.jsa";
+    private static final String PROMPT = "Enter your choice: ";
+    private static final String RESULT = "Press Enter to continue...";
+    private static final long RUN_TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        double maxPromptMillis = 0;
+        double maxResultMillis = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--archive":
+                    createArchive();
+                    return;
+                case "--max-prompt-ms":
+                    maxPromptMillis = Double.parseDouble(args[++i]);
+                    break;
+                case "--max-result-ms":
+                    maxResultMillis = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    runs = Integer.parseInt(args[i]);
+            }
+        }
+
+        Map<String, List<String>> setups = new LinkedHashMap<>();
+        setups.put("connect first", List.of("-Dstartup.fastStart=false"));
+        setups.put("fast start", List.of("-Dstartup.fastStart=true"));
+        if (new File(ARCHIVE).exists()) {
+            setups.put("fast start + CDS", List.of("-Dstartup.fastStart=true", "-XX:SharedArchiveFile=" + ARCHIVE));
+        } else {
+            System.out.println("No " + ARCHIVE + ", run with --archive first to include CDS");
+        }
+
+        // One throwaway run so the first setup doesn't pay for a cold disk cache
+        runApp(List.of(), "\n0\n");
+
+        Map<String, LatencyRecorder[]> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> setup : setups.entrySet()) {
+            LatencyRecorder prompt = new LatencyRecorder();
+            LatencyRecorder result = new LatencyRecorder();
+            for (int i = 0; i < runs; i++) {
+                long[] times = runApp(setup.getValue(), "\n0\n");
+                prompt.record(times[0]);
+                result.record(times[1]);
+            }
+            results.put(setup.getKey(), new LatencyRecorder[]{prompt, result});
+        }
+        report(results);
+
+        // The last setup is the one desks are meant to run
+        LatencyRecorder[] fastest = results.get(new ArrayList<>(results.keySet()).get(results.size() - 1));
+        boolean failed = false;
+        if (maxPromptMillis > 0 && fastest[0].percentileMillis(50) > maxPromptMillis) {
+            System.out.printf("FAIL: first prompt p50 %.0fms is over %.0fms%n", fastest[0].percentileMillis(50), maxPromptMillis);
+            failed = true;
+        }
+        if (maxResultMillis > 0 && fastest[1].percentileMillis(50) > maxResultMillis) {
+            System.out.printf("FAIL: first result p50 %.0fms is over %.0fms%n", fastest[1].percentileMillis(50), maxResultMillis);
+            failed = true;
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    // Training run: goes through the common views so their classes end up in the archive
+    private static void createArchive() throws IOException, InterruptedException {
+        new File(ARCHIVE).delete();
+        runApp(List.of("-XX:ArchiveClassesAtExit=" + ARCHIVE), "\n2\n\n5\n\n6\n\n7\n\n0\n");
+        if (!new File(ARCHIVE).exists()) {
+            System.out.println("The JVM did not write " + ARCHIVE + ", it needs JDK 13 or newer");
+            return;
+        }
+        System.out.println("Wrote " + ARCHIVE + " (" + new File(ARCHIVE).length() / 1024 + " KB)");
+    }
+
+    // Starts App in a new JVM, picks option 1 at the first prompt and sends the rest of the
+    // input once the table is printed. Returns nanos to the first prompt and to the table.
+    private static long[] runApp(List<String> jvmOptions, String afterResult) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("App");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        CompletableFuture.delayedExecutor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS).execute(process::destroyForcibly);
+
+        long promptAt = 0;
+        long resultAt = 0;
+        StringBuilder output = new StringBuilder();
+        try (Reader out = new InputStreamReader(process.getInputStream());
+             Writer in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()))) {
+            int c;
+            while (resultAt == 0 && (c = out.read()) != -1) {
+                output.append((char) c);
+                if (promptAt == 0 && endsWith(output, PROMPT)) {
+                    promptAt = System.nanoTime();
+                    in.write("1\n");
+                    in.flush();
+                } else if (promptAt != 0 && endsWith(output, RESULT)) {
+                    resultAt = System.nanoTime();
+                    in.write(afterResult);
+                    in.flush();
+                }
+            }
+            // Drain the rest so the app never blocks on a full pipe
+            while (out.read() != -1) {
+            }
+        }
+        process.waitFor();
+        if (resultAt == 0) {
+            int from = Math.max(0, output.length() - 500);
+            throw new IllegalStateException("App exited before showing the first result:\n" + output.substring(from));
+        }
+        return new long[]{promptAt - start, resultAt - start};
+    }
+
+    private static boolean endsWith(StringBuilder text, String suffix) {
+        int from = text.length() - suffix.length();
+        return from >= 0 && text.indexOf(suffix, from) == from;
+    }
+
+    private static void report(Map<String, LatencyRecorder[]> results) {
+        String[] headers = {"Setup", "Runs", "Prompt p50 (ms)", "Prompt max (ms)", "Result p50 (ms)", "Result max (ms)"};
+        int[] widths = {18, 4, 15, 15, 15, 15};
+        List<String[]> rows = new ArrayList<>();
+        for (Map.Entry<String, LatencyRecorder[]> setup : results.entrySet()) {
+            LatencyRecorder prompt = setup.getValue()[0];
+            LatencyRecorder result = setup.getValue()[1];
+            rows.add(new String[]{
+                setup.getKey(),
+                String.valueOf(prompt.count()),
+                String.format("%.0f", prompt.percentileMillis(50)),
+                String.format("%.0f", prompt.percentileMillis(100)),
+                String.format("%.0f", result.percentileMillis(50)),
+                String.format("%.0f", result.percentileMillis(100))
+            });
+        }
+        System.out.println();
+        DatabaseViews.printTable(headers, widths, rows);
+    }
+}
@@ -0,0 +1,158 @@
+// Approximate percentiles (median, p90, ...) of a stream of numbers, kept as a few hundred
+// weighted centroids. Used by Analytics for payment amounts per day and payment type.
+// Centroids near the tails are kept small, so p99 is as accurate as the median, and two
+// digests merge into one that is about as accurate as if it had seen every value.
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class TDigest {
+
+    private static final double COMPRESSION = 100;
+    private static final int BUFFER_SIZE = 500;
+
+    // Compressed centroids, sorted by mean
+    private double[] means = new double[0];
+    private long[] counts = new long[0];
+
+    // Values and centroids added since the last compress
+    private double[] pendingMeans = new double[BUFFER_SIZE];
+    private long[] pendingCounts = new long[BUFFER_SIZE];
+    private int pending;
+
+    private long total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.means.length; i++) {
+            add(other.means[i], other.counts[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return total;
+    }
+
+    // q is between 0 and 1, e.g. 0.5 for the median. NaN when nothing was added.
+    public double quantile(double q) {
+        compress();
+        if (total == 0) {
+            return Double.NaN;
+        }
+        if (means.length == 1) {
+            return means[0];
+        }
+        double index = q * total;
+        // Each centroid's mean sits at the middle of its weight
+        double center = counts[0] / 2.0;
+        if (index <= center) {
+            return min + (means[0] - min) * (center == 0 ? 0 : index / center);
+        }
+        for (int i = 0; i < means.length - 1; i++) {
+            double nextCenter = center + (counts[i] + counts[i + 1]) / 2.0;
+            if (index <= nextCenter) {
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / (nextCenter - center);
+            }
+            center = nextCenter;
+        }
+        double lastWeight = total - center;
+        return means[means.length - 1] + (max - means[means.length - 1])
+                * (lastWeight == 0 ? 0 : (index - center) / lastWeight);
+    }
+
+    private void add(double mean, long count) {
+        if (pending == pendingMeans.length) {
+            compress();
+        }
+        pendingMeans[pending] = mean;
+        pendingCounts[pending] = count;
+        pending++;
+        total += count;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+    }
+
+    // Sorts everything by mean and merges neighbours while the merged centroid stays under
+    // the size limit for where it sits, 4 * total * q * (1 - q) / compression
+    private void compress() {
+        if (pending == 0) {
+            return;
+        }
+        int n = means.length + pending;
+        double[] allMeans = Arrays.copyOf(means, n);
+        long[] allCounts = Arrays.copyOf(counts, n);
+        System.arraycopy(pendingMeans, 0, allMeans, means.length, pending);
+        System.arraycopy(pendingCounts, 0, allCounts, counts.length, pending);
+        pending = 0;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+        double[] newMeans = new double[n];
+        long[] newCounts = new long[n];
+        int size = 0;
+        long before = 0; // weight of the centroids already closed
+        double mean = allMeans[order[0]];
+        long count = allCounts[order[0]];
+        for (int k = 1; k < n; k++) {
+            int i = order[k];
+            double q = (before + (count + allCounts[i]) / 2.0) / total;
+            double limit = 4 * total * q * (1 - q) / COMPRESSION;
+            if (count + allCounts[i] <= Math.max(1, limit)) {
+                count += allCounts[i];
+                mean += (allMeans[i] - mean) * allCounts[i] / count;
+            } else {
+                newMeans[size] = mean;
+                newCounts[size] = count;
+                size++;
+                before += count;
+                mean = allMeans[i];
+                count = allCounts[i];
+            }
+        }
+        newMeans[size] = mean;
+        newCounts[size] = count;
+        size++;
+        means = Arrays.copyOf(newMeans, size);
+        counts = Arrays.copyOf(newCounts, size);
+    }
+
+    // min, max, then each centroid's mean and count
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer out = ByteBuffer.allocate(20 + means.length * 12);
+        out.putDouble(min).putDouble(max).putInt(means.length);
+        for (int i = 0; i < means.length; i++) {
+            out.putDouble(means[i]).putInt((int) Math.min(Integer.MAX_VALUE, counts[i]));
+        }
+        return out.array();
+    }
+
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        TDigest digest = new TDigest();
+        double min = in.getDouble();
+        double max = in.getDouble();
+        int size = in.getInt();
+        digest.means = new double[size];
+        digest.counts = new long[size];
+        for (int i = 0; i < size; i++) {
+            digest.means[i] = in.getDouble();
+            digest.counts[i] = in.getInt();
+            digest.total += digest.counts[i];
+        }
+        digest.min = min;
+        digest.max = max;
+        return digest;
+    }
+}
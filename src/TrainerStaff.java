@@ -0,0 +1,8 @@
+// A StaffMember joined with their Trainer row
+public record TrainerStaff(
+        StaffMember staff,
+        String specialty,
+        String schedule,
+        String certificationLevel,
+        Integer experience) {
+}
@@ -0,0 +1,121 @@
+// Every table view the menu can show, pairing the query from Queries with the
+// printer from DatabaseViews. Having the two apart lets rows be loaded ahead of time
+// (see ViewPrefetcher) and printed later.
+import java.sql.*;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+public final class View<T> {
+
+    @FunctionalInterface
+    public interface Printer<T> {
+        void print(List<T> rows);
+    }
+
+    public static final View<GymMember> GYM_MEMBERS =
+            new View<>("Gym Members", Queries.GYM_MEMBERS_SQL, RowMappers.GYM_MEMBER, DatabaseViews::showGymMembers,
+                    DatabaseViews.MEMBER_HEADERS, DatabaseViews.MEMBER_WIDTHS, DatabaseViews::memberRow, GymMember::memberID);
+    public static final View<MembershipSummary> ALL_MEMBERSHIPS =
+            new View<>("All Memberships", Queries.ALL_MEMBERSHIPS_SQL, RowMappers.MEMBERSHIP_SUMMARY, DatabaseViews::showAllMemberships,
+                    DatabaseViews.MEMBERSHIP_HEADERS, DatabaseViews.MEMBERSHIP_WIDTHS, DatabaseViews::membershipRow, MembershipSummary::memberID);
+    public static final View<StaffMember> ALL_STAFF_MEMBERS =
+            new View<>("All Staff Members", Queries.ALL_STAFF_MEMBERS_SQL, RowMappers.STAFF_MEMBER, DatabaseViews::showAllStaffMembers,
+                    DatabaseViews.STAFF_HEADERS, DatabaseViews.STAFF_WIDTHS, DatabaseViews::staffRow, StaffMember::staffID);
+    public static final View<DeskStaff> DESK_STAFF =
+            new View<>("Desk Staff", Queries.DESK_STAFF_SQL, RowMappers.DESK, DatabaseViews::showDeskStaff,
+                    DatabaseViews.DESK_HEADERS, DatabaseViews.DESK_WIDTHS, DatabaseViews::deskRow, d -> d.staff().staffID());
+    public static final View<TrainerStaff> TRAINERS =
+            new View<>("Trainers", Queries.TRAINERS_SQL, RowMappers.TRAINER, DatabaseViews::showTrainers,
+                    DatabaseViews.TRAINER_HEADERS, DatabaseViews.TRAINER_WIDTHS, DatabaseViews::trainerRow, t -> t.staff().staffID());
+    public static final View<ManagerStaff> MANAGERS =
+            new View<>("Managers", Queries.MANAGERS_SQL, RowMappers.MANAGER, DatabaseViews::showManagers,
+                    DatabaseViews.MANAGER_HEADERS, DatabaseViews.MANAGER_WIDTHS, DatabaseViews::managerRow, m -> m.staff().staffID());
+    public static final View<Plan> PLANS =
+            new View<>("Plans", Queries.PLANS_SQL, RowMappers.PLAN, DatabaseViews::showPlans,
+                    DatabaseViews.PLAN_HEADERS, DatabaseViews.PLAN_WIDTHS, DatabaseViews::planRow, Plan::planID);
+    public static final View<Payment> PAYMENTS =
+            new View<>("Payments", Queries.PAYMENTS_SQL, RowMappers.PAYMENT, DatabaseViews::showPayments,
+                    DatabaseViews.PAYMENT_HEADERS, DatabaseViews.PAYMENT_WIDTHS, DatabaseViews::paymentRow, Payment::paymentID);
+    public static final View<CheckIn> CHECK_INS =
+            new View<>("Check-Ins", Queries.CHECK_INS_SQL, RowMappers.CHECK_IN, DatabaseViews::showCheckIns,
+                    DatabaseViews.CHECK_IN_HEADERS, DatabaseViews.CHECK_IN_WIDTHS, DatabaseViews::checkInRow, CheckIn::checkInID);
+    public static final View<GymMember> ACTIVE_MEMBERS =
+            new View<>("Active Members", Queries.ACTIVE_MEMBERS_SQL, RowMappers.GYM_MEMBER, DatabaseViews::showActiveMembers,
+                    DatabaseViews.MEMBER_HEADERS, DatabaseViews.MEMBER_WIDTHS, DatabaseViews::memberRow, GymMember::memberID);
+
+    public static final List<View<?>> ALL = List.of(
+            GYM_MEMBERS, ALL_MEMBERSHIPS, ALL_STAFF_MEMBERS, DESK_STAFF, TRAINERS,
+            MANAGERS, PLANS, PAYMENTS, CHECK_INS, ACTIVE_MEMBERS);
+
+    private final String name;
+    private final String sql;
+    private final RowMappers.RowMapper<T> mapper;
+    private final Printer<T> printer;
+    private final String[] headers;
+    private final int[] widths;
+    private final Function<T, String[]> renderer;
+    private final ToIntFunction<T> key;
+
+    private View(String name, String sql, RowMappers.RowMapper<T> mapper, Printer<T> printer,
+                 String[] headers, int[] widths, Function<T, String[]> renderer, ToIntFunction<T> key) {
+        this.name = name;
+        this.sql = sql;
+        this.mapper = mapper;
+        this.printer = printer;
+        this.headers = headers;
+        this.widths = widths;
+        this.renderer = renderer;
+        this.key = key;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public List<T> load(Connection conn) throws SQLException {
+        return RowMappers.query(conn, sql, mapper);
+    }
+
+    // The view's SELECT and the mapper for its rows, for callers that read the rows
+    // themselves (e.g. streaming them one at a time)
+    public String sql() {
+        return sql;
+    }
+
+    public RowMappers.RowMapper<T> mapper() {
+        return mapper;
+    }
+
+    public void print(List<T> rows) {
+        printer.print(rows);
+    }
+
+    // Table layout, for outputs that print the rows without the view's title text
+    public String[] headers() {
+        return headers;
+    }
+
+    public int[] widths() {
+        return widths;
+    }
+
+    public String[] render(T row) {
+        return renderer.apply(row);
+    }
+
+    // The id the view's query sorts by (ORDER BY), used to merge rows from several sources
+    public int key(T row) {
+        return key.applyAsInt(row);
+    }
+
+    public Comparator<T> order() {
+        return Comparator.comparingInt(key);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
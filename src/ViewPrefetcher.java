@@ -0,0 +1,154 @@
+// Loads the views the user is likely to open next while they are still reading the
+// current one ("Press Enter to continue..."), so the next selection prints right away.
+//
+// Predictions come from which view followed which in this session, seeded with the
+// obvious desk habits (payments after memberships). Prefetched rows are only used once
+// and only while they are younger than the TTL, so the desk never sees old data for long,
+// and the app clears them after each of its own writes so an edit shows up right away.
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ViewPrefetcher implements AutoCloseable {
+
+    private static final int MAX_PREDICTIONS = 2;
+
+    private static final class Entry {
+        final List<?> rows;
+        final long loadedAt;
+
+        Entry(List<?> rows, long loadedAt) {
+            this.rows = rows;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    // Separate connection, only ever used from the worker thread
+    private final Connection conn;
+    private final long ttlMillis;
+    private final ExecutorService worker;
+    private final Map<View<?>, CompletableFuture<Entry>> prefetched = new ConcurrentHashMap<>();
+
+    // previous view -> next view -> how many times that happened
+    private final Map<View<?>, Map<View<?>, Integer>> transitions = new HashMap<>();
+    private View<?> lastView;
+
+    public ViewPrefetcher(Connection conn, long ttlMillis) {
+        this.conn = conn;
+        this.ttlMillis = ttlMillis;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "view-prefetcher");
+            t.setDaemon(true);
+            return t;
+        });
+        recordTransition(View.ALL_MEMBERSHIPS, View.PAYMENTS);
+    }
+
+    // Returns rows loaded ahead of time for this view, or null if there are none (or they
+    // are too old). If the prefetch is still running this waits for it, which is still
+    // quicker than starting the same query again.
+    public <T> List<T> take(View<T> view) {
+        CompletableFuture<Entry> future = prefetched.remove(view);
+        if (future == null) {
+            return null;
+        }
+        try {
+            Entry entry = future.get();
+            if (System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+                return null;
+            }
+            @SuppressWarnings("unchecked") // entries are only stored under the view that loaded them
+            List<T> rows = (List<T>) entry.rows;
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // The caller will just run the query itself
+            return null;
+        }
+    }
+
+    // Drops everything loaded so far, for after a write made from this app. A load still
+    // running finishes, but nothing will take its rows.
+    public void clear() {
+        prefetched.clear();
+    }
+
+    // Called after a view is shown, learns from it and starts loading the likely next views
+    public synchronized void viewed(View<?> view) {
+        if (lastView != null) {
+            recordTransition(lastView, view);
+        }
+        lastView = view;
+        prefetch(predict(view));
+    }
+
+    // Starts loading the given views in the background, skipping ones already loaded
+    public void prefetch(List<View<?>> views) {
+        for (View<?> view : views) {
+            CompletableFuture<Entry> existing = prefetched.get(view);
+            if (existing != null && !isExpired(existing)) {
+                continue;
+            }
+            prefetched.put(view, CompletableFuture.supplyAsync(() -> load(view), worker));
+        }
+    }
+
+    // The views that most often came after this one, most frequent first
+    public synchronized List<View<?>> predict(View<?> view) {
+        Map<View<?>, Integer> next = transitions.get(view);
+        List<View<?>> predicted = new ArrayList<>();
+        if (next == null) {
+            return predicted;
+        }
+        List<Map.Entry<View<?>, Integer>> ranked = new ArrayList<>(next.entrySet());
+        ranked.sort((a, b) -> b.getValue() - a.getValue());
+        for (Map.Entry<View<?>, Integer> entry : ranked) {
+            if (predicted.size() == MAX_PREDICTIONS) {
+                break;
+            }
+            predicted.add(entry.getKey());
+        }
+        return predicted;
+    }
+
+    private synchronized void recordTransition(View<?> from, View<?> to) {
+        transitions.computeIfAbsent(from, k -> new HashMap<>()).merge(to, 1, Integer::sum);
+    }
+
+    private Entry load(View<?> view) {
+        try {
+            return new Entry(view.load(conn), System.currentTimeMillis());
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean isExpired(CompletableFuture<Entry> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+        if (future.isCompletedExceptionally()) {
+            return true;
+        }
+        return System.currentTimeMillis() - future.join().loadedAt > ttlMillis;
+    }
+
+    @Override
+    public void close() {
+        worker.shutdownNow();
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // Nothing useful to do while shutting down
+        }
+    }
+}
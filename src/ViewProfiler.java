@@ -0,0 +1,209 @@
+// Measures what each view costs in the app itself: wall time, bytes allocated and garbage
+// collections while it loads and while it prints, so we can tell whether big views are
+// slow because of the database or because of all the Strings built to print them.
+//
+// Allocation is counted for the calling thread only (rows the prefetcher loaded in the
+// background show up as a cheap load). GC counts are for the whole JVM, so a collection
+// started by another thread during the step is counted too.
+//
+// With diagnostics.jfr=true in app.properties a Java Flight Recorder recording runs for the
+// whole session and is written to diagnostics.jfrFile on exit, with a "Gym View" event for
+// every step measured here next to the JVM's own allocation and GC events.
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+public class ViewProfiler implements AutoCloseable {
+
+    // Code being measured, anything a view does can throw SQLException
+    @FunctionalInterface
+    public interface Step<T> {
+        T run() throws SQLException;
+    }
+
+    @Name("gym.View")
+    @Label("Gym View")
+    static class ViewEvent extends Event {
+        @Label("Step")
+        String step;
+        @Label("Allocated Bytes")
+        long allocatedBytes;
+    }
+
+    // Totals for one step, e.g. "Payments print"
+    public static final class StepStats {
+        long calls;
+        long totalNanos;
+        long maxNanos;
+        long totalBytes;
+        long maxBytes;
+        long gcCount;
+        long gcMillis;
+
+        public long calls() {
+            return calls;
+        }
+
+        public double averageMillis() {
+            return calls == 0 ? 0 : totalNanos / 1_000_000.0 / calls;
+        }
+
+        public double maxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        // -1 when the JVM can't count allocations
+        public long averageBytes() {
+            return calls == 0 || totalBytes < 0 ? -1 : totalBytes / calls;
+        }
+
+        public long maxBytes() {
+            return totalBytes < 0 ? -1 : maxBytes;
+        }
+
+        public long gcCount() {
+            return gcCount;
+        }
+
+        public long gcMillis() {
+            return gcMillis;
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final Map<String, StepStats> stats = new LinkedHashMap<>();
+    private final Recording recording;
+    private final Path recordingFile;
+
+    private ViewProfiler(Recording recording, Path recordingFile) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+        this.recording = recording;
+        this.recordingFile = recordingFile;
+    }
+
+    // Starts the JFR recording too when app.properties asks for it. If it can't be started
+    // the app runs without it.
+    public static ViewProfiler open(Properties props) {
+        if (!Database.booleanProperty(props, "diagnostics.jfr", false)) {
+            return new ViewProfiler(null, null);
+        }
+        Path file = Path.of(props.getProperty("diagnostics.jfrFile", "gym.jfr"));
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration("profile"));
+            recording.setName("Gym Database");
+            recording.setToDisk(true);
+            recording.setDestination(file);
+            recording.start();
+            return new ViewProfiler(recording, file);
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            System.out.println("JFR recording disabled: " + e.getMessage());
+            return new ViewProfiler(null, null);
+        }
+    }
+
+    public <T> T measure(String step, Step<T> work) throws SQLException {
+        ViewEvent event = new ViewEvent();
+        event.begin();
+        long bytesBefore = allocatedBytes();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long start = System.nanoTime();
+        try {
+            return work.run();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            long bytes = bytesBefore < 0 ? -1 : allocatedBytes() - bytesBefore;
+            record(step, nanos, bytes, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+            event.end();
+            if (event.shouldCommit()) {
+                event.step = step;
+                event.allocatedBytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    public synchronized Map<String, StepStats> stats() {
+        return new LinkedHashMap<>(stats);
+    }
+
+    public MemoryUsage heap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+
+    // Where the JFR recording goes, or null when it is off
+    public Path recordingFile() {
+        return recordingFile;
+    }
+
+    private synchronized void record(String step, long nanos, long bytes, long gcs, long gcTime) {
+        StepStats s = stats.computeIfAbsent(step, k -> new StepStats());
+        s.calls++;
+        s.totalNanos += nanos;
+        s.maxNanos = Math.max(s.maxNanos, nanos);
+        if (bytes < 0 || s.totalBytes < 0) {
+            s.totalBytes = -1;
+        } else {
+            s.totalBytes += bytes;
+            s.maxBytes = Math.max(s.maxBytes, bytes);
+        }
+        s.gcCount += gcs;
+        s.gcMillis += gcTime;
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    // Writes the JFR recording, if there is one
+    @Override
+    public void close() {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.stop();
+            System.out.println("JFR recording written to " + recordingFile.toAbsolutePath());
+        } catch (IllegalStateException e) {
+            // Already stopped
+        } finally {
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// Filtered, sorted and limited versions of the big views (payments and check-ins), so
+// "failed payments this week" or "today's check-ins at the front desk" only reads those
+// rows instead of the whole table. Every value goes in as a statement parameter, and dates
+// become plain ranges on the indexed column (no DATE() around it) so MySQL can use the
+// indexes added in tables.sql and stop after the limit.
+//
+//   java -cp bin:mysql-connector-j.jar ViewQuery payments --status Failed --from 2026-10-12
+//   java -cp bin:mysql-connector-j.jar ViewQuery checkins --location "Main Entrance" --from 2026-10-19 --to 2026-10-19
+//
+// Options: --from/--to <yyyy-mm-dd> (both inclusive), --status, --location, --staff <id>,
+// --limit <rows, default 100>, --oldest-first (newest first by default).
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public final class ViewQuery<T> {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 10000;
+
+    // Column names for the filters a view supports, null when it doesn't have one
+    public static final ViewQuery<Payment> PAYMENTS =
+            new ViewQuery<>(View.PAYMENTS, RowMappers.PAYMENT_COLUMNS, "Payment p",
+                    "p.paymentID", "p.dateOfPayment", "p.status", null, "p.staffID");
+
+    public static final ViewQuery<CheckIn> CHECK_INS =
+            new ViewQuery<>(View.CHECK_INS, RowMappers.CHECK_IN_COLUMNS, "CheckIn c",
+                    "c.checkInID", "c.ts", null, "c.location", "c.staffID");
+
+    // Any field can be left null. from and to are inclusive days.
+    public record Filter(LocalDate from, LocalDate to, String status, String location, Integer staffID,
+                         boolean newestFirst, int limit) {
+
+        // The limit the query uses, between 1 and MAX_LIMIT
+        public int rowLimit() {
+            return Math.max(1, Math.min(MAX_LIMIT, limit));
+        }
+    }
+
+    private final View<T> view;
+    private final String columns;
+    private final String table;
+    private final String idColumn;
+    private final String dateColumn;
+    private final String statusColumn;
+    private final String locationColumn;
+    private final String staffColumn;
+
+    private ViewQuery(View<T> view, String columns, String table, String idColumn, String dateColumn,
+                      String statusColumn, String locationColumn, String staffColumn) {
+        this.view = view;
+        this.columns = columns;
+        this.table = table;
+        this.idColumn = idColumn;
+        this.dateColumn = dateColumn;
+        this.statusColumn = statusColumn;
+        this.locationColumn = locationColumn;
+        this.staffColumn = staffColumn;
+    }
+
+    public View<T> view() {
+        return view;
+    }
+
+    public boolean hasStatus() {
+        return statusColumn != null;
+    }
+
+    public boolean hasLocation() {
+        return locationColumn != null;
+    }
+
+    public List<T> load(Connection conn, Filter filter) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql(filter, params))) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return RowMappers.mapAll(ps, view.mapper());
+        }
+    }
+
+    // Same as above, reusing the rows from an earlier identical search when the tables
+    // haven't changed since
+    public List<T> load(Connection conn, Filter filter, QueryCache cache) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = sql(filter, params);
+        return cache.query(conn, sql, params, view.mapper());
+    }
+
+    // Builds the SELECT for a filter and adds its parameters, in order, to params
+    String sql(Filter filter, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.from() != null) {
+            conditions.add(dateColumn + " >= ?");
+            params.add(filter.from());
+        }
+        if (filter.to() != null) {
+            // Before the next day, so a DATETIME column includes the whole last day
+            conditions.add(dateColumn + " < ?");
+            params.add(filter.to().plusDays(1));
+        }
+        if (filter.status() != null) {
+            conditions.add(column(statusColumn, "status") + " = ?");
+            params.add(filter.status());
+        }
+        if (filter.location() != null) {
+            conditions.add(column(locationColumn, "location") + " = ?");
+            params.add(filter.location());
+        }
+        if (filter.staffID() != null) {
+            conditions.add(staffColumn + " = ?");
+            params.add(filter.staffID());
+        }
+
+        // Date then id, the same order as the (filter, date) indexes, so no sort is needed
+        String direction = filter.newestFirst() ? " DESC" : "";
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM ").append(table);
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(dateColumn).append(direction).append(", ").append(idColumn).append(direction);
+        sql.append(" LIMIT ?");
+        params.add(filter.rowLimit());
+        return sql.toString();
+    }
+
+    private String column(String column, String name) {
+        if (column == null) {
+            throw new IllegalArgumentException(view.name() + " can't be filtered by " + name);
+        }
+        return column;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !(args[0].equals("payments") || args[0].equals("checkins"))) {
+            System.out.println("Usage: ViewQuery payments|checkins [--from yyyy-mm-dd] [--to yyyy-mm-dd] [--status s] "
+                    + "[--location l] [--staff id] [--limit n] [--oldest-first]");
+            return;
+        }
+        ViewQuery<?> query = args[0].equals("payments") ? PAYMENTS : CHECK_INS;
+        Filter filter;
+        try {
+            filter = parse(args);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.out.println("Invalid option: " + e.getMessage());
+            return;
+        }
+
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (Connection conn = Database.connect(props)) {
+            print(query, conn, filter);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid option: " + e.getMessage());
+        }
+    }
+
+    private static <T> void print(ViewQuery<T> query, Connection conn, Filter filter) throws SQLException {
+        DatabaseViews.showSearchResults(query.view(), query.load(conn, filter), filter.rowLimit());
+    }
+
+    private static Filter parse(String[] args) {
+        LocalDate from = null;
+        LocalDate to = null;
+        String status = null;
+        String location = null;
+        Integer staffID = null;
+        int limit = DEFAULT_LIMIT;
+        boolean newestFirst = true;
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--oldest-first")) {
+                newestFirst = false;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--from":
+                    from = LocalDate.parse(value);
+                    break;
+                case "--to":
+                    to = LocalDate.parse(value);
+                    break;
+                case "--status":
+                    status = value;
+                    break;
+                case "--location":
+                    location = value;
+                    break;
+                case "--staff":
+                    staffID = Integer.parseInt(value);
+                    break;
+                case "--limit":
+                    limit = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(option);
+            }
+        }
+        return new Filter(from, to, status, location, staffID, newestFirst, limit);
+    }
+}
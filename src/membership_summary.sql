@@ -0,0 +1,75 @@
+-- Materialized copy of the All Memberships view, one row per membership with the member's
+-- name and the plan's type and price already filled in, so the screen reads a single table
+-- instead of joining four. Run this after tables.sql (DataGenerator --reset does both), or
+-- on an existing database with: java -cp bin:mysql-connector-j.jar MembershipSummaries install
+
+DROP TRIGGER IF EXISTS membership_summary_insert;
+DROP TRIGGER IF EXISTS membership_summary_update;
+DROP TRIGGER IF EXISTS membership_summary_member;
+DROP TRIGGER IF EXISTS membership_summary_plan;
+DROP TRIGGER IF EXISTS membership_summary_plan_type;
+DROP TABLE IF EXISTS MembershipSummary;
+
+CREATE TABLE MembershipSummary (
+  membershipID INT PRIMARY KEY,
+  memberID INT NOT NULL,
+  firstName VARCHAR(50) NOT NULL,
+  lastName  VARCHAR(50) NOT NULL,
+  planID INT NOT NULL,
+  planType ENUM('Monthly', 'Monthly Premium', 'Annual') NOT NULL,
+  price DECIMAL(10,2) NOT NULL,
+  status ENUM('Active','Paused', 'Cancelled') NOT NULL,
+  startDate DATE NOT NULL,
+  endDate   DATE NOT NULL,
+  INDEX (memberID, membershipID), -- the order the screen lists them in
+  INDEX (planID),
+  INDEX (planType),
+  -- Deletes and key changes come through these, MySQL doesn't run triggers for cascades
+  FOREIGN KEY (membershipID) REFERENCES Membership(membershipID)
+    ON UPDATE CASCADE
+    ON DELETE CASCADE,
+  FOREIGN KEY (memberID) REFERENCES GymMember(memberID)
+    ON UPDATE CASCADE
+    ON DELETE CASCADE
+);
+
+-- ____________________________________________________________
+-- Triggers keeping MembershipSummary current. Each one is a single statement so the
+-- script runs without DELIMITER, in the mysql client and in Database.runScript.
+
+-- New or changed membership: copy it over with the current name and plan
+CREATE TRIGGER membership_summary_insert AFTER INSERT ON Membership FOR EACH ROW
+  REPLACE INTO MembershipSummary (membershipID, memberID, firstName, lastName, planID, planType, price, status, startDate, endDate)
+  SELECT NEW.membershipID, NEW.memberID, gm.firstName, gm.lastName, NEW.planID, pt.planType, pt.price, NEW.status, NEW.startDate, NEW.endDate
+  FROM GymMember gm
+  JOIN Plan p ON p.planID = NEW.planID
+  JOIN PlanType pt ON pt.planType = p.planType
+  WHERE gm.memberID = NEW.memberID;
+
+CREATE TRIGGER membership_summary_update AFTER UPDATE ON Membership FOR EACH ROW
+  REPLACE INTO MembershipSummary (membershipID, memberID, firstName, lastName, planID, planType, price, status, startDate, endDate)
+  SELECT NEW.membershipID, NEW.memberID, gm.firstName, gm.lastName, NEW.planID, pt.planType, pt.price, NEW.status, NEW.startDate, NEW.endDate
+  FROM GymMember gm
+  JOIN Plan p ON p.planID = NEW.planID
+  JOIN PlanType pt ON pt.planType = p.planType
+  WHERE gm.memberID = NEW.memberID;
+
+-- Renamed member
+CREATE TRIGGER membership_summary_member AFTER UPDATE ON GymMember FOR EACH ROW
+  UPDATE MembershipSummary
+  SET firstName = NEW.firstName, lastName = NEW.lastName
+  WHERE memberID = NEW.memberID
+    AND (firstName <> NEW.firstName OR lastName <> NEW.lastName);
+
+-- Plan switched to another plan type
+CREATE TRIGGER membership_summary_plan AFTER UPDATE ON Plan FOR EACH ROW
+  UPDATE MembershipSummary s
+  JOIN PlanType pt ON pt.planType = NEW.planType
+  SET s.planID = NEW.planID, s.planType = pt.planType, s.price = pt.price
+  WHERE s.planID = OLD.planID;
+
+-- Price change or renamed plan type (the rename cascades to Plan without running its trigger)
+CREATE TRIGGER membership_summary_plan_type AFTER UPDATE ON PlanType FOR EACH ROW
+  UPDATE MembershipSummary
+  SET planType = NEW.planType, price = NEW.price
+  WHERE planType = OLD.planType;
@@ -1,8 +1,11 @@
 -- Added DROP statement in case we need to reset all tables 
-DROP TABLE IF EXISTS TrainerTrainsMember, CheckIn, Payment, Membership, GuestVisit, Guest, Manager, Trainer, Desk, StaffMember, Plan, PlanType, GymMember;
+-- (this empties the database: to add new columns and tables to one with data in it, run
+-- java -cp bin:mysql-connector-j.jar Migrations apply instead, see Migrations.java)
+DROP TABLE IF EXISTS CheckInJournal, DailySketch, SketchWatermark, SketchGap, MembershipSummary, TrainerTrainsMember, CheckIn, Payment, Membership, GuestAllowance, GuestVisit, Guest, Manager, Trainer, Desk, StaffMember, Plan, PlanType, GymMember;
 
--- Order of creation, PlanType & Plan, GymMember, StaffMember & Subentities, Guest & GuestVisit, Membership, Payment, CheckIn, TrainerTrainsMember
+-- Order of creation, PlanType & Plan, GymMember, StaffMember & Subentities, Guest, GuestVisit & GuestAllowance, Membership, Payment, CheckIn, TrainerTrainsMember
 -- This is done so we can make the foreign key connections properly 
+-- MembershipSummary and its triggers are in membership_summary.sql, run it after this file
 
 -- ____________________________________________________________
 -- PlanType & Plan Table (these are connected)
@@ -29,7 +32,9 @@ CREATE TABLE GymMember (
   birthday  DATE NOT NULL,
   phoneNumber VARCHAR(15) UNIQUE,
   email VARCHAR(100) UNIQUE,
-  dateJoined DATE NOT NULL DEFAULT (CURRENT_DATE)
+  dateJoined DATE NOT NULL DEFAULT (CURRENT_DATE),
+  version INT NOT NULL DEFAULT 0, -- bumped on every update, used to detect edits from two desks at once
+  INDEX (version) -- the view cache sums it to notice edits from other desks (QueryCache)
 );
 
 -- ____________________________________________________________
@@ -95,6 +100,19 @@ CREATE TABLE GuestVisit (
   guestID INT NOT NULL,
   visitDate DATE NOT NULL,
   FOREIGN KEY (guestID) REFERENCES Guest(guestID)
+    ON UPDATE CASCADE
+    ON DELETE CASCADE,
+  INDEX (visitDate, guestID) -- GuestVisits counts one month of visits at startup
+);
+
+-- Guest visits each member has used in a month (the first day of it), counted against
+-- guests.monthlyQuota when a visit is recorded
+CREATE TABLE GuestAllowance (
+  memberID INT NOT NULL,
+  month DATE NOT NULL,
+  used INT NOT NULL,
+  PRIMARY KEY (memberID, month),
+  FOREIGN KEY (memberID) REFERENCES GymMember(memberID)
     ON UPDATE CASCADE
     ON DELETE CASCADE
 );
@@ -108,13 +126,15 @@ CREATE TABLE Membership (
   startDate DATE NOT NULL,
   endDate   DATE NOT NULL,
   status ENUM('Active','Paused', 'Cancelled') NOT NULL DEFAULT 'Paused',
+  version INT NOT NULL DEFAULT 0, -- same as GymMember.version
   FOREIGN KEY (memberID) REFERENCES GymMember(memberID)
     ON UPDATE CASCADE
     ON DELETE CASCADE,
   FOREIGN KEY (planID) REFERENCES Plan(planID)
     ON UPDATE CASCADE
     ON DELETE RESTRICT,
-  CHECK (startDate < endDate)
+  CHECK (startDate < endDate),
+  INDEX (version)
 );
 
 -- ____________________________________________________________
@@ -127,13 +147,19 @@ CREATE TABLE Payment (
   paymentType ENUM('CASH','CARD','ONLINE') NOT NULL,
   dateOfPayment DATE NOT NULL DEFAULT (CURRENT_DATE),
   status ENUM('Success','Pending','Failed','Refunded') NOT NULL DEFAULT 'Pending',
+  version INT NOT NULL DEFAULT 0, -- bumped by every status change, like GymMember.version
   FOREIGN KEY (staffID) REFERENCES Desk(staffID)
     ON UPDATE CASCADE
     ON DELETE RESTRICT,
   FOREIGN KEY (memberID) REFERENCES GymMember(memberID)
     ON UPDATE CASCADE
     ON DELETE CASCADE,
-  CHECK (amount > 0)
+  CHECK (amount > 0),
+  -- For filtered payment searches (ViewQuery), newest first within each filter
+  INDEX (dateOfPayment),
+  INDEX (status, dateOfPayment),
+  INDEX (staffID, dateOfPayment),
+  INDEX (version)
 );
 
 -- ____________________________________________________________
@@ -149,7 +175,11 @@ CREATE TABLE CheckIn (
     ON DELETE CASCADE,
   FOREIGN KEY (staffID) REFERENCES Desk(staffID)
     ON UPDATE CASCADE
-    ON DELETE RESTRICT
+    ON DELETE RESTRICT,
+  -- Same as Payment, for check-in searches by time, location or desk staff
+  INDEX (ts),
+  INDEX (location, ts),
+  INDEX (staffID, ts)
 );
 
 -- ____________________________________________________________
@@ -166,3 +196,41 @@ CREATE TABLE TrainerTrainsMember (
     ON DELETE CASCADE
 );
 
+-- ____________________________________________________________
+-- DailySketch & SketchWatermark Tables, for the approximate reports in Analytics.java
+-- A HyperLogLog of visitors per day and location, and a t-digest of payment amounts per
+-- day and payment type. They are rebuilt from CheckIn and Payment, so they have no foreign keys.
+CREATE TABLE DailySketch (
+  kind ENUM('visitors', 'amounts') NOT NULL,
+  dimension VARCHAR(50) NOT NULL, -- CheckIn.location ('' when empty) or Payment.paymentType
+  day DATE NOT NULL,
+  sketch BLOB NOT NULL, -- HyperLogLog.toBytes() or TDigest.toBytes(), a few KB at most
+  PRIMARY KEY (kind, dimension, day),
+  INDEX (kind, day)
+);
+
+-- The last checkInID / paymentID folded into DailySketch
+CREATE TABLE SketchWatermark (
+  kind ENUM('visitors', 'amounts') PRIMARY KEY,
+  lastID INT NOT NULL
+);
+
+-- Ids below lastID that weren't committed yet when the watermark passed them (AUTO_INCREMENT
+-- hands out ids before commit). They are folded in once their row shows up, and dropped
+-- after a while, which is all a rolled back insert ever leaves.
+CREATE TABLE SketchGap (
+  kind ENUM('visitors', 'amounts') NOT NULL,
+  id INT NOT NULL,
+  seenAt DATETIME NOT NULL,
+  PRIMARY KEY (kind, id)
+);
+
+-- ____________________________________________________________
+-- CheckInJournal Table, how far each desk terminal's local check-in journal has been
+-- copied into CheckIn (see CheckInJournal.java), and the id of that journal file. Updated in
+-- the same transaction as the check-ins, so a journal is never replayed twice.
+CREATE TABLE CheckInJournal (
+  terminal VARCHAR(100) PRIMARY KEY,
+  journalID VARCHAR(36) NOT NULL,
+  replayedBytes BIGINT NOT NULL
+);
@@ -0,0 +1,140 @@
+// Checks AsyncViews streams against the MySQL database in app.properties (read only, it
+// needs a few GymMember rows, e.g. from DataGenerator):
+//  - a subscriber gets exactly as many rows as it asked for, and more only after asking again
+//  - with every connection taken, a second stream waits without a thread of its own and
+//    starts once the first one cancels
+//  - nothing arrives after cancel(), and a cancelled stream gives its connection back
+//  - request(0) is reported through onError on a stream thread, not the caller's
+//
+//   javac -d bin src/*.java test/AsyncViewsTest.java
+//   java -cp bin:mysql-connector-j.jar AsyncViewsTest
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Flow;
+import java.util.function.BooleanSupplier;
+
+public class AsyncViewsTest {
+
+    private static final long WAIT_MILLIS = 5000;
+    private static final long QUIET_MILLIS = 300; // how long "nothing else arrives" is watched for
+
+    private static int failures;
+
+    // Records every signal and the thread it came on
+    private static final class Recorder implements Flow.Subscriber<GymMember> {
+        final List<GymMember> rows = new ArrayList<>();
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        volatile String errorThread;
+        volatile boolean complete;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(GymMember row) {
+            rows.add(row);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            errorThread = Thread.currentThread().getName();
+            error = e;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+
+        synchronized int count() {
+            return rows.size();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        ConnectionPool pool = ConnectionPool.open(props, 1);
+        try (AsyncViews views = new AsyncViews(pool)) {
+            run(views, pool);
+        }
+        System.out.println(failures == 0 ? "AsyncViewsTest passed" : "AsyncViewsTest: " + failures + " failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void run(AsyncViews views, ConnectionPool pool) throws InterruptedException {
+        Recorder first = new Recorder();
+        views.stream(View.GYM_MEMBERS).subscribe(first);
+        first.subscription.request(2);
+        check("the first request gets its rows", await(() -> first.count() == 2));
+        Thread.sleep(QUIET_MILLIS);
+        check("no rows beyond the demand", first.count() == 2);
+        first.subscription.request(1);
+        check("asking again gets one more", await(() -> first.count() == 3));
+
+        // first still holds the only connection
+        int threadsBefore = streamThreads();
+        Recorder second = new Recorder();
+        views.stream(View.GYM_MEMBERS).subscribe(second);
+        second.subscription.request(1);
+        Thread.sleep(QUIET_MILLIS);
+        check("a stream without a connection waits", second.count() == 0 && second.error == null);
+        check("waiting doesn't hold a stream thread", streamThreads() <= Math.max(threadsBefore, pool.size()));
+
+        first.subscription.cancel();
+        check("the waiting stream starts once the first cancels", await(() -> second.count() == 1));
+        first.subscription.request(5);
+        Thread.sleep(QUIET_MILLIS);
+        check("nothing arrives after cancel", first.count() == 3 && first.error == null && !first.complete);
+
+        second.subscription.cancel();
+        check("a cancelled stream gives its connection back", await(() -> {
+            Connection conn = pool.tryBorrow();
+            if (conn == null) {
+                return false;
+            }
+            pool.release(conn);
+            return true;
+        }));
+
+        Recorder bad = new Recorder();
+        views.stream(View.GYM_MEMBERS).subscribe(bad);
+        bad.subscription.request(0);
+        String caller = Thread.currentThread().getName();
+        check("request(0) is an error", await(() -> bad.error instanceof IllegalArgumentException));
+        check("the error comes on a stream thread", bad.errorThread != null && !bad.errorThread.equals(caller));
+    }
+
+    private static int streamThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("async-view-stream")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok      " : "FAILED  ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+// Checks ChangeFeed against the MySQL database in app.properties (a local test database,
+// it adds a few GymMember rows and deletes them again):
+//  - only rows added after start() are published, as typed GymMember events
+//  - a row whose lower id commits after a higher one is still published once it commits
+//  - a row is published once, however many polls see it
+//  - pollNow() before start() sets the watermarks instead of failing
+//
+//   javac -d bin src/*.java test/ChangeFeedTest.java
+//   java -cp bin:mysql-connector-j.jar ChangeFeedTest
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class ChangeFeedTest {
+
+    private static final String TAG = "feedtest" + System.currentTimeMillis() % 100_000;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        Properties props = Database.loadProperties();
+        Database.loadDriver(props);
+        try (Connection early = Database.connect(props);
+             Connection late = Database.connect(props)) {
+            try {
+                run(props, early, late);
+            } finally {
+                late.setAutoCommit(true);
+                try (PreparedStatement ps = early.prepareStatement("DELETE FROM GymMember WHERE firstName = ?;")) {
+                    ps.setString(1, TAG);
+                    ps.executeUpdate();
+                }
+            }
+        }
+        System.out.println(failures == 0 ? "ChangeFeedTest passed" : "ChangeFeedTest: " + failures + " failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void run(Properties props, Connection early, Connection late) throws SQLException {
+        insert(early, "before");
+
+        try (ChangeFeed unstarted = new ChangeFeed(Database.connect(props), 60_000)) {
+            unstarted.subscribe(ChangeFeed.Table.GYM_MEMBER, event -> { });
+            check("pollNow() before start() publishes nothing", unstarted.pollNow() == 0);
+            insert(early, "after first poll");
+            check("the next poll picks up from there", unstarted.pollNow() == 1);
+        }
+
+        List<ChangeFeed.ChangeEvent<GymMember>> seen = new ArrayList<>();
+        try (ChangeFeed feed = new ChangeFeed(Database.connect(props), 60_000)) {
+            feed.subscribe(ChangeFeed.Table.GYM_MEMBER, seen::add);
+            feed.start();
+            feed.pollNow();
+            check("rows from before start() are not published", seen.isEmpty());
+
+            // late takes the lower id but commits after early's higher one
+            late.setAutoCommit(false);
+            int lowID = insert(late, "slow");
+            int highID = insert(early, "fast");
+            check("ids were handed out in insert order", lowID < highID);
+
+            feed.pollNow();
+            check("the committed higher id is published", keys(seen).equals(List.of(highID)));
+            GymMember row = seen.isEmpty() ? null : seen.get(0).row();
+            check("events carry the typed row", row != null && row.memberID() == highID && row.lastName().equals("fast"));
+
+            late.commit();
+            feed.pollNow();
+            check("the lower id is published once it commits", keys(seen).equals(List.of(highID, lowID)));
+
+            feed.pollNow();
+            check("nothing is published twice", keys(seen).equals(List.of(highID, lowID)));
+        }
+    }
+
+    private static int insert(Connection conn, String lastName) throws SQLException {
+        String sql = "INSERT INTO GymMember (firstName, lastName, birthday) VALUES (?, ?, '1990-01-01');";
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, TAG);
+            ps.setString(2, lastName);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private static List<Integer> keys(List<ChangeFeed.ChangeEvent<GymMember>> events) {
+        List<Integer> keys = new ArrayList<>();
+        for (ChangeFeed.ChangeEvent<GymMember> event : events) {
+            keys.add(event.key());
+        }
+        return keys;
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok      " : "FAILED  ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+// Checks IntervalTree queries against checking every interval, on random intervals and a
+// few edge cases. No database needed.
+//
+//   javac -d bin src/*.java test/IntervalTreeTest.java
+//   java -cp bin IntervalTreeTest
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class IntervalTreeTest {
+
+    private record Span(int start, int end) {
+    }
+
+    private static final Comparator<Span> ORDER = Comparator.comparingInt(Span::start).thenComparingInt(Span::end);
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        IntervalTree<Span> empty = new IntervalTree<>(List.of(), Span::start, Span::end);
+        check("an empty tree finds nothing", empty.size() == 0 && empty.containing(5).isEmpty());
+
+        IntervalTree<Span> one = tree(List.of(new Span(10, 20)));
+        check("start is inside", one.containing(10).size() == 1);
+        check("end is outside", one.containing(20).isEmpty());
+        check("a range ending at the start doesn't overlap", one.overlapping(0, 10).isEmpty());
+        check("a range starting at the end doesn't overlap", one.overlapping(20, 30).isEmpty());
+        check("a range inside overlaps", one.overlapping(12, 13).size() == 1);
+
+        Random random = new Random(42);
+        boolean matches = true;
+        for (int round = 0; round < 200 && matches; round++) {
+            List<Span> spans = new ArrayList<>();
+            int count = random.nextInt(200);
+            for (int i = 0; i < count; i++) {
+                int start = random.nextInt(1440);
+                spans.add(new Span(start, start + 1 + random.nextInt(300)));
+            }
+            IntervalTree<Span> tree = tree(spans);
+            for (int q = 0; q < 50 && matches; q++) {
+                int from = random.nextInt(1800);
+                int to = from + random.nextInt(120);
+                matches = sorted(tree.overlapping(from, to)).equals(sorted(bruteForce(spans, from, to)))
+                        && sorted(tree.containing(from)).equals(sorted(bruteForce(spans, from, from + 1)));
+            }
+        }
+        check("random queries match checking every interval", matches);
+
+        System.out.println(failures == 0 ? "IntervalTreeTest passed" : "IntervalTreeTest: " + failures + " failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static IntervalTree<Span> tree(List<Span> spans) {
+        return new IntervalTree<>(spans, Span::start, Span::end);
+    }
+
+    private static List<Span> bruteForce(List<Span> spans, int from, int to) {
+        List<Span> found = new ArrayList<>();
+        for (Span span : spans) {
+            if (span.start() < to && span.end() > from) {
+                found.add(span);
+            }
+        }
+        return found;
+    }
+
+    private static List<Span> sorted(List<Span> spans) {
+        List<Span> copy = new ArrayList<>(spans);
+        copy.sort(ORDER);
+        return copy;
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok      " : "FAILED  ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
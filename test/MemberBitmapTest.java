@@ -0,0 +1,92 @@
+// Checks MemberBitmap against a java.util.BitSet holding the same ids, for sparse and dense
+// chunks and the switch between them. No database needed.
+//
+//   javac -d bin src/*.java test/MemberBitmapTest.java
+//   java -cp bin MemberBitmapTest
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+public class MemberBitmapTest {
+
+    private static final int IDS = 300_000; // ids spread over several 65536 chunks
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        MemberBitmap empty = new MemberBitmap();
+        check("a new bitmap is empty", empty.isEmpty() && empty.cardinality() == 0 && !empty.contains(1));
+
+        MemberBitmap few = MemberBitmap.of(7, 3, 70_000, 3);
+        check("of() keeps each id once", few.cardinality() == 3);
+        check("ids come out in order", Arrays.equals(few.toArray(), new int[] {3, 7, 70_000}));
+        few.remove(7);
+        few.remove(8);
+        check("remove takes out only that id", !few.contains(7) && few.contains(3) && few.cardinality() == 2);
+
+        // A chunk that grows past 4096 ids turns into a bitmap and back when it shrinks
+        MemberBitmap growing = new MemberBitmap();
+        BitSet expected = new BitSet();
+        for (int id = 0; id < 6000; id++) {
+            growing.add(id * 3);
+            expected.set(id * 3);
+        }
+        check("a chunk past 4096 ids holds them all", same(growing, expected));
+        for (int id = 0; id < 6000; id += 2) {
+            growing.remove(id * 3);
+            expected.clear(id * 3);
+        }
+        check("removing from a dense chunk", same(growing, expected));
+
+        Random random = new Random(7);
+        boolean matches = true;
+        for (int round = 0; round < 20 && matches; round++) {
+            // One sparse and one dense set, so every pairing of chunk kinds comes up
+            BitSet a = randomIds(random, 0.01);
+            BitSet b = randomIds(random, 0.3);
+            MemberBitmap ma = bitmap(a);
+            MemberBitmap mb = bitmap(b);
+            BitSet and = (BitSet) a.clone();
+            and.and(b);
+            BitSet or = (BitSet) a.clone();
+            or.or(b);
+            BitSet andNot = (BitSet) b.clone();
+            andNot.andNot(a);
+            matches = same(ma, a) && same(mb, b)
+                    && same(ma.and(mb), and) && same(mb.and(ma), and)
+                    && same(ma.or(mb), or) && same(mb.andNot(ma), andNot);
+        }
+        check("and, or and andNot match BitSet", matches);
+
+        System.out.println(failures == 0 ? "MemberBitmapTest passed" : "MemberBitmapTest: " + failures + " failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static BitSet randomIds(Random random, double density) {
+        BitSet ids = new BitSet(IDS);
+        for (int id = 1; id < IDS; id++) {
+            if (random.nextDouble() < density) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    private static MemberBitmap bitmap(BitSet ids) {
+        MemberBitmap bitmap = new MemberBitmap();
+        ids.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static boolean same(MemberBitmap bitmap, BitSet ids) {
+        return bitmap.cardinality() == ids.cardinality()
+                && Arrays.equals(bitmap.toArray(), ids.stream().toArray());
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok      " : "FAILED  ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
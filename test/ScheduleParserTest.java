@@ -0,0 +1,85 @@
+// Checks ScheduleParser on the schedule texts it is meant to read and the ones it must
+// refuse. No database needed.
+//
+//   javac -d bin src/*.java test/ScheduleParserTest.java
+//   java -cp bin ScheduleParserTest
+import java.time.DayOfWeek;
+import java.util.List;
+
+public class ScheduleParserTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        // One interval per day, so checking the first one is enough for these
+        checkHours("Mon-Fri 06:00-14:00", DayOfWeek.MONDAY, 5, 6 * 60, 14 * 60);
+        checkHours("Sat-Sun 8am-4pm", DayOfWeek.SATURDAY, 2, 8 * 60, 16 * 60);
+        checkHours("Daily 7:30am - 3:30pm", DayOfWeek.MONDAY, 7, 7 * 60 + 30, 15 * 60 + 30);
+        checkHours("6-10pm Tue", DayOfWeek.TUESDAY, 1, 18 * 60, 22 * 60);
+        checkHours("9-5pm Wed", DayOfWeek.WEDNESDAY, 1, 9 * 60, 17 * 60);
+
+        // Bare hours read as opening hours, whichever end is smaller
+        checkHours("Mon 9-5", DayOfWeek.MONDAY, 1, 9 * 60, 17 * 60);
+        checkHours("Mon 1-5", DayOfWeek.MONDAY, 1, 13 * 60, 17 * 60);
+        checkHours("Mon 10-2", DayOfWeek.MONDAY, 1, 10 * 60, 14 * 60);
+        checkHours("Mon 12-6", DayOfWeek.MONDAY, 1, 12 * 60, 18 * 60);
+        checkHours("Mon 8-12", DayOfWeek.MONDAY, 1, 8 * 60, 12 * 60);
+        refused("Mon 6-10");
+        refused("Mon 5-9");
+
+        // Overnight 24-hour times carry on the next day
+        List<ScheduleParser.DayInterval> night = ScheduleParser.parse("Sun 22:00-06:00");
+        check("22:00-06:00 is split at midnight", night.equals(List.of(
+                new ScheduleParser.DayInterval(DayOfWeek.SUNDAY, 22 * 60, 24 * 60),
+                new ScheduleParser.DayInterval(DayOfWeek.MONDAY, 0, 6 * 60))));
+        check("bare 24-hour 22-6 is overnight too", ScheduleParser.parse("Sun 22-6").equals(night));
+
+        // Times before their days, and separate groups
+        List<ScheduleParser.DayInterval> mixed = ScheduleParser.parse("9am-5pm Mon-Fri, 10-2 Sat");
+        check("times take the days after them", mixed.size() == 6
+                && mixed.contains(new ScheduleParser.DayInterval(DayOfWeek.FRIDAY, 9 * 60, 17 * 60))
+                && mixed.contains(new ScheduleParser.DayInterval(DayOfWeek.SATURDAY, 10 * 60, 14 * 60)));
+        List<ScheduleParser.DayInterval> groups = ScheduleParser.parse("Mon, Wed, Fri 9-5; Sat 10:00-14:00");
+        check("a ';' starts a new group", groups.size() == 4
+                && groups.contains(new ScheduleParser.DayInterval(DayOfWeek.WEDNESDAY, 9 * 60, 17 * 60))
+                && !groups.contains(new ScheduleParser.DayInterval(DayOfWeek.TUESDAY, 9 * 60, 17 * 60)));
+        check("times with no days are every day", ScheduleParser.parse("8am-4pm").size() == 7);
+
+        refused("Mon-Fri");
+        refused("Mon 25:00-26:00");
+        refused("Mon 13pm-5pm");
+        refused("whenever");
+        refused("");
+
+        System.out.println(failures == 0 ? "ScheduleParserTest passed" : "ScheduleParserTest: " + failures + " failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void checkHours(String schedule, DayOfWeek firstDay, int days, int start, int end) {
+        List<ScheduleParser.DayInterval> intervals;
+        try {
+            intervals = ScheduleParser.parse(schedule);
+        } catch (IllegalArgumentException e) {
+            check(schedule + " (" + e.getMessage() + ")", false);
+            return;
+        }
+        check(schedule, intervals.size() == days
+                && intervals.get(0).equals(new ScheduleParser.DayInterval(firstDay, start, end)));
+    }
+
+    private static void refused(String schedule) {
+        try {
+            ScheduleParser.parse(schedule);
+            check("\"" + schedule + "\" is refused", false);
+        } catch (IllegalArgumentException e) {
+            check("\"" + schedule + "\" is refused", true);
+        }
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "ok      " : "FAILED  ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}